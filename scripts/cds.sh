@@ -0,0 +1,44 @@
+#!/bin/sh
+# Builds a class data sharing archive of the classes the application loads while it starts, so later starts
+# map them from target/cds/app.jsa instead of loading and verifying them again. The jar is unpacked first
+# since classes nested in the Spring Boot jar can't be archived.
+#
+#   scripts/cds.sh
+#   java -XX:SharedArchiveFile=target/cds/app.jsa -cp "$(cat target/cds/classpath)" \
+#        com.mitrais.khotim.library.Application --spring.profiles.active=fast-boot
+set -e
+cd "$(dirname "$0")/.."
+
+MAIN=com.mitrais.khotim.library.Application
+CDS=target/cds
+JAR=$(ls target/library-*.jar 2>/dev/null | head -1)
+
+if [ -z "$JAR" ]; then
+    ./mvnw -B -q package -DskipTests
+    JAR=$(ls target/library-*.jar | head -1)
+fi
+
+rm -rf "$CDS"
+mkdir -p "$CDS/unpacked" "$CDS/lib"
+(cd "$CDS/unpacked" && jar -xf "../../../$JAR")
+
+# The archive only takes jars on the class path, not directories.
+jar -cf "$CDS/lib/application.jar" -C "$CDS/unpacked/BOOT-INF/classes" .
+cp "$CDS"/unpacked/BOOT-INF/lib/*.jar "$CDS/lib/"
+rm -rf "$CDS/unpacked"
+
+CLASSPATH=$(ls "$CDS"/lib/*.jar | tr '\n' ':')
+echo "$CLASSPATH" > "$CDS/classpath"
+
+# Training run: starts with the fast-boot profile and exits once it's ready.
+TRAINING="--spring.profiles.active=fast-boot --library.startup.exit=true --server.port=0"
+
+if java -XX:+PrintFlagsFinal -version 2>/dev/null | grep -q ArchiveClassesAtExit; then
+    # Java 13 and later archive every class loaded by the training run.
+    java -XX:ArchiveClassesAtExit="$CDS/app.jsa" -cp "$CLASSPATH" $MAIN $TRAINING
+else
+    java -Xshare:off -XX:DumpLoadedClassList="$CDS/classes.lst" -cp "$CLASSPATH" $MAIN $TRAINING
+    java -Xshare:dump -XX:SharedClassListFile="$CDS/classes.lst" -XX:SharedArchiveFile="$CDS/app.jsa" -cp "$CLASSPATH"
+fi
+
+echo "Archive written to $CDS/app.jsa"
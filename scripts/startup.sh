@@ -0,0 +1,49 @@
+#!/bin/sh
+# Starts the application a few times in each mode and reports the time until it's ready and the resident
+# memory then, as logged by StartupReport:
+#   default    the jar with the default configuration
+#   fast-boot  the jar with the fast-boot profile
+#   cds        the fast-boot profile from the class data sharing archive built by scripts/cds.sh
+#
+#   scripts/startup.sh [runs] [modes...]
+# JAVA_OPTS is passed to every run, e.g. JAVA_OPTS="-XX:TieredStopAtLevel=1 -Xss512k".
+set -e
+cd "$(dirname "$0")/.."
+
+MAIN=com.mitrais.khotim.library.Application
+RUNS=${1:-5}
+[ $# -gt 0 ] && shift
+MODES=${*:-default fast-boot cds}
+JAR=$(ls target/library-*.jar 2>/dev/null | head -1)
+
+if [ -z "$JAR" ]; then
+    ./mvnw -B -q package -DskipTests
+    JAR=$(ls target/library-*.jar | head -1)
+fi
+
+start() {
+    case $1 in
+        default)
+            java $JAVA_OPTS -jar "$JAR" --library.startup.exit=true --server.port=0 ;;
+        fast-boot)
+            java $JAVA_OPTS -jar "$JAR" --spring.profiles.active=fast-boot --library.startup.exit=true --server.port=0 ;;
+        cds)
+            [ -f target/cds/app.jsa ] || scripts/cds.sh > /dev/null
+            java $JAVA_OPTS -XX:SharedArchiveFile=target/cds/app.jsa -cp "$(cat target/cds/classpath)" $MAIN \
+                --spring.profiles.active=fast-boot --library.startup.exit=true --server.port=0 ;;
+    esac
+}
+
+printf '%-10s %10s %10s\n' mode "ready ms" "rss MB"
+
+for mode in $MODES; do
+    for run in $(seq "$RUNS"); do
+        start "$mode" 2>&1 | sed -n 's/.*Ready in \([0-9]*\) ms, RSS \([0-9-]*\) MB.*/\1 \2/p'
+    done | sort -n | awk -v mode="$mode" '
+        { ready[NR] = $1; rss[NR] = $2 }
+        END {
+            if (NR == 0) { printf "%-10s %10s %10s\n", mode, "failed", "-"; exit }
+            m = int((NR + 1) / 2)
+            printf "%-10s %10d %10d\n", mode, ready[m], rss[m]
+        }'
+done
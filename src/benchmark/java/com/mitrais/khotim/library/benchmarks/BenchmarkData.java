@@ -0,0 +1,98 @@
+package com.mitrais.khotim.library.benchmarks;
+
+import com.mitrais.khotim.library.Application;
+import com.mitrais.khotim.library.domains.BookStatus;
+import com.mitrais.khotim.library.services.BookSearchIndex;
+import com.mitrais.khotim.library.services.BookStatusCounts;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the application against its own in-memory H2 database and seeds it with JDBC batches.
+ */
+final class BenchmarkData {
+    static final int SHELF_CAPACITY = 1000;
+    private static final int BATCH_SIZE = 5000;
+    private static final int SEQUENCE_ALLOCATION = 50;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Starts the application with the result cache and admission control off so benchmarks measure the query path.
+     * The properties are passed as command line arguments, so they override application.properties.
+     */
+    static ConfigurableApplicationContext start(String database, WebApplicationType type, String... properties) {
+        List<String> all = new ArrayList<>();
+        all.add("--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1");
+        all.add("--spring.cache.type=none");
+        all.add("--library.admission.enabled=false");
+        all.add("--server.port=0");
+        all.add("--logging.level.root=WARN");
+
+        for (String property : properties) {
+            all.add("--" + property);
+        }
+
+        return new SpringApplicationBuilder(Application.class)
+                .web(type)
+                .run(all.toArray(new String[0]));
+    }
+
+    /**
+     * Inserts the given number of books, shelving every other one into shelves of SHELF_CAPACITY,
+     * then rebuilds the search index and recounts the statuses.
+     *
+     * @return Number of shelves created.
+     */
+    static int seed(ConfigurableApplicationContext context, int books) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        int shelved = books / 2;
+        int shelves = shelved / SHELF_CAPACITY + 1;
+
+        List<Object[]> shelfRows = new ArrayList<>();
+
+        for (int id = 1; id <= shelves; id++) {
+            int current = Math.min(SHELF_CAPACITY, shelved - (id - 1) * SHELF_CAPACITY);
+            shelfRows.add(new Object[]{id, "Shelf " + id, SHELF_CAPACITY, Math.max(0, current), 0});
+        }
+
+        jdbc.batchUpdate("insert into shelf (shelf_id, name, max_capacity, current_capacity, version) values (?, ?, ?, ?, ?)", shelfRows);
+
+        List<Object[]> bookRows = new ArrayList<>(BATCH_SIZE);
+
+        for (int id = 1; id <= books; id++) {
+            boolean isShelved = id % 2 == 0;
+            Integer shelfId = isShelved ? (id / 2 - 1) / SHELF_CAPACITY + 1 : null;
+
+            bookRows.add(new Object[]{
+                    id,
+                    String.format("978-%09d", id),
+                    "Title " + (id % 1000) + " Volume " + id,
+                    "Author " + (id % 500),
+                    String.valueOf((isShelved ? BookStatus.SHELVED : BookStatus.NOT_SHELVED).getCode()),
+                    shelfId,
+                    0
+            });
+
+            if (bookRows.size() == BATCH_SIZE || id == books) {
+                jdbc.batchUpdate("insert into book (id, isbn, title, author, status, shelf_id, version) values (?, ?, ?, ?, ?, ?, ?)", bookRows);
+                bookRows.clear();
+            }
+        }
+
+        // Hibernate's pooled optimizer hands out the block below the sequence value it reads.
+        jdbc.execute("alter sequence book_seq restart with " + (books + SEQUENCE_ALLOCATION + 1));
+        jdbc.execute("alter sequence shelf_seq restart with " + (shelves + SEQUENCE_ALLOCATION + 1));
+
+        context.getBean(BookSearchIndex.class).rebuild();
+        context.getBean(BookStatusCounts.class).reload();
+
+        return shelves;
+    }
+}
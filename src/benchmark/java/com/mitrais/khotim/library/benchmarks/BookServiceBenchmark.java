@@ -0,0 +1,62 @@
+package com.mitrais.khotim.library.benchmarks;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
+import com.mitrais.khotim.library.services.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BookService.findByTitleAndStatus for each filter branch, one page of results as served by GET /api/books.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookServiceBenchmark {
+    private static final int LIMIT = 100;
+
+    @Param({"10000", "100000", "1000000"})
+    public int books;
+
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkData.start("books-" + books, WebApplicationType.NONE);
+        BenchmarkData.seed(context, books);
+        bookService = context.getBean(BookService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Book> all() {
+        return bookService.findByTitleAndStatus("", "", 0, LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> byTitle() {
+        return bookService.findByTitleAndStatus("title 42 volume", "", 0, LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> byStatus() {
+        return bookService.findByTitleAndStatus("", BookStatus.SHELVED.getValue(), 0, LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> byTitleAndStatus() {
+        return bookService.findByTitleAndStatus("title 42 volume", BookStatus.SHELVED.getValue(), 0, LIMIT);
+    }
+}
@@ -0,0 +1,74 @@
+package com.mitrais.khotim.library.benchmarks;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.services.BookService;
+import com.mitrais.khotim.library.services.ShelfService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LibraryController.doOperation through MockMvc, for a successful add/remove pair and for a rejected add.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LibraryControllerBenchmark {
+    @Param({"10000", "100000"})
+    public int books;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private String bookBody;
+    private Long openShelfId;
+    private Long fullShelfId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkData.start("controller-" + books, WebApplicationType.SERVLET);
+        BenchmarkData.seed(context, books);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+
+        ShelfService shelfService = context.getBean(ShelfService.class);
+        BookService bookService = context.getBean(BookService.class);
+
+        openShelfId = shelfService.save(new Shelf("Open shelf", 10)).getId();
+        fullShelfId = shelfService.save(new Shelf("Full shelf", 0)).getId();
+        bookBody = "{\"id\":" + bookService.save(new Book("isbn-bench", "Benchmark book", "Khotim")).getId() + "}";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MvcResult addThenRemoveBook() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/libraries/{id}/addBook", openShelfId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(bookBody)).andReturn();
+
+        return mockMvc.perform(MockMvcRequestBuilders.delete("/api/libraries/{id}/removeBook", openShelfId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(bookBody)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult addBookRejected() throws Exception {
+        return mockMvc.perform(MockMvcRequestBuilders.put("/api/libraries/{id}/addBook", fullShelfId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(bookBody)).andReturn();
+    }
+}
@@ -0,0 +1,353 @@
+package com.mitrais.khotim.library.benchmarks;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.StreamUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives every endpoint over HTTP with a fixed number of clients, once per Spring profile, and prints the
+ * throughput and latency percentiles of each so the profiles can be compared. Each profile runs in a JVM of its
+ * own against a freshly seeded database, and every endpoint is warmed up before it's measured.
+ * <p>
+ * Run with mvn -Pbenchmarks test-compile exec:exec@load-test, options are passed as
+ * -Dload.args="--profiles=default,performance --clients=32 --warmup=10 --duration=30 --books=10000".
+ */
+public final class LoadTest {
+    /**
+     * Clients shelve and unshelve their own book in their own shelf, numbered from here so they don't clash
+     * with the seeded ones.
+     */
+    private static final long WRITE_SHELVES = 1_000_000;
+    private static final long MAX_LATENCY = TimeUnit.SECONDS.toMicros(60);
+
+    /**
+     * Starts the lines a forked run reports an endpoint's result with.
+     */
+    private static final String RESULT = "RESULT";
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        List<String> profiles = Arrays.asList(options.getOrDefault("profiles", "default,performance").split(","));
+
+        // Endpoint, then profile.
+        Map<String, Map<String, String>> results = new LinkedHashMap<>();
+
+        if (profiles.size() == 1) {
+            run(profiles.get(0), options, results);
+        } else {
+            for (String profile : profiles) {
+                fork(profile, args, results);
+            }
+        }
+
+        System.out.println();
+        System.out.printf("%-45s %-12s %10s %9s %9s %9s %8s%n", "Endpoint", "Profile", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+
+        for (Map.Entry<String, Map<String, String>> endpoint : results.entrySet()) {
+            for (Map.Entry<String, String> profile : endpoint.getValue().entrySet()) {
+                System.out.printf("%-45s %-12s %s%n", endpoint.getKey(), profile.getKey(), profile.getValue());
+            }
+        }
+    }
+
+    /**
+     * Runs the profile in a JVM of its own, so the profile measured last doesn't profit from the code the JIT
+     * compiled for the ones before it.
+     */
+    private static void fork(String profile, String[] args, Map<String, Map<String, String>> results) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-classpath");
+        command.add(System.getProperty("java.class.path"));
+        command.add(LoadTest.class.getName());
+
+        for (String arg : args) {
+            if (!arg.startsWith("--profiles=")) {
+                command.add(arg);
+            }
+        }
+
+        command.add("--profiles=" + profile);
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+
+            while ((line = out.readLine()) != null) {
+                if (line.startsWith(RESULT)) {
+                    String[] fields = line.split("\t");
+                    results.computeIfAbsent(fields[1], endpoint -> new LinkedHashMap<>()).put(profile, fields[2]);
+                } else if (!line.isEmpty() && !line.startsWith("Endpoint")) {
+                    System.out.println(line);
+                }
+            }
+        }
+
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Load test of profile " + profile + " failed");
+        }
+    }
+
+    private static void run(String profile, Map<String, String> options, Map<String, Map<String, String>> results)
+            throws InterruptedException {
+        int clients = Integer.parseInt(options.getOrDefault("clients", "32"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int books = Integer.parseInt(options.getOrDefault("books", "10000"));
+
+        // Started from a main method devtools would restart the application in a class loader of its own.
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        System.out.printf("Profile %s: %d clients, %d s warm-up and %d s per endpoint%n", profile, clients, warmup, duration);
+        ConfigurableApplicationContext context = start(profile);
+
+        try {
+            int shelves = BenchmarkData.seed(context, books);
+            addWriteShelves(context, clients);
+
+            String base = "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+
+            for (Workload workload : workloads(books, shelves)) {
+                for (Map.Entry<String, Result> result : drive(base, workload, clients, warmup, duration).entrySet()) {
+                    results.computeIfAbsent(result.getKey(), endpoint -> new LinkedHashMap<>()).put(profile, result.getValue().toString());
+                    System.out.println(RESULT + "\t" + result.getKey() + "\t" + result.getValue());
+                }
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String profile) {
+        String database = "load-" + profile;
+
+        return profile.equals("default")
+                ? BenchmarkData.start(database, WebApplicationType.SERVLET)
+                : BenchmarkData.start(database, WebApplicationType.SERVLET, "spring.profiles.active=" + profile);
+    }
+
+    /**
+     * Adds one empty shelf per client for the write workload.
+     */
+    private static void addWriteShelves(ConfigurableApplicationContext context, int clients) {
+        List<Object[]> rows = new ArrayList<>();
+
+        for (int client = 0; client < clients; client++) {
+            rows.add(new Object[]{WRITE_SHELVES + client, "Load " + client, 10, 0, 0});
+        }
+
+        context.getBean(JdbcTemplate.class)
+                .batchUpdate("insert into shelf (shelf_id, name, max_capacity, current_capacity, version) values (?, ?, ?, ?, ?)", rows);
+    }
+
+    private static List<Workload> workloads(int books, int shelves) {
+        return Arrays.asList(
+                (client, iteration, random) -> new Request("GET /api/books/{id}", "GET",
+                        "/api/books/" + (random.nextInt(books) + 1), null),
+                (client, iteration, random) -> new Request("GET /api/books?title", "GET",
+                        "/api/books?title=Title+" + random.nextInt(1000) + "+Volume&limit=50", null),
+                (client, iteration, random) -> new Request("GET /api/books/search", "GET",
+                        "/api/books/search?q=title+" + random.nextInt(1000) + "+volume&limit=50", null),
+                (client, iteration, random) -> new Request("GET /api/libraries?summary", "GET",
+                        "/api/libraries?summary=true", null),
+                (client, iteration, random) -> new Request("GET /api/libraries/{id}", "GET",
+                        "/api/libraries/" + (random.nextInt(shelves) + 1), null),
+                (client, iteration, random) -> {
+                    // Odd books aren't shelved by the seed, each client moves its own in and out of its shelf.
+                    String body = "{\"id\":" + (2 * client + 1) + "}";
+                    long shelf = WRITE_SHELVES + client;
+
+                    return iteration % 2 == 0
+                            ? new Request("PUT /api/libraries/{id}/addBook", "PUT", "/api/libraries/" + shelf + "/addBook", body)
+                            : new Request("DELETE /api/libraries/{id}/removeBook", "DELETE", "/api/libraries/" + shelf + "/removeBook", body);
+                });
+    }
+
+    /**
+     * Runs the workload with the given number of clients, each sending its next request once the previous one
+     * was answered, and records the requests sent after the warm-up.
+     *
+     * @return Result of each endpoint the workload called.
+     */
+    private static Map<String, Result> drive(String base, Workload workload, int clients, int warmup, int duration)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+        long measureTo = measureFrom + TimeUnit.SECONDS.toNanos(duration);
+
+        List<Map<String, Result>> perClient = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < clients; i++) {
+            int client = i;
+            Map<String, Result> results = new HashMap<>();
+            perClient.add(results);
+
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long iteration = 0;
+                long now = System.nanoTime();
+
+                while (now < measureTo) {
+                    Request request = workload.next(client, iteration++, random);
+                    int status = send(base, request);
+                    long end = System.nanoTime();
+
+                    if (now >= measureFrom) {
+                        results.computeIfAbsent(request.label, label -> new Result()).record(end - now, status);
+                    }
+
+                    now = end;
+                }
+            }, "load-" + client);
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Map<String, Result> merged = new LinkedHashMap<>();
+
+        for (Map<String, Result> results : perClient) {
+            for (Map.Entry<String, Result> result : results.entrySet()) {
+                merged.computeIfAbsent(result.getKey(), label -> new Result()).add(result.getValue());
+            }
+        }
+
+        merged.values().forEach(result -> result.seconds = duration);
+
+        return merged;
+    }
+
+    /**
+     * Sends the request over a kept-alive connection, reading the whole response so the connection can be reused.
+     *
+     * @return The response status, or 0 when the request failed.
+     */
+    private static int send(String base, Request request) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(base + request.path).openConnection();
+            connection.setRequestMethod(request.method);
+            connection.setRequestProperty("Accept", "application/json");
+
+            if (request.body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(request.body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+
+            if (in != null) {
+                try (InputStream body = in) {
+                    StreamUtils.drain(body);
+                }
+            }
+
+            return status;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads --name=value arguments.
+     */
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+
+        return options;
+    }
+
+    @FunctionalInterface
+    private interface Workload {
+        Request next(int client, long iteration, ThreadLocalRandom random);
+    }
+
+    private static final class Request {
+        final String label;
+        final String method;
+        final String path;
+        final String body;
+
+        Request(String label, String method, String path, String body) {
+            this.label = label;
+            this.method = method;
+            this.path = path;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Latencies in microseconds and failed requests of one endpoint.
+     */
+    private static final class Result {
+        final Histogram latencies = new Histogram(MAX_LATENCY, 3);
+        long errors;
+        int seconds;
+
+        void record(long nanos, int status) {
+            latencies.recordValue(Math.min(MAX_LATENCY, TimeUnit.NANOSECONDS.toMicros(nanos)));
+
+            if (status < 200 || status >= 300) {
+                errors++;
+            }
+        }
+
+        void add(Result other) {
+            latencies.add(other.latencies);
+            errors += other.errors;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%10.1f %9.2f %9.2f %9.2f %8d",
+                    (double) latencies.getTotalCount() / seconds,
+                    latencies.getValueAtPercentile(50) / 1000.0,
+                    latencies.getValueAtPercentile(99) / 1000.0,
+                    latencies.getMaxValue() / 1000.0,
+                    errors);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.mitrais.khotim.library.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking and reactive book search over HTTP with a fixed number of Tomcat threads. While most client
+ * threads search, the others call the health endpoint; its latency shows whether request threads are
+ * left for other work while searches wait on the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReactiveApiBenchmark {
+    private static final int TOMCAT_THREADS = 8;
+    private static final int BOOKS = 10000;
+
+    @Param({"/api/books", "/api/reactive/books"})
+    public String api;
+
+    private ConfigurableApplicationContext context;
+    private String searchUrl;
+    private String healthUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkData.start("reactive-" + api.hashCode(), WebApplicationType.SERVLET,
+                "server.tomcat.max-threads=" + TOMCAT_THREADS,
+                "server.tomcat.accept-count=1000");
+        BenchmarkData.seed(context, BOOKS);
+
+        int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        searchUrl = "http://localhost:" + port + api + "/search?q=title+42+volume&limit=100";
+        healthUrl = "http://localhost:" + port + "/actuator/health";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(56)
+    public int search() throws IOException {
+        return get(searchUrl);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(8)
+    public int health() throws IOException {
+        return get(healthUrl);
+    }
+
+    private static int get(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestProperty("Accept", "application/json");
+
+        try (InputStream in = connection.getInputStream()) {
+            StreamUtils.drain(in);
+        }
+
+        return connection.getResponseCode();
+    }
+}
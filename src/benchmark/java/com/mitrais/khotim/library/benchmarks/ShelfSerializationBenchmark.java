@@ -0,0 +1,70 @@
+package com.mitrais.khotim.library.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
+import com.mitrais.khotim.library.domains.Shelf;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of a Shelf with its books, including the @JsonIdentityInfo bookkeeping, in each of
+ * the formats the API can respond with. The encoded size per book is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShelfSerializationBenchmark {
+    @Param({"10", "100", "1000"})
+    public int shelfSize;
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    private ObjectMapper mapper;
+    private Shelf shelf;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        mapper = mapper(format);
+        shelf = new Shelf("Shelf A", shelfSize);
+        shelf.setId(1L);
+
+        for (int i = 0; i < shelfSize; i++) {
+            Book book = new Book(String.format("978-%09d", i), "Title " + i, "Author " + (i % 50));
+            book.setId((long) i + 1);
+            book.setStatus(BookStatus.SHELVED);
+            shelf.addBook(book);
+        }
+
+        shelf.setCurrentCapacity(shelfSize);
+
+        int size = mapper.writeValueAsBytes(shelf).length;
+        System.out.printf("%n%s: %d bytes, %.1f bytes per book%n", format, size, (double) size / shelfSize);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return mapper.writeValueAsBytes(shelf);
+    }
+
+    private static ObjectMapper mapper(String format) {
+        switch (format) {
+            case "smile":
+                SmileFactory factory = new SmileFactory();
+                factory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+                return new ObjectMapper(factory);
+            case "cbor":
+                return new ObjectMapper(new CBORFactory());
+            default:
+                return new ObjectMapper();
+        }
+    }
+}
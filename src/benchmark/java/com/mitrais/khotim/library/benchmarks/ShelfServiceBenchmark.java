@@ -0,0 +1,68 @@
+package com.mitrais.khotim.library.benchmarks;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.services.BookService;
+import com.mitrais.khotim.library.services.ShelfService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ShelfService.addBook followed by removeBook of the same book, against shelves already holding shelfSize books.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShelfServiceBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int shelfSize;
+
+    private ConfigurableApplicationContext context;
+    private ShelfService shelfService;
+    private BookService bookService;
+    private Long shelfId;
+    private Long bookId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkData.start("shelves-" + shelfSize, WebApplicationType.NONE);
+        shelfService = context.getBean(ShelfService.class);
+        bookService = context.getBean(BookService.class);
+
+        Shelf shelf = shelfService.save(new Shelf("Benchmark shelf", shelfSize + 1));
+        shelfId = shelf.getId();
+
+        List<Long> batch = new ArrayList<>();
+
+        for (int i = 0; i < shelfSize; i++) {
+            batch.add(bookService.save(new Book("isbn-" + i, "Filler " + i, "Khotim")).getId());
+
+            if (batch.size() == 1000 || i == shelfSize - 1) {
+                shelfService.addBooks(shelfId, batch);
+                batch.clear();
+            }
+        }
+
+        bookId = bookService.save(new Book("isbn-bench", "Benchmark book", "Khotim")).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Shelf addThenRemoveBook() {
+        shelfService.addBook(shelfService.findById(shelfId).get(), bookService.findById(bookId).get());
+
+        return shelfService.removeBook(shelfService.findById(shelfId).get(), bookService.findById(bookId).get());
+    }
+}
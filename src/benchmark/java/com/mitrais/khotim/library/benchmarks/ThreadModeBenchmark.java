@@ -0,0 +1,64 @@
+package com.mitrais.khotim.library.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Book listing over HTTP from many concurrent clients, with requests on Tomcat's worker pool or on virtual
+ * threads. The virtual mode needs the benchmarks to run on Java 21 or later.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(256)
+@Fork(1)
+public class ThreadModeBenchmark {
+    private static final int BOOKS = 100000;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    private ConfigurableApplicationContext context;
+    private String booksUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkData.start("threads-" + threads, WebApplicationType.SERVLET,
+                "library.threads=" + threads,
+                "server.tomcat.max-threads=32",
+                "server.tomcat.accept-count=1000");
+        BenchmarkData.seed(context, BOOKS);
+
+        int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        booksUrl = "http://localhost:" + port + "/api/books?status=shelved&limit=50&after=";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int listBooks() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(booksUrl + ThreadLocalRandom.current().nextInt(BOOKS)).openConnection();
+        connection.setRequestProperty("Accept", "application/json");
+
+        try (InputStream in = connection.getInputStream()) {
+            StreamUtils.drain(in);
+        }
+
+        return connection.getResponseCode();
+    }
+}
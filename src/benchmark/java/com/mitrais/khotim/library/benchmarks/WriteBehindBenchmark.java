@@ -0,0 +1,99 @@
+package com.mitrais.khotim.library.benchmarks;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.services.BookService;
+import com.mitrais.khotim.library.services.ShelfService;
+import com.mitrais.khotim.library.writebehind.OperationType;
+import com.mitrais.khotim.library.writebehind.PendingOperation;
+import com.mitrais.khotim.library.writebehind.WriteBehindQueue;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shelving then unshelving a burst of books one transaction per book with ShelfService.addBook/removeBook,
+ * against queuing the same operations in the WriteBehindQueue and waiting until they're written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(2 * WriteBehindBenchmark.BURST)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBehindBenchmark {
+    static final int BURST = 1000;
+    private static final int SHELVES = 10;
+
+    @Param({"sync", "write-behind"})
+    public String mode;
+
+    private ConfigurableApplicationContext context;
+    private ShelfService shelfService;
+    private BookService bookService;
+    private WriteBehindQueue queue;
+    private List<Long> shelfIds = new ArrayList<>();
+    private List<Long> bookIds = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkData.start("write-behind-" + mode, WebApplicationType.NONE, "library.write-behind.enabled=true");
+        shelfService = context.getBean(ShelfService.class);
+        bookService = context.getBean(BookService.class);
+        queue = context.getBean(WriteBehindQueue.class);
+
+        for (int i = 0; i < SHELVES; i++) {
+            shelfIds.add(shelfService.save(new Shelf("Benchmark shelf " + i, BURST)).getId());
+        }
+
+        for (int i = 0; i < BURST; i++) {
+            bookIds.add(bookService.save(new Book("isbn-" + i, "Burst " + i, "Khotim")).getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void shelveThenUnshelve() throws Exception {
+        if (mode.equals("sync")) {
+            apply(OperationType.ADD);
+            apply(OperationType.REMOVE);
+        } else {
+            submit(OperationType.ADD);
+            submit(OperationType.REMOVE);
+        }
+    }
+
+    private void apply(OperationType type) {
+        for (int i = 0; i < BURST; i++) {
+            Shelf shelf = shelfService.findById(shelfIds.get(i % SHELVES)).get();
+            Book book = bookService.findById(bookIds.get(i)).get();
+
+            if (type == OperationType.ADD) {
+                shelfService.addBook(shelf, book);
+            } else {
+                shelfService.removeBook(shelf, book);
+            }
+        }
+    }
+
+    private void submit(OperationType type) throws Exception {
+        List<PendingOperation> operations = new ArrayList<>(BURST);
+
+        for (int i = 0; i < BURST; i++) {
+            operations.add(queue.submit(type, shelfIds.get(i % SHELVES), bookIds.get(i)));
+        }
+
+        for (PendingOperation operation : operations) {
+            operation.getCompletion().get(1, TimeUnit.MINUTES);
+        }
+    }
+}
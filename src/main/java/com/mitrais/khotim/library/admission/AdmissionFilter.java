@@ -0,0 +1,192 @@
+package com.mitrais.khotim.library.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Admits requests before they reach a controller, rejecting the rest without touching the database:
+ * <ul>
+ *     <li>429 when the client used up its token bucket, one for reads, one for writes and one for writes to the
+ *     bulk paths per client, identified by its X-API-Key header when that's a configured key or else its
+ *     address.</li>
+ *     <li>503 when the adaptive concurrency limit is reached. Writes may only use part of it, so reads keep
+ *     getting through while writes are shed.</li>
+ * </ul>
+ * Admitting a known client takes a few compare-and-sets and allocates nothing.
+ */
+public class AdmissionFilter extends OncePerRequestFilter {
+    static final String API_KEY_HEADER = "X-API-Key";
+
+    private static final byte[] RATE_LIMITED = "{\"admission\":\"Too many requests, retry later\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] OVERLOADED = "{\"admission\":\"Server is overloaded, retry later\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final Cache<String, ClientBuckets> clients;
+    private final Function<String, ClientBuckets> newClient;
+    private final Set<String> apiKeys;
+    private final Set<String> bulkPaths;
+    private final AimdLimiter limiter;
+    private final double writeShare;
+
+    private final Counter readsRateLimited;
+    private final Counter writesRateLimited;
+    private final Counter bulkRateLimited;
+    private final Counter readsShed;
+    private final Counter writesShed;
+
+    AdmissionFilter(AdmissionProperties properties, MeterRegistry registry) {
+        this.clients = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxClients())
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+        this.newClient = client -> new ClientBuckets(properties, System.nanoTime());
+        this.apiKeys = properties.getApiKeys();
+        this.bulkPaths = properties.getBulkPaths();
+        this.limiter = new AimdLimiter(properties.getInitialLimit(), properties.getMinLimit(), properties.getMaxLimit(),
+                TimeUnit.MILLISECONDS.toNanos(properties.getLatencyTarget()), System.nanoTime());
+        this.writeShare = properties.getWriteShare();
+
+        this.readsRateLimited = rejected(registry, "rate", "read");
+        this.writesRateLimited = rejected(registry, "rate", "write");
+        this.bulkRateLimited = rejected(registry, "rate", "bulk");
+        this.readsShed = rejected(registry, "overload", "read");
+        this.writesShed = rejected(registry, "overload", "write");
+
+        Gauge.builder("library.admission.limit", limiter, AimdLimiter::getLimit)
+                .description("Requests admitted at the same time")
+                .register(registry);
+        Gauge.builder("library.admission.inflight", limiter, AimdLimiter::getInFlight)
+                .description("Admitted requests in flight")
+                .register(registry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean read = isRead(request.getMethod());
+        boolean bulk = !read && bulkPaths.contains(request.getRequestURI().substring(request.getContextPath().length()));
+        ClientBuckets buckets = clients.get(client(request), newClient);
+        long start = System.nanoTime();
+        long wait = (read ? buckets.reads : bulk ? buckets.bulk : buckets.writes).tryAcquire(start);
+
+        if (wait > 0) {
+            (read ? readsRateLimited : bulk ? bulkRateLimited : writesRateLimited).increment();
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, TimeUnit.NANOSECONDS.toSeconds(wait) + 1, RATE_LIMITED);
+            return;
+        }
+
+        if (!limiter.tryAcquire(read ? 1 : writeShare)) {
+            (read ? readsShed : writesShed).increment();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1, OVERLOADED);
+            return;
+        }
+
+        boolean failed = true;
+
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener());
+            } else {
+                long now = System.nanoTime();
+                limiter.release(now - start, failed || response.getStatus() >= 500, now);
+            }
+        }
+    }
+
+    AimdLimiter getLimiter() {
+        return limiter;
+    }
+
+    private static boolean isRead(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+
+    private String client(HttpServletRequest request) {
+        String apiKey = request.getHeader(API_KEY_HEADER);
+
+        return apiKey != null && apiKeys.contains(apiKey) ? apiKey : request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfter, byte[] body) throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private static Counter rejected(MeterRegistry registry, String reason, String kind) {
+        return Counter.builder("library.admission.rejected")
+                .description("Requests rejected before reaching a controller")
+                .tag("reason", reason)
+                .tag("kind", kind)
+                .register(registry);
+    }
+
+    private static class ClientBuckets {
+        private final TokenBucket reads;
+        private final TokenBucket writes;
+        private final TokenBucket bulk;
+
+        ClientBuckets(AdmissionProperties properties, long now) {
+            reads = new TokenBucket(properties.getReadRate(), properties.getReadBurst(), now);
+            writes = new TokenBucket(properties.getWriteRate(), properties.getWriteBurst(), now);
+            bulk = new TokenBucket(properties.getBulkRate(), properties.getBulkBurst(), now);
+        }
+    }
+
+    /**
+     * Releases a streamed or deferred response once it's done, without taking its duration as a latency signal.
+     */
+    private class ReleasingListener implements AsyncListener {
+        private boolean released = false;
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        private synchronized void release() {
+            if (!released) {
+                released = true;
+                limiter.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.mitrais.khotim.library.admission;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Limits applied by the {@link AdmissionFilter}, rates are per client and second.
+ */
+@Getter
+@Setter
+@ConfigurationProperties("library.admission")
+public class AdmissionProperties {
+    private boolean enabled = true;
+
+    private double readRate = 500;
+    private int readBurst = 1000;
+    private double writeRate = 20;
+    private int writeBurst = 40;
+
+    /**
+     * Writes to these paths, which carry many books per request or are meant for bursts, use a bucket of their
+     * own instead of the write bucket.
+     */
+    private Set<String> bulkPaths = new HashSet<>(Arrays.asList(
+            "/api/libraries/addBooks", "/api/libraries/removeBooks", "/api/libraries/operations"));
+    private double bulkRate = 500;
+    private int bulkBurst = 1000;
+
+    /**
+     * API keys clients are identified by. Other keys are ignored and the client is identified by its address,
+     * so a client can't get a fresh bucket by sending a new key.
+     */
+    private Set<String> apiKeys = new HashSet<>();
+
+    /**
+     * Clients whose buckets are kept, the least recently seen ones start over with a full bucket.
+     */
+    private long maxClients = 100_000;
+
+    private int initialLimit = 20;
+    private int minLimit = 4;
+    private int maxLimit = 200;
+
+    /**
+     * Milliseconds a request may take before the concurrency limit shrinks.
+     */
+    private long latencyTarget = 250;
+
+    /**
+     * Share of the concurrency limit writes may use, the rest is kept for reads.
+     */
+    private double writeShare = 0.75;
+}
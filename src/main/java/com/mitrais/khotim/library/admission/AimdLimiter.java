@@ -0,0 +1,116 @@
+package com.mitrais.khotim.library.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit that adapts to latency: it grows by one per limit's worth of requests that finish under
+ * the latency target while the limit is in use, and shrinks by a tenth, at most once per target, when a
+ * request is slower or fails. The limit is kept in thousandths so the additive steps add up.
+ */
+class AimdLimiter {
+    private static final long SCALE = 1000;
+
+    private final long minLimit;
+    private final long maxLimit;
+    private final long latencyTarget;
+    private final AtomicLong limit;
+    private final AtomicLong lastDecrease;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * @param initialLimit
+     * @param minLimit
+     * @param maxLimit
+     * @param latencyTarget Nanoseconds a request may take before it counts as slow.
+     * @param now Current System.nanoTime().
+     */
+    AimdLimiter(int initialLimit, int minLimit, int maxLimit, long latencyTarget, long now) {
+        this.minLimit = minLimit * SCALE;
+        this.maxLimit = maxLimit * SCALE;
+        this.latencyTarget = latencyTarget;
+        this.limit = new AtomicLong(initialLimit * SCALE);
+        this.lastDecrease = new AtomicLong(now - latencyTarget);
+    }
+
+    /**
+     * Admits a request when fewer than the given share of the limit are in flight.
+     *
+     * @param share Share of the limit this kind of request may use, from 0 to 1.
+     * @return Whether the request was admitted, it must be released when it was.
+     */
+    boolean tryAcquire(double share) {
+        long allowed = Math.max(1, (long) (limit.get() * share) / SCALE);
+
+        for (;;) {
+            int current = inFlight.get();
+
+            if (current >= allowed) {
+                return false;
+            }
+
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases an admitted request and adjusts the limit to how it went.
+     *
+     * @param latency Nanoseconds since the request was admitted.
+     * @param failed Whether the request failed in a way that may come from overload.
+     * @param now Current System.nanoTime().
+     */
+    void release(long latency, boolean failed, long now) {
+        int current = inFlight.getAndDecrement();
+
+        if (failed || latency > latencyTarget) {
+            long last = lastDecrease.get();
+
+            if (now - last >= latencyTarget && lastDecrease.compareAndSet(last, now)) {
+                decrease();
+            }
+        } else if (current * SCALE * 2 >= limit.get()) {
+            increase();
+        }
+    }
+
+    /**
+     * Releases an admitted request without adjusting the limit, for long-lived responses whose duration says
+     * nothing about load.
+     */
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    int getLimit() {
+        return (int) (limit.get() / SCALE);
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void increase() {
+        for (;;) {
+            long current = limit.get();
+            long next = Math.min(maxLimit, current + SCALE * SCALE / current);
+
+            if (next == current || limit.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    private void decrease() {
+        for (;;) {
+            long current = limit.get();
+            long next = Math.max(minLimit, current * 9 / 10);
+
+            if (next == current || limit.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+}
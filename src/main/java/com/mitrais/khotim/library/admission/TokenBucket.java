@@ -0,0 +1,46 @@
+package com.mitrais.khotim.library.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket kept as the single time at which it would be full again (the generic cell rate algorithm),
+ * so taking a token is one compare-and-set and nothing has to refill it in the background.
+ */
+class TokenBucket {
+    private final long interval;
+    private final long capacity;
+    private final AtomicLong fullAt;
+
+    /**
+     * @param ratePerSecond Tokens added per second.
+     * @param burst Tokens the bucket holds, starting full.
+     * @param now Current System.nanoTime().
+     */
+    TokenBucket(double ratePerSecond, int burst, long now) {
+        this.interval = (long) (1_000_000_000L / ratePerSecond);
+        this.capacity = interval * burst;
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Takes a token if there is one.
+     *
+     * @param now Current System.nanoTime().
+     * @return 0 when a token was taken, otherwise the nanoseconds until there is one.
+     */
+    long tryAcquire(long now) {
+        for (;;) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + interval;
+            long wait = next - now - capacity;
+
+            if (wait > 0) {
+                return wait;
+            }
+
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.mitrais.khotim.library.apis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Binary encodings of the JSON responses, picked with the Accept header. JSON stays the default.
+ *
+ * Both carry the same fields as the JSON, in the order given by @JsonPropertyOrder on Book and Shelf.
+ * Smile also writes each repeated property name and short string value once and refers back to it
+ * afterwards, which is where most of its savings on lists of books come from.
+ */
+@Configuration
+public class BinaryFormatConfiguration {
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final String APPLICATION_CBOR_VALUE = "application/cbor";
+
+    /**
+     * Configures the mapper like Spring Boot's JSON mapper without changing the builder.
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        SmileFactory factory = new SmileFactory();
+        factory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+
+        ObjectMapper mapper = new ObjectMapper(factory);
+        builder.configure(mapper);
+
+        return new MappingJackson2SmileHttpMessageConverter(mapper);
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        ObjectMapper mapper = new ObjectMapper(new CBORFactory());
+        builder.configure(mapper);
+
+        return new MappingJackson2CborHttpMessageConverter(mapper);
+    }
+}
@@ -1,29 +1,92 @@
 package com.mitrais.khotim.library.apis;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.errors.ErrorBody;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+import com.mitrais.khotim.library.placement.ShelfPlacement;
 import com.mitrais.khotim.library.services.BookService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/books")
 public class BookController {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
     private final BookService bookService;
+    private final ShelfPlacement shelfPlacement;
+    private final ObjectMapper mapper;
 
     @Autowired
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, ShelfPlacement shelfPlacement, ObjectMapper mapper) {
         this.bookService = bookService;
+        this.shelfPlacement = shelfPlacement;
+        this.mapper = mapper;
     }
 
-    @GetMapping
-    public List<Book> getAll(
+    @GetMapping(produces = {
+            MediaType.APPLICATION_JSON_VALUE,
+            BinaryFormatConfiguration.APPLICATION_SMILE_VALUE,
+            BinaryFormatConfiguration.APPLICATION_CBOR_VALUE
+    })
+    public BookPage getAll(
+            @RequestParam(required = false, defaultValue = "") String title,
+            @RequestParam(required = false, defaultValue = "") String status,
+            @RequestParam(required = false, defaultValue = "0") long after,
+            @RequestParam(required = false, defaultValue = "" + DEFAULT_LIMIT) int limit
+    ) {
+        int pageSize = pageSize(limit);
+
+        return BookPage.of(bookService.findByTitleAndStatus(title, status, after, pageSize + 1), pageSize);
+    }
+
+    @GetMapping(produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream(
             @RequestParam(required = false, defaultValue = "") String title,
             @RequestParam(required = false, defaultValue = "") String status
     ) {
-        return bookService.findByTitleAndStatus(title, status);
+        StreamingResponseBody body = out -> {
+            try (SequenceWriter writer = mapper.writer().withRootValueSeparator("\n").writeValues(out)) {
+                bookService.streamByTitleAndStatus(title, status, book -> {
+                    try {
+                        writer.write(book);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+
+    @GetMapping("/search")
+    public List<Book> search(
+            @RequestParam String q,
+            @RequestParam(required = false, defaultValue = "") String status,
+            @RequestParam(required = false, defaultValue = "" + DEFAULT_LIMIT) int limit
+    ) {
+        return bookService.search(q, status, pageSize(limit));
+    }
+
+    @GetMapping("/counts")
+    public Map<String, Long> counts() {
+        return bookService.countByStatus();
     }
 
     @GetMapping("/{id}")
@@ -32,4 +95,28 @@ public class BookController {
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
-}
\ No newline at end of file
+
+    /**
+     * Adds the book into a shelf with room picked by the strategy: first-fit, best-fit or least-loaded.
+     *
+     * @param id
+     * @param strategy
+     * @return The shelf the book was added into.
+     */
+    @PostMapping("/{id}/autoShelve")
+    public Shelf autoShelve(@PathVariable Long id, @RequestParam(required = false) String strategy) {
+        return shelfPlacement.autoShelve(id, strategy);
+    }
+
+    @ExceptionHandler(ShelfOperationException.class)
+    public ResponseEntity<byte[]> handleRejectedOperation(ShelfOperationException e) {
+        return ErrorBody.response(e);
+    }
+
+    /**
+     * Clamps the requested limit between 1 and {@link #MAX_LIMIT}.
+     */
+    static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+}
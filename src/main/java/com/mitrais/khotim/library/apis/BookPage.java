@@ -0,0 +1,37 @@
+package com.mitrais.khotim.library.apis;
+
+import com.mitrais.khotim.library.domains.Book;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookPage {
+    private List<Book> books;
+
+    /**
+     * Id to pass as after to get the next page, null on the last page.
+     */
+    private Long next;
+
+    /**
+     * Builds the page from a query for one book more than the page size, the extra book only tells
+     * there's a next page without a count query.
+     *
+     * @param books
+     * @param pageSize
+     * @return
+     */
+    public static BookPage of(List<Book> books, int pageSize) {
+        if (books.size() > pageSize) {
+            List<Book> page = books.subList(0, pageSize);
+            return new BookPage(page, page.get(pageSize - 1).getId());
+        }
+
+        return new BookPage(books, null);
+    }
+}
@@ -0,0 +1,34 @@
+package com.mitrais.khotim.library.apis;
+
+import com.mitrais.khotim.library.changes.ChangeStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/changes")
+public class ChangeController {
+    private final ChangeStream changeStream;
+
+    @Autowired
+    public ChangeController(ChangeStream changeStream) {
+        this.changeStream = changeStream;
+    }
+
+    /**
+     * Streams book changes as server-sent events. Reconnecting clients resume after the Last-Event-ID they
+     * send, which takes precedence over since.
+     *
+     * @param since Seq of the last change already seen, 0 for all of them.
+     * @param lastEventId
+     * @return
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changes(
+            @RequestParam(required = false, defaultValue = "0") long since,
+            @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId
+    ) {
+        return changeStream.subscribe(lastEventId != null ? lastEventId : since);
+    }
+}
@@ -2,93 +2,163 @@ package com.mitrais.khotim.library.apis;
 
 import com.mitrais.khotim.library.domains.Book;
 import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.errors.ErrorBody;
+import com.mitrais.khotim.library.errors.Rejection;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
 import com.mitrais.khotim.library.services.BookService;
+import com.mitrais.khotim.library.services.BulkResult;
+import com.mitrais.khotim.library.services.ShelfRules;
 import com.mitrais.khotim.library.services.ShelfService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/api/libraries")
 public class LibraryController {
     private final ShelfService shelfService;
     private final BookService bookService;
+    private final MeterRegistry meterRegistry;
 
     @Autowired
-    public LibraryController(ShelfService shelfService, BookService bookService) {
+    public LibraryController(ShelfService shelfService, BookService bookService, MeterRegistry meterRegistry) {
         this.shelfService = shelfService;
         this.bookService = bookService;
+        this.meterRegistry = meterRegistry;
     }
 
+    /**
+     * Lists all shelves with their books, or only their names and capacities when summary is true.
+     *
+     * @param summary
+     * @return
+     */
     @GetMapping
-    public List<Shelf> getAll() {
-        return shelfService.findAll();
+    public List<?> getAll(@RequestParam(required = false, defaultValue = "false") boolean summary) {
+        return summary ? shelfService.findAllSummaries() : shelfService.findAllWithBooks();
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<Shelf> getOne(@PathVariable Long id) {
-        return shelfService.findById(id)
+        return shelfService.findByIdWithBooks(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @PutMapping("/{id}/addBook")
     public ResponseEntity<?> addBook(@PathVariable long id, @RequestBody Book pBook) {
-        return doOperation(id, pBook, "add");
+        return doOperation(id, pBook, "add", ShelfRules.EARLY_ADD);
     }
 
     @DeleteMapping("/{id}/removeBook")
     public ResponseEntity<?> removeBook(@PathVariable long id, @RequestBody Book pBook) {
-        return doOperation(id, pBook, "remove");
+        return doOperation(id, pBook, "remove", ShelfRules.REMOVE);
     }
 
-    private ResponseEntity<?> doOperation(long id, Book pBook, String operation) {
-        Map<String, String> messages = new HashMap<>();
-        HttpStatus httpStatus = HttpStatus.OK;
+    @PutMapping("/addBooks")
+    public List<BulkResult> addBooks(@RequestBody List<ShelfBooks> shelves) {
+        verify(shelves);
+        List<BulkResult> results = new ArrayList<>();
 
-        Shelf shelf = shelfService.findById(id).orElse(null);
-
-        if (shelf == null) {
-            messages.put("shelf", "There's no shelf found with id " + id);
-            return new ResponseEntity<>(messages, httpStatus);
+        for (ShelfBooks shelf : shelves) {
+            results.addAll(shelfService.addBooks(shelf.getShelfId(), shelf.getBookIds()));
         }
 
-        if (operation.equals("add") && shelf.getCurrentCapacity() == shelf.getMaxCapacity()) {
-            messages.put("shelf", "Shelf " + shelf.getName() + " already reached maximum capacity");
-            return new ResponseEntity<>(messages, httpStatus);
-        }
+        return results;
+    }
 
-        Book book = bookService.findById(pBook.getId()).orElse(null);
+    @DeleteMapping("/removeBooks")
+    public List<BulkResult> removeBooks(@RequestBody List<ShelfBooks> shelves) {
+        verify(shelves);
+        List<BulkResult> results = new ArrayList<>();
 
-        if (book == null) {
-            messages.put("book", "There's no book found with id " + pBook.getId());
-            return new ResponseEntity<>(messages, httpStatus);
+        for (ShelfBooks shelf : shelves) {
+            results.addAll(shelfService.removeBooks(shelf.getShelfId(), shelf.getBookIds()));
         }
 
-        if (operation.equals("remove")) {
-            if (!shelf.getBooks().contains(book)) {
-                messages.put("shelf", "There's no book " + book.getTitle() + " in shelf " + shelf.getName());
-                return new ResponseEntity<>(messages, httpStatus);
+        return results;
+    }
+
+    /**
+     * Rejects the whole request when an entry lacks its shelf id or book ids, before any of them is applied.
+     */
+    private static void verify(List<ShelfBooks> shelves) {
+        for (ShelfBooks shelf : shelves) {
+            if (shelf == null || shelf.getShelfId() == null) {
+                throw new ShelfOperationException(Rejection.SHELF_ID_REQUIRED);
             }
 
-            return new ResponseEntity<>(shelfService.removeBook(shelf, book), httpStatus);
+            if (shelf.getBookIds() == null) {
+                throw new ShelfOperationException(Rejection.BOOK_IDS_REQUIRED);
+            }
         }
+    }
+
+    /**
+     * Answers a rejected operation with the rejection's status, 404, 409 or 422, and its code and message.
+     *
+     * @param e
+     * @return
+     */
+    @ExceptionHandler(ShelfOperationException.class)
+    public ResponseEntity<byte[]> handleRejectedOperation(ShelfOperationException e) {
+        return ErrorBody.response(e);
+    }
 
-        if (shelf.getBooks().contains(book)) {
-            messages.put("shelf", "Book " + book.getTitle() + " already exists in shelf " + shelf.getName());
-            return new ResponseEntity<>(messages, httpStatus);
+    /**
+     * Runs the operation and records how long it took under library.shelf.operation, tagged with its outcome:
+     * success, the rejection's code or error.
+     */
+    private ResponseEntity<?> doOperation(long id, Book pBook, String operation, ShelfRules.Rule rule) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+
+        try {
+            ResponseEntity<?> response = ResponseEntity.ok(withBooks(operate(id, pBook, operation, rule)));
+            outcome = "success";
+            return response;
+        } catch (ShelfOperationException e) {
+            outcome = e.getRejection().getCode();
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("library.shelf.operation", "operation", operation, "outcome", outcome));
+        }
+    }
+
+    /**
+     * Rejects what can be told from the cached shelf and book before the service checks again under lock.
+     */
+    private Shelf operate(long id, Book pBook, String operation, ShelfRules.Rule rule) {
+        Shelf shelf = shelfService.findById(id)
+                .orElseThrow(() -> new ShelfOperationException(Rejection.SHELF_NOT_FOUND, Long.toString(id)));
+
+        if (operation.equals("add")) {
+            // A full shelf is rejected without looking the book up.
+            ShelfRules.HAS_ROOM.verify(shelf, pBook);
         }
 
-        if (book.getStatus().equals(Book.SHELVED)) {
-            messages.put("book", "Book " + book.getTitle() + " is already shelved in shelf " + book.getShelf().getName());
-            return new ResponseEntity<>(messages, httpStatus);
+        if (pBook == null || pBook.getId() == null) {
+            throw new ShelfOperationException(Rejection.BOOK_ID_REQUIRED);
         }
 
-        return new ResponseEntity<>(shelfService.addBook(shelf, book), httpStatus);
+        Book book = bookService.findById(pBook.getId())
+                .orElseThrow(() -> new ShelfOperationException(Rejection.BOOK_NOT_FOUND, pBook.getId().toString()));
+
+        rule.verify(shelf, book);
+
+        return operation.equals("add") ? shelfService.addBook(shelf, book) : shelfService.removeBook(shelf, book);
+    }
+
+    /**
+     * Reads the saved shelf back with its books. They're lazy and can't be loaded once the operation's
+     * transaction is over when open-in-view is off.
+     */
+    private Shelf withBooks(Shelf saved) {
+        return shelfService.findByIdWithBooks(saved.getId()).orElse(saved);
     }
 }
@@ -0,0 +1,110 @@
+package com.mitrais.khotim.library.apis;
+
+import com.mitrais.khotim.library.errors.ErrorBody;
+import com.mitrais.khotim.library.errors.Rejection;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+import com.mitrais.khotim.library.writebehind.OperationResult;
+import com.mitrais.khotim.library.writebehind.OperationType;
+import com.mitrais.khotim.library.writebehind.PendingOperation;
+import com.mitrais.khotim.library.writebehind.WriteBehindQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.net.URI;
+
+/**
+ * Shelf operations written in the background by the {@link WriteBehindQueue}, when it's enabled.
+ */
+@RestController
+@RequestMapping("/api/libraries/operations")
+@ConditionalOnProperty(name = "library.write-behind.enabled", havingValue = "true")
+public class OperationController {
+    public static final long MAX_WAIT = 30000;
+
+    private final WriteBehindQueue queue;
+
+    @Autowired
+    public OperationController(WriteBehindQueue queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Queues the operation and answers 202 with its id before it's written.
+     *
+     * @param operation
+     * @return
+     */
+    @PostMapping
+    public ResponseEntity<OperationResult> submit(@RequestBody ShelfOperation operation) {
+        PendingOperation pending = queue.submit(type(operation.getOperation()), operation.getShelfId(), operation.getBookId());
+
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/libraries/operations/" + pending.getId()))
+                .body(pending.getResult());
+    }
+
+    /**
+     * Gets the operation's result, 202 while it's pending.
+     *
+     * @param id
+     * @return
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<OperationResult> get(@PathVariable String id) {
+        PendingOperation pending = queue.find(id);
+
+        return pending != null ? response(pending.getResult()) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Gets the operation's result once it's done, or after wait milliseconds with 202 when it's still pending.
+     *
+     * @param id
+     * @param wait Milliseconds to wait, at most {@link #MAX_WAIT}.
+     * @return
+     */
+    @GetMapping(value = "/{id}", params = "wait")
+    public DeferredResult<ResponseEntity<OperationResult>> await(@PathVariable String id, @RequestParam long wait) {
+        PendingOperation pending = queue.find(id);
+
+        if (pending == null) {
+            DeferredResult<ResponseEntity<OperationResult>> response = new DeferredResult<>();
+            response.setResult(ResponseEntity.notFound().build());
+
+            return response;
+        }
+
+        DeferredResult<ResponseEntity<OperationResult>> response = new DeferredResult<>(Math.max(1, Math.min(wait, MAX_WAIT)));
+        response.onTimeout(() -> response.setResult(response(pending.getResult())));
+        pending.getCompletion().thenAccept(result -> response.setResult(response(result)));
+
+        return response;
+    }
+
+    @ExceptionHandler(ShelfOperationException.class)
+    public ResponseEntity<byte[]> handleRejectedOperation(ShelfOperationException e) {
+        return ErrorBody.response(e);
+    }
+
+    /**
+     * Gets the operation's type, null when it's missing so the queue rejects it.
+     */
+    private static OperationType type(String operation) {
+        if (operation == null) {
+            return null;
+        }
+
+        return OperationType.find(operation)
+                .orElseThrow(() -> new ShelfOperationException(Rejection.UNKNOWN_OPERATION, operation));
+    }
+
+    private static ResponseEntity<OperationResult> response(OperationResult result) {
+        HttpStatus status = OperationResult.PENDING.equals(result.getStatus()) ? HttpStatus.ACCEPTED : HttpStatus.OK;
+
+        return new ResponseEntity<>(result, status);
+    }
+}
@@ -0,0 +1,64 @@
+package com.mitrais.khotim.library.apis;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.services.ReactiveLibraryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static com.mitrais.khotim.library.apis.BookController.DEFAULT_LIMIT;
+
+/**
+ * Same lookups as {@link BookController} without holding a request thread while the database is queried.
+ * Lists are returned as one JSON array, or streamed one book per line with Accept: application/stream+json.
+ */
+@RestController
+@RequestMapping("/api/reactive/books")
+public class ReactiveBookController {
+    private final ReactiveLibraryService libraryService;
+
+    @Autowired
+    public ReactiveBookController(ReactiveLibraryService libraryService) {
+        this.libraryService = libraryService;
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<BookPage> getAll(
+            @RequestParam(required = false, defaultValue = "") String title,
+            @RequestParam(required = false, defaultValue = "") String status,
+            @RequestParam(required = false, defaultValue = "0") long after,
+            @RequestParam(required = false, defaultValue = "" + DEFAULT_LIMIT) int limit
+    ) {
+        int pageSize = BookController.pageSize(limit);
+
+        return libraryService.findBooks(title, status, after, pageSize + 1)
+                .map(books -> BookPage.of(books, pageSize));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public Flux<Book> stream(
+            @RequestParam(required = false, defaultValue = "") String title,
+            @RequestParam(required = false, defaultValue = "") String status
+    ) {
+        return libraryService.streamBooks(title, status);
+    }
+
+    @GetMapping("/search")
+    public Flux<Book> search(
+            @RequestParam String q,
+            @RequestParam(required = false, defaultValue = "") String status,
+            @RequestParam(required = false, defaultValue = "" + DEFAULT_LIMIT) int limit
+    ) {
+        return libraryService.search(q, status, BookController.pageSize(limit));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Book>> getOne(@PathVariable Long id) {
+        return libraryService.findBookById(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,35 @@
+package com.mitrais.khotim.library.apis;
+
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.services.ReactiveLibraryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Same lookups as {@link LibraryController} without holding a request thread while the database is queried.
+ */
+@RestController
+@RequestMapping("/api/reactive/libraries")
+public class ReactiveLibraryController {
+    private final ReactiveLibraryService libraryService;
+
+    @Autowired
+    public ReactiveLibraryController(ReactiveLibraryService libraryService) {
+        this.libraryService = libraryService;
+    }
+
+    @GetMapping
+    public Flux<?> getAll(@RequestParam(required = false, defaultValue = "false") boolean summary) {
+        return summary ? libraryService.findAllShelfSummaries() : libraryService.findAllShelves();
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Shelf>> getOne(@PathVariable Long id) {
+        return libraryService.findShelfById(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
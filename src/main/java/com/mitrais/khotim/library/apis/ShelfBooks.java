@@ -0,0 +1,23 @@
+package com.mitrais.khotim.library.apis;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * Books to add to or remove from one shelf in a bulk request. Both fields are required, the controller rejects
+ * the request when either is missing.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShelfBooks {
+    @NotNull
+    private Long shelfId;
+
+    @NotNull
+    private List<Long> bookIds;
+}
@@ -0,0 +1,18 @@
+package com.mitrais.khotim.library.apis;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A book to add to or remove from a shelf in the background. The operation is kept as sent, so a missing or
+ * unknown one can be answered with its rejection.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShelfOperation {
+    private String operation;
+    private Long shelfId;
+    private Long bookId;
+}
@@ -0,0 +1,84 @@
+package com.mitrais.khotim.library.changes;
+
+import com.mitrais.khotim.library.domains.ChangeEvent;
+import com.mitrais.khotim.library.repositories.ChangeEventRepository;
+import com.mitrais.khotim.library.services.ShelfService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tails the published outbox events and refreshes this instance's caches, search index, replica and status
+ * counts for the changes other instances made. Changes made here already refreshed them when they committed.
+ */
+@Component
+public class ChangeInvalidator {
+    static final int BATCH_SIZE = 500;
+
+    @Value("${library.changes.invalidation.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    private ChangeEventRepository repository;
+
+    @Autowired
+    private NodeId nodeId;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    private long lastSeq;
+
+    /**
+     * Starts after the events published before this instance loaded anything.
+     */
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            lastSeq = repository.findLastSeq();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${library.changes.invalidation-delay:200}")
+    public void invalidate() {
+        if (!enabled) {
+            return;
+        }
+
+        List<ChangeEvent> events;
+
+        do {
+            events = repository.findBySeqGreaterThanOrderBySeqAsc(lastSeq, PageRequest.of(0, BATCH_SIZE));
+
+            if (events.isEmpty()) {
+                return;
+            }
+
+            Set<Long> shelfIds = new LinkedHashSet<>();
+            Set<Long> bookIds = new LinkedHashSet<>();
+
+            for (ChangeEvent event : events) {
+                if (!nodeId.isSelf(event.getOrigin())) {
+                    bookIds.add(event.getBookId());
+
+                    if (event.getShelfId() != null) {
+                        shelfIds.add(event.getShelfId());
+                    }
+                }
+            }
+
+            if (!bookIds.isEmpty()) {
+                shelfService.refresh(shelfIds, bookIds);
+            }
+
+            lastSeq = events.get(events.size() - 1).getSeq();
+        } while (events.size() == BATCH_SIZE);
+    }
+}
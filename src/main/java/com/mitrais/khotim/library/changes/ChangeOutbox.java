@@ -0,0 +1,42 @@
+package com.mitrais.khotim.library.changes;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.ChangeEvent;
+import com.mitrais.khotim.library.domains.ChangeType;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.repositories.ChangeEventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Writes book changes to the outbox table in the transaction that makes them, so an event exists exactly
+ * when its change is committed. {@link ChangeRelay} publishes them afterwards.
+ */
+@Component
+@Transactional(propagation = Propagation.MANDATORY)
+public class ChangeOutbox {
+    @Autowired
+    private ChangeEventRepository repository;
+
+    @Autowired
+    private NodeId nodeId;
+
+    public void bookSaved(Book book) {
+        save(new ChangeEvent(ChangeType.BOOK_SAVED, book, book.getShelfId()));
+    }
+
+    public void bookShelved(Book book, Shelf shelf) {
+        save(new ChangeEvent(ChangeType.BOOK_SHELVED, book, shelf.getId()));
+    }
+
+    public void bookUnshelved(Book book, Shelf shelf) {
+        save(new ChangeEvent(ChangeType.BOOK_UNSHELVED, book, shelf.getId()));
+    }
+
+    private void save(ChangeEvent event) {
+        event.setOrigin(nodeId.getValue());
+        repository.save(event);
+    }
+}
@@ -0,0 +1,80 @@
+package com.mitrais.khotim.library.changes;
+
+import com.mitrais.khotim.library.domains.ChangeEvent;
+import com.mitrais.khotim.library.repositories.ChangeEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Publishes the committed outbox events in batches: numbers them after the last published seq and hands
+ * them to the {@link ChangeStream} once the numbers are committed.
+ *
+ * Events are numbered in the order they're published rather than the order they were written, so an event
+ * whose transaction commits late still gets a seq after everything consumers have already seen. When two
+ * relays number the same events, the seq unique key and the event version let only one of them commit.
+ * Events another relay published are read back by the stream when this one has nothing to publish.
+ */
+@Component
+public class ChangeRelay {
+    static final int BATCH_SIZE = 500;
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeRelay.class);
+
+    @Value("${library.changes.relay.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    private ChangeEventRepository repository;
+
+    @Autowired
+    private ChangeStream stream;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Scheduled(fixedDelayString = "${library.changes.relay-delay:200}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+
+        List<ChangeEvent> published;
+
+        do {
+            try {
+                published = transactionTemplate.execute(status -> number());
+            } catch (DataAccessException e) {
+                log.debug("Outbox events were published by another relay, retrying on the next run", e);
+                return;
+            }
+
+            if (!published.isEmpty()) {
+                stream.publish(published);
+            } else if (stream.size() > 0) {
+                stream.catchUp(repository.findLastSeq());
+            }
+        } while (published.size() == BATCH_SIZE);
+    }
+
+    private List<ChangeEvent> number() {
+        long seq = repository.findLastSeq();
+        List<ChangeEvent> events = repository.findBySeqIsNullOrderByIdAsc(PageRequest.of(0, BATCH_SIZE));
+
+        for (ChangeEvent event : events) {
+            event.setSeq(++seq);
+        }
+
+        repository.flush();
+
+        return events;
+    }
+}
@@ -0,0 +1,229 @@
+package com.mitrais.khotim.library.changes;
+
+import com.mitrais.khotim.library.domains.ChangeEvent;
+import com.mitrais.khotim.library.repositories.ChangeEventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends published change events to server-sent event subscribers, each event with its seq as the event id.
+ *
+ * A subscriber first gets the events after the seq it resumes from out of the outbox table, then the ones
+ * the relay publishes. Whenever an event arrives that doesn't follow the last one it got, the missing ones
+ * are read from the table first, so it gets every event once and in order.
+ *
+ * Sends run on a pool of library.changes.senders threads. Each subscriber only keeps the highest seq it's
+ * due and the last published batch, and has at most one send queued or running: events published while it's
+ * still sending raise that seq instead of queueing more work, and are read from the table if it falls behind
+ * the batch. A slow subscriber therefore holds up at most one sender thread and its connection.
+ */
+@Component
+public class ChangeStream {
+    static final int PAGE_SIZE = 500;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private ExecutorService executor;
+
+    @Value("${library.changes.timeout:300000}")
+    private long timeout;
+
+    @Value("${library.changes.senders:4}")
+    private int senders;
+
+    @Autowired
+    private ChangeEventRepository repository;
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newFixedThreadPool(senders, new CustomizableThreadFactory("changes-"));
+    }
+
+    /**
+     * Streams the events after the given seq and every event published from now on.
+     *
+     * @param since Seq of the last event the subscriber has seen, 0 for all of them.
+     * @return
+     */
+    public SseEmitter subscribe(long since) {
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeout), since);
+        subscribers.add(subscriber);
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+
+        subscriber.offer(repository.findLastSeq(), Collections.emptyList());
+
+        return subscriber.emitter;
+    }
+
+    /**
+     * Sends the events to every subscriber.
+     *
+     * @param events Events with consecutive seqs.
+     */
+    void publish(List<ChangeEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        long until = events.get(events.size() - 1).getSeq();
+
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(until, events);
+        }
+    }
+
+    /**
+     * Sends the events up to the given seq to the subscribers that haven't got them yet, for events
+     * published by another instance.
+     *
+     * @param seq
+     */
+    void catchUp(long seq) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.last < seq) {
+                subscriber.offer(seq, Collections.emptyList());
+            }
+        }
+    }
+
+    public int size() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    private class Subscriber {
+        private final SseEmitter emitter;
+        private final AtomicLong pending;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile List<ChangeEvent> recent = Collections.emptyList();
+        private volatile long last;
+        private volatile boolean closed;
+
+        Subscriber(SseEmitter emitter, long last) {
+            this.emitter = emitter;
+            this.last = last;
+            this.pending = new AtomicLong(last);
+        }
+
+        /**
+         * Marks the events up to seq as due, the given ones among them, and schedules a send unless one is
+         * already queued or running.
+         */
+        void offer(long until, List<ChangeEvent> events) {
+            if (!events.isEmpty()) {
+                recent = events;
+            }
+
+            pending.accumulateAndGet(until, Math::max);
+            schedule();
+        }
+
+        private void schedule() {
+            if (closed || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Shutting down.
+                scheduled.set(false);
+            }
+        }
+
+        private void drain() {
+            long until = 0;
+
+            try {
+                while (!closed && last < (until = pending.get())) {
+                    long before = last;
+                    send(until, recent);
+
+                    if (last == before) {
+                        // Not in the table yet, the next offer retries.
+                        break;
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The client went away or the emitter timed out.
+                close(e);
+            } catch (RuntimeException e) {
+                // Reading the outbox failed, the client reconnects and resumes from the last event it got.
+                close(e);
+            } finally {
+                scheduled.set(false);
+            }
+
+            // Events offered after the last check but before the flag was cleared.
+            if (pending.get() > until) {
+                schedule();
+            }
+        }
+
+        /**
+         * Sends the events up to seq until that it hasn't got yet, the given ones without reading them back.
+         */
+        private void send(long until, List<ChangeEvent> events) throws IOException {
+            for (ChangeEvent event : events) {
+                if (event.getSeq() > last) {
+                    catchUp(event.getSeq() - 1);
+                    emit(event);
+                }
+            }
+
+            catchUp(until);
+        }
+
+        private void catchUp(long until) throws IOException {
+            while (last < until) {
+                List<ChangeEvent> page = repository.findBySeqGreaterThanOrderBySeqAsc(last, PageRequest.of(0, PAGE_SIZE));
+
+                if (page.isEmpty()) {
+                    return;
+                }
+
+                for (ChangeEvent event : page) {
+                    emit(event);
+                }
+            }
+        }
+
+        private void emit(ChangeEvent event) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .id(String.valueOf(event.getSeq()))
+                    .name(event.getType().getValue())
+                    .data(event, MediaType.APPLICATION_JSON));
+            last = event.getSeq();
+        }
+
+        private void close(Exception e) {
+            closed = true;
+            subscribers.remove(this);
+            emitter.completeWithError(e);
+        }
+    }
+}
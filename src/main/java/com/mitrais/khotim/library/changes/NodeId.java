@@ -0,0 +1,30 @@
+package com.mitrais.khotim.library.changes;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Identifies this instance among the ones sharing the database, from library.node-id or else a random id.
+ */
+@Component
+public class NodeId {
+    private final String value;
+
+    public NodeId(@Value("${library.node-id:}") String configured) {
+        this.value = configured.isEmpty() ? UUID.randomUUID().toString() : configured;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @param origin
+     * @return Whether the origin of an event is this instance.
+     */
+    public boolean isSelf(String origin) {
+        return value.equals(origin);
+    }
+}
@@ -3,17 +3,25 @@ package com.mitrais.khotim.library.domains;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
-import javax.validation.constraints.Pattern;
 
-@Data
+@Getter
+@Setter
+@ToString(exclude = "shelf")
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(indexes = {
+    @Index(name = "book_shelf_id_idx", columnList = "shelf_id"),
+    @Index(name = "book_status_id_idx", columnList = "status, id")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 @JsonIdentityInfo(
@@ -21,9 +29,11 @@ import javax.validation.constraints.Pattern;
     property = "id"
 )
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@JsonPropertyOrder({"id", "isbn", "title", "author", "status", "shelfId"})
 public class Book {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private Long id;
 
     @NotNull
@@ -35,14 +45,9 @@ public class Book {
     @NotNull
     private String author;
 
-    public static final String SHELVED = "shelved";
-    public static final String NOT_SHELVED = "not_shelved";
-
-    @Pattern(
-        regexp = SHELVED + "|" + NOT_SHELVED,
-        flags = Pattern.Flag.CASE_INSENSITIVE
-    )
-    private String status = NOT_SHELVED;
+    @NotNull
+    @Column(length = 1, nullable = false)
+    private BookStatus status = BookStatus.NOT_SHELVED;
 
     @Column(name = "shelf_id", insertable = false, updatable = false)
     private Long shelfId;
@@ -60,14 +65,50 @@ public class Book {
         return shelfId;
     }
 
+    @Version
+    @JsonIgnore
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "shelf_id")
     @JsonIgnore
     private Shelf shelf;
 
+    /**
+     * Sets shelf, keeping shelfId in step so it's right before the book is reloaded.
+     *
+     * @param shelf
+     */
+    public void setShelf(Shelf shelf) {
+        this.shelf = shelf;
+        this.shelfId = shelf == null ? null : shelf.getId();
+    }
+
     public Book(@NotNull String isbn, @NotNull String title, @NotNull String author) {
         this.isbn = isbn;
         this.title = title;
         this.author = author;
     }
+
+    /**
+     * Books are equal when they have the same id, so comparisons don't touch the lazy shelf.
+     * Books that aren't persisted yet are only equal to themselves.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof Book)) {
+            return false;
+        }
+
+        return id != null && id.equals(((Book) o).getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Book.class.hashCode();
+    }
 }
@@ -0,0 +1,76 @@
+package com.mitrais.khotim.library.domains;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Optional;
+
+/**
+ * Whether a book is in a shelf. Stored as a one character code and written to JSON as its lower case value.
+ */
+public enum BookStatus {
+    SHELVED('S', "shelved"),
+    NOT_SHELVED('N', "not_shelved");
+
+    private final char code;
+    private final String value;
+
+    BookStatus(char code, String value) {
+        this.code = code;
+        this.value = value;
+    }
+
+    public char getCode() {
+        return code;
+    }
+
+    @JsonValue
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Finds the status with the given value, ignoring case.
+     *
+     * @param value
+     * @return Empty when no status has that value.
+     */
+    public static Optional<BookStatus> find(String value) {
+        for (BookStatus status : values()) {
+            if (status.value.equalsIgnoreCase(value)) {
+                return Optional.of(status);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Gets the status with the given value, ignoring case.
+     *
+     * @param value
+     * @return
+     * @throws IllegalArgumentException When no status has that value.
+     */
+    @JsonCreator
+    public static BookStatus of(String value) {
+        return find(value).orElseThrow(() -> new IllegalArgumentException("Unknown book status " + value));
+    }
+
+    /**
+     * Gets the status stored with the given code.
+     *
+     * @param code
+     * @return
+     * @throws IllegalArgumentException When no status has that code.
+     */
+    public static BookStatus ofCode(char code) {
+        for (BookStatus status : values()) {
+            if (status.code == code) {
+                return status;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown book status code " + code);
+    }
+}
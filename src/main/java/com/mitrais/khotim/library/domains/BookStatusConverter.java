@@ -0,0 +1,20 @@
+package com.mitrais.khotim.library.domains;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores a BookStatus as its one character code, so renaming or reordering the constants doesn't change the data.
+ */
+@Converter(autoApply = true)
+public class BookStatusConverter implements AttributeConverter<BookStatus, String> {
+    @Override
+    public String convertToDatabaseColumn(BookStatus status) {
+        return status == null ? null : String.valueOf(status.getCode());
+    }
+
+    @Override
+    public BookStatus convertToEntityAttribute(String code) {
+        return code == null ? null : BookStatus.ofCode(code.charAt(0));
+    }
+}
@@ -0,0 +1,85 @@
+package com.mitrais.khotim.library.domains;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+
+/**
+ * Change of a book written to the outbox in the transaction that made it, with the book's state after it.
+ *
+ * The seq is left empty until the relay publishes the event. Seqs are then handed out one after the
+ * other in the order events are published, so a consumer that has seen seq n has seen every event up to n.
+ */
+@Getter
+@Setter
+@ToString
+@Entity
+@Table(name = "change_event")
+@NoArgsConstructor
+@JsonPropertyOrder({"seq", "type", "bookId", "shelfId", "status", "isbn", "title", "author", "createdAt"})
+public class ChangeEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "change_event_seq")
+    @SequenceGenerator(name = "change_event_seq", sequenceName = "change_event_seq", allocationSize = 50)
+    @JsonIgnore
+    private Long id;
+
+    @Column(unique = true)
+    private Long seq;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    private ChangeType type;
+
+    @NotNull
+    @Column(nullable = false)
+    private Long bookId;
+
+    private Long shelfId;
+
+    @NotNull
+    @Column(length = 1, nullable = false)
+    private BookStatus status;
+
+    @NotNull
+    private String isbn;
+
+    @NotNull
+    private String title;
+
+    @NotNull
+    private String author;
+
+    @NotNull
+    private Instant createdAt;
+
+    /**
+     * Id of the instance that wrote the event.
+     */
+    @Column(length = 36)
+    @JsonIgnore
+    private String origin;
+
+    @Version
+    @JsonIgnore
+    private Long version;
+
+    public ChangeEvent(ChangeType type, Book book, Long shelfId) {
+        this.type = type;
+        this.bookId = book.getId();
+        this.shelfId = shelfId;
+        this.status = book.getStatus();
+        this.isbn = book.getIsbn();
+        this.title = book.getTitle();
+        this.author = book.getAuthor();
+        this.createdAt = Instant.now();
+    }
+}
@@ -0,0 +1,19 @@
+package com.mitrais.khotim.library.domains;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Locale;
+
+/**
+ * What happened to the book of a {@link ChangeEvent}. Written to JSON and as the SSE event name in lower case.
+ */
+public enum ChangeType {
+    BOOK_SAVED,
+    BOOK_SHELVED,
+    BOOK_UNSHELVED;
+
+    @JsonValue
+    public String getValue() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
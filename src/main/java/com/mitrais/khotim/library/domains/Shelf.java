@@ -1,9 +1,16 @@
 package com.mitrais.khotim.library.domains;
 
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
-import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.Min;
@@ -11,16 +18,22 @@ import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
 import java.util.List;
 
-@Data
+@Getter
+@Setter
+@ToString(exclude = "books")
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @NoArgsConstructor
 @JsonIdentityInfo(
     generator = ObjectIdGenerators.PropertyGenerator.class,
     property = "id"
 )
+@JsonPropertyOrder({"id", "name", "maxCapacity", "currentCapacity", "books"})
 public class Shelf {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "shelf_seq")
+    @SequenceGenerator(name = "shelf_seq", sequenceName = "shelf_seq", allocationSize = 50)
     @Column(name = "shelf_id")
     private Long id;
 
@@ -35,7 +48,12 @@ public class Shelf {
     @Column(name = "currentCapacity")
     private int currentCapacity = 0;
 
+    @Version
+    @JsonIgnore
+    private Long version;
+
     @OneToMany(mappedBy = "shelf", cascade = CascadeType.ALL)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private List<Book> books = new ArrayList<>();
 
     public Shelf(@NotNull String name, @Min(value = 0) int maxCapacity) {
@@ -48,8 +66,47 @@ public class Shelf {
         book.setShelf(this);
     }
 
+    /**
+     * Removes the book, only touching the books collection when it's already loaded.
+     *
+     * @param book
+     */
     public void removeBook(Book book) {
-        books.remove(book);
+        if (Hibernate.isInitialized(books)) {
+            books.remove(book);
+        }
+
         book.setShelf(null);
     }
+
+    /**
+     * Checks whether the book is in this shelf from the book's shelf id, without loading the books collection.
+     *
+     * @param book
+     * @return
+     */
+    public boolean contains(Book book) {
+        return id != null && id.equals(book.getShelfId());
+    }
+
+    /**
+     * Shelves are equal when they have the same id. Shelves that aren't persisted yet are only equal to themselves.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof Shelf)) {
+            return false;
+        }
+
+        return id != null && id.equals(((Shelf) o).getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Shelf.class.hashCode();
+    }
 }
@@ -0,0 +1,176 @@
+package com.mitrais.khotim.library.errors;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Writes rejections as JSON bodies like {"code":"capacity_reached","shelf":"Shelf A already reached maximum capacity"}.
+ * The fixed parts of every body are encoded once up front, so a rejection without arguments is answered with
+ * its cached body and one with arguments with a single array of the exact size.
+ */
+public final class ErrorBody {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The encoded fixed parts of each rejection's body: the opening up to the first part of its message, the parts
+     * between the arguments, and the last part with the closing.
+     */
+    private static final Map<Rejection, byte[][]> PARTS = new EnumMap<>(Rejection.class);
+
+    static {
+        for (Rejection rejection : Rejection.values()) {
+            int arity = rejection.getArity();
+            byte[][] parts = new byte[arity + 1][];
+
+            for (int i = 0; i <= arity; i++) {
+                String part = rejection.getPart(i);
+
+                if (i == 0) {
+                    part = "{\"code\":\"" + rejection.getCode() + "\",\"" + rejection.getField() + "\":\"" + part;
+                }
+
+                if (i == arity) {
+                    part = part + "\"}";
+                }
+
+                parts[i] = part.getBytes(StandardCharsets.UTF_8);
+            }
+
+            PARTS.put(rejection, parts);
+        }
+    }
+
+    private ErrorBody() {
+    }
+
+    /**
+     * Answers the rejection with its status and body.
+     *
+     * @param e
+     * @return
+     */
+    public static ResponseEntity<byte[]> response(ShelfOperationException e) {
+        return ResponseEntity.status(e.getRejection().getStatus())
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(write(e.getRejection(), e.getArgs()));
+    }
+
+    /**
+     * Encodes the rejection's body with the arguments in its message. The returned array is shared when the
+     * rejection takes no arguments and must not be changed.
+     *
+     * @param rejection
+     * @param args
+     * @return
+     */
+    public static byte[] write(Rejection rejection, String... args) {
+        byte[][] parts = PARTS.get(rejection);
+
+        if (parts.length == 1) {
+            return parts[0];
+        }
+
+        int length = 0;
+
+        for (int i = 0; i < parts.length; i++) {
+            length += parts[i].length;
+
+            if (i < parts.length - 1) {
+                length += encodedLength(String.valueOf(args[i]));
+            }
+        }
+
+        byte[] body = new byte[length];
+        int position = 0;
+
+        for (int i = 0; i < parts.length; i++) {
+            System.arraycopy(parts[i], 0, body, position, parts[i].length);
+            position += parts[i].length;
+
+            if (i < parts.length - 1) {
+                position = encode(String.valueOf(args[i]), body, position);
+            }
+        }
+
+        return body;
+    }
+
+    /**
+     * Counts the bytes of the value as the content of a JSON string in UTF-8.
+     */
+    private static int encodedLength(String value) {
+        int length = 0;
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                length += 2;
+            } else if (c < 0x20) {
+                length += 6;
+            } else if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (isSurrogatePair(value, i)) {
+                length += 4;
+                i++;
+            } else {
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Writes the value as the content of a JSON string in UTF-8, replacing unpaired surrogates with '?' like
+     * {@link String#getBytes} does.
+     */
+    private static int encode(String value, byte[] body, int position) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                body[position++] = '\\';
+                body[position++] = (byte) c;
+            } else if (c < 0x20) {
+                body[position++] = '\\';
+                body[position++] = 'u';
+                body[position++] = '0';
+                body[position++] = '0';
+                body[position++] = HEX[c >> 4];
+                body[position++] = HEX[c & 0xf];
+            } else if (c < 0x80) {
+                body[position++] = (byte) c;
+            } else if (c < 0x800) {
+                body[position++] = (byte) (0xc0 | c >> 6);
+                body[position++] = (byte) (0x80 | c & 0x3f);
+            } else if (isSurrogatePair(value, i)) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                body[position++] = (byte) (0xf0 | codePoint >> 18);
+                body[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                body[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                body[position++] = (byte) (0x80 | codePoint & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                body[position++] = '?';
+            } else {
+                body[position++] = (byte) (0xe0 | c >> 12);
+                body[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+                body[position++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+
+        return position;
+    }
+
+    private static boolean isSurrogatePair(String value, int index) {
+        return Character.isHighSurrogate(value.charAt(index))
+                && index + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(index + 1));
+    }
+}
@@ -5,19 +5,30 @@ import org.springframework.validation.FieldError;
 import org.springframework.validation.ObjectError;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class ErrorMessages {
+    /**
+     * Collects the validation messages keyed by the field they're about, or by the object's name for errors
+     * that aren't about a single field.
+     *
+     * @param errors
+     * @return Null when there are no errors.
+     */
     public static Map<String, String> getMessages(BindingResult errors) {
-        if (errors.hasErrors()) {
-            Map<String, String> messages = new HashMap<>();
+        if (!errors.hasErrors()) {
+            return null;
+        }
 
-            for (ObjectError error : errors.getAllErrors()) {
-                messages.put(((FieldError)error).getField(), error.getDefaultMessage());
-            }
+        List<ObjectError> allErrors = errors.getAllErrors();
+        Map<String, String> messages = new HashMap<>(allErrors.size() * 4 / 3 + 1);
 
-            return messages;
+        for (ObjectError error : allErrors) {
+            String key = error instanceof FieldError ? ((FieldError) error).getField() : error.getObjectName();
+            messages.put(key, error.getDefaultMessage());
         }
-        return null;
+
+        return messages;
     }
 }
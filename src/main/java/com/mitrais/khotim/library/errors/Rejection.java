@@ -0,0 +1,96 @@
+package com.mitrais.khotim.library.errors;
+
+import org.springframework.http.HttpStatus;
+
+import java.util.Locale;
+
+/**
+ * Why a shelf operation was rejected. Each rejection has a fixed code, status and field, and a message made of
+ * fixed parts with an argument, like a shelf name or book id, between each two of them.
+ */
+public enum Rejection {
+    SHELF_NOT_FOUND(HttpStatus.NOT_FOUND, "shelf", "There's no shelf found with id ", ""),
+    BOOK_NOT_FOUND(HttpStatus.NOT_FOUND, "book", "There's no book found with id ", ""),
+    CAPACITY_REACHED(HttpStatus.CONFLICT, "shelf", "Shelf ", " already reached maximum capacity"),
+    ALREADY_IN_SHELF(HttpStatus.CONFLICT, "shelf", "Book ", " already exists in shelf ", ""),
+    ALREADY_SHELVED(HttpStatus.CONFLICT, "book", "Book ", " is already shelved in shelf ", ""),
+    NOT_IN_SHELF(HttpStatus.CONFLICT, "shelf", "There's no book ", " in shelf ", ""),
+    NO_SHELF_AVAILABLE(HttpStatus.CONFLICT, "shelf", "There's no shelf with free capacity"),
+    SHELF_ID_REQUIRED(HttpStatus.UNPROCESSABLE_ENTITY, "shelf", "Shelf id is required"),
+    BOOK_ID_REQUIRED(HttpStatus.UNPROCESSABLE_ENTITY, "book", "Book id is required"),
+    BOOK_IDS_REQUIRED(HttpStatus.UNPROCESSABLE_ENTITY, "books", "Book ids are required"),
+    OPERATION_REQUIRED(HttpStatus.UNPROCESSABLE_ENTITY, "operation", "Operation is required"),
+    UNKNOWN_OPERATION(HttpStatus.UNPROCESSABLE_ENTITY, "operation", "There's no operation ", ""),
+    LISTED_TWICE(HttpStatus.UNPROCESSABLE_ENTITY, "book", "Book ", " is listed more than once"),
+    UNKNOWN_STRATEGY(HttpStatus.UNPROCESSABLE_ENTITY, "strategy", "There's no placement strategy ", ""),
+    QUEUE_FULL(HttpStatus.SERVICE_UNAVAILABLE, "operation", "Too many pending operations, retry later");
+
+    private final String code;
+    private final HttpStatus status;
+    private final String field;
+    private final String[] parts;
+
+    Rejection(HttpStatus status, String field, String... parts) {
+        this.code = name().toLowerCase(Locale.ROOT);
+        this.status = status;
+        this.field = field;
+        this.parts = parts;
+    }
+
+    /**
+     * Gets the code clients can match on, also the outcome tag of the shelf operation metrics.
+     *
+     * @return
+     */
+    public String getCode() {
+        return code;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the field that caused the rejection, the key of the message in the response body.
+     *
+     * @return
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * Gets the number of arguments the message takes.
+     *
+     * @return
+     */
+    public int getArity() {
+        return parts.length - 1;
+    }
+
+    /**
+     * Gets the fixed part of the message before the argument at the index, or after the last one.
+     *
+     * @param index
+     * @return
+     */
+    public String getPart(int index) {
+        return parts[index];
+    }
+
+    /**
+     * Builds the message with the arguments between the fixed parts.
+     *
+     * @param args
+     * @return
+     */
+    public String message(String... args) {
+        StringBuilder message = new StringBuilder(parts[0]);
+
+        for (int i = 0; i < getArity(); i++) {
+            message.append(args[i]).append(parts[i + 1]);
+        }
+
+        return message.toString();
+    }
+}
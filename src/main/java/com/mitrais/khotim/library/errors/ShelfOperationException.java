@@ -0,0 +1,38 @@
+package com.mitrais.khotim.library.errors;
+
+/**
+ * Thrown when a shelf operation is rejected. Rejections are expected outcomes, so no stack trace is taken and
+ * the message is only built when asked for.
+ */
+public class ShelfOperationException extends RuntimeException {
+    private final Rejection rejection;
+    private final String[] args;
+
+    public ShelfOperationException(Rejection rejection, String... args) {
+        super(null, null, false, false);
+        this.rejection = rejection;
+        this.args = args;
+    }
+
+    public Rejection getRejection() {
+        return rejection;
+    }
+
+    public String getField() {
+        return rejection.getField();
+    }
+
+    /**
+     * Gets the arguments of the rejection's message.
+     *
+     * @return
+     */
+    public String[] getArgs() {
+        return args;
+    }
+
+    @Override
+    public String getMessage() {
+        return rejection.message(args);
+    }
+}
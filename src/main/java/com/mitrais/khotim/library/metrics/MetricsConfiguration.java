@@ -0,0 +1,33 @@
+package com.mitrais.khotim.library.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Counts the statements Hibernate runs for each request. Endpoint timings, Hibernate statistics and connection
+ * pool gauges come from Spring Boot's own metrics auto-configuration.
+ */
+@Configuration
+public class MetricsConfiguration implements WebMvcConfigurer {
+    private final QueryCountInspector queryCountInspector = new QueryCountInspector();
+    private final MeterRegistry registry;
+
+    public MetricsConfiguration(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer queryCountCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, queryCountInspector);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry interceptors) {
+        interceptors.addInterceptor(new QueryCountInterceptor(queryCountInspector, registry));
+    }
+}
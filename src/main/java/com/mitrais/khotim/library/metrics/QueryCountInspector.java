@@ -0,0 +1,44 @@
+package com.mitrais.khotim.library.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread while a request is being counted.
+ * Statements run outside of {@link #start()} and {@link #finish()} aren't counted.
+ */
+public class QueryCountInspector implements StatementInspector {
+    private final ThreadLocal<Map<String, Integer>> statements = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        Map<String, Integer> counts = statements.get();
+
+        if (counts != null) {
+            counts.merge(sql, 1, Integer::sum);
+        }
+
+        return sql;
+    }
+
+    /**
+     * Starts counting statements on the current thread.
+     */
+    public void start() {
+        statements.set(new HashMap<>());
+    }
+
+    /**
+     * Stops counting statements on the current thread.
+     *
+     * @return Number of times each statement was prepared since {@link #start()}, empty when counting wasn't started.
+     */
+    public Map<String, Integer> finish() {
+        Map<String, Integer> counts = statements.get();
+        statements.remove();
+
+        return counts == null ? new HashMap<>() : counts;
+    }
+}
@@ -0,0 +1,55 @@
+package com.mitrais.khotim.library.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * Records how many statements each request runs, per endpoint, and counts requests that run the same select
+ * so many times it's likely an N+1 lazy load.
+ */
+public class QueryCountInterceptor extends HandlerInterceptorAdapter {
+    static final int REPEATED_SELECT_THRESHOLD = 10;
+
+    private static final Logger log = LoggerFactory.getLogger(QueryCountInterceptor.class);
+
+    private final QueryCountInspector inspector;
+    private final MeterRegistry registry;
+
+    public QueryCountInterceptor(QueryCountInspector inspector, MeterRegistry registry) {
+        this.inspector = inspector;
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        inspector.start();
+
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Map<String, Integer> statements = inspector.finish();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        int total = 0;
+
+        for (Map.Entry<String, Integer> statement : statements.entrySet()) {
+            total += statement.getValue();
+
+            if (statement.getValue() >= REPEATED_SELECT_THRESHOLD && statement.getKey().regionMatches(true, 0, "select", 0, 6)) {
+                registry.counter("library.request.repeated.selects", "method", request.getMethod(), "uri", uri).increment();
+                log.warn("{} {} ran the same select {} times: {}", request.getMethod(), uri, statement.getValue(), statement.getKey());
+            }
+        }
+
+        registry.summary("library.request.queries", "method", request.getMethod(), "uri", uri).record(total);
+    }
+}
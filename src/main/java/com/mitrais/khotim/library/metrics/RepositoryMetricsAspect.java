@@ -0,0 +1,40 @@
+package com.mitrais.khotim.library.metrics;
+
+import com.mitrais.khotim.library.repositories.BookRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every call to the book and shelf repositories, including the methods inherited from JpaRepository.
+ */
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+    private final MeterRegistry registry;
+
+    public RepositoryMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("target(com.mitrais.khotim.library.repositories.BookRepository) || target(com.mitrais.khotim.library.repositories.ShelfRepository)")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(registry);
+        String exception = "None";
+
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(registry.timer("library.repository",
+                    "repository", joinPoint.getTarget() instanceof BookRepository ? "BookRepository" : "ShelfRepository",
+                    "method", joinPoint.getSignature().getName(),
+                    "exception", exception));
+        }
+    }
+}
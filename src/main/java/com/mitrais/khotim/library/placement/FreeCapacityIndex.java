@@ -0,0 +1,251 @@
+package com.mitrais.khotim.library.placement;
+
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.repositories.ShelfRepository;
+import com.mitrais.khotim.library.repositories.ShelfSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Free capacity of every shelf, so a shelf with room can be picked without listing them all.
+ * <p>
+ * Each shelf has one {@link FreeSlot}. The shelves with room are kept in one skip list per placement strategy,
+ * ordered the way the strategy prefers them, so picking is taking the first one. A pick reserves a place in the
+ * shelf until the placement finishes, so concurrent placements don't all go for the last place of the same shelf.
+ * Picking, reserving and updating a shelf take O(log n) per strategy. Changes to a shelf are applied one at a
+ * time; picks don't block.
+ * <p>
+ * The index follows the writes made through {@link com.mitrais.khotim.library.services.ShelfService}, including
+ * those another instance made once their change events arrive. It may still be briefly behind, so the shelf's
+ * capacity is checked again when the book is added.
+ */
+@Component
+public class FreeCapacityIndex {
+    private static final Logger log = LoggerFactory.getLogger(FreeCapacityIndex.class);
+
+    private final Map<Long, FreeSlot> slots = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<FreeSlot>> orders = new HashMap<>();
+
+    /**
+     * Taken while loading, a lock rather than a monitor so a virtual thread waiting on the query doesn't pin its
+     * carrier thread.
+     */
+    private final Lock loading = new ReentrantLock();
+
+    private volatile boolean loaded = false;
+
+    @Autowired
+    private List<PlacementStrategy> strategies;
+
+    @Autowired
+    private ShelfRepository shelfRepository;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @PostConstruct
+    public void init() {
+        for (PlacementStrategy strategy : strategies) {
+            orders.put(strategy.getName(), new ConcurrentSkipListSet<>(strategy.getOrder()));
+        }
+
+        Gauge.builder("library.placement.shelves", this, FreeCapacityIndex::available)
+                .description("Shelves with free capacity")
+                .register(registry);
+    }
+
+    /**
+     * Loads the capacity of every shelf once the application is ready, or on the first placement when that
+     * comes earlier. Shelves written since the index was created keep what the write left.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (loaded) {
+            return;
+        }
+
+        loading.lock();
+        try {
+            if (loaded) {
+                return;
+            }
+
+            read(false);
+        } finally {
+            loading.unlock();
+        }
+    }
+
+    /**
+     * Loads the capacity of every shelf again, for shelves written behind Hibernate like a snapshot import.
+     * Known shelves take the loaded capacity and keep their reservations. A write racing the reload may be
+     * overwritten with the capacity it replaced until the shelf's next change; adding the book still checks it.
+     */
+    public void reload() {
+        loading.lock();
+        try {
+            read(true);
+        } finally {
+            loading.unlock();
+        }
+    }
+
+    private void read(boolean refresh) {
+        long start = System.currentTimeMillis();
+        List<ShelfSummary> shelves = shelfRepository.findAllSummaries();
+
+        for (ShelfSummary shelf : shelves) {
+            update(shelf.getId(), slot -> slot == null
+                    ? new FreeSlot(shelf.getId(), shelf.getMaxCapacity(), shelf.getCurrentCapacity(), 0)
+                    : refresh ? slot.withCapacity(shelf.getMaxCapacity(), shelf.getCurrentCapacity()) : slot);
+        }
+
+        loaded = true;
+        log.info("Loaded the free capacity of {} shelves in {} ms", shelves.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Checks whether there's a strategy with the name.
+     *
+     * @param strategy
+     * @return
+     */
+    public boolean supports(String strategy) {
+        return orders.containsKey(strategy);
+    }
+
+    /**
+     * Records the shelf's capacity after a change, keeping its reservations.
+     *
+     * @param shelf
+     */
+    public void put(Shelf shelf) {
+        update(shelf.getId(), slot -> slot != null
+                ? slot.withCapacity(shelf.getMaxCapacity(), shelf.getCurrentCapacity())
+                : new FreeSlot(shelf.getId(), shelf.getMaxCapacity(), shelf.getCurrentCapacity(), 0));
+    }
+
+    /**
+     * Records that the shelf turned out to be full, when the index was behind a change made elsewhere.
+     *
+     * @param shelfId
+     */
+    public void full(Long shelfId) {
+        update(shelfId, slot -> slot == null ? null : slot.withCapacity(slot.getMaxCapacity(), slot.getMaxCapacity()));
+    }
+
+    /**
+     * Picks the first shelf with room in the strategy's order and reserves a place in it.
+     *
+     * @param strategy
+     * @return The shelf's id, or null when no shelf has room.
+     * @throws IllegalArgumentException When there's no strategy with the name.
+     */
+    public Long reserve(String strategy) {
+        NavigableSet<FreeSlot> order = orders.get(strategy);
+
+        if (order == null) {
+            throw new IllegalArgumentException("Unknown placement strategy " + strategy);
+        }
+
+        load();
+
+        while (true) {
+            FreeSlot candidate;
+
+            try {
+                candidate = order.first();
+            } catch (NoSuchElementException e) {
+                return null;
+            }
+
+            boolean[] reserved = {false};
+            update(candidate.getShelfId(), slot -> {
+                // Another change got to the shelf first, pick again from the new order.
+                if (slot != candidate) {
+                    return slot;
+                }
+
+                reserved[0] = true;
+                return slot.withReserved(slot.getReserved() + 1);
+            });
+
+            if (reserved[0]) {
+                return candidate.getShelfId();
+            }
+        }
+    }
+
+    /**
+     * Gives back a place reserved by {@link #reserve(String)} once the placement finished, whether the book was
+     * added or not.
+     *
+     * @param shelfId
+     */
+    public void release(Long shelfId) {
+        update(shelfId, slot -> slot == null ? null : slot.withReserved(Math.max(0, slot.getReserved() - 1)));
+    }
+
+    /**
+     * Gets the shelf's slot.
+     *
+     * @param shelfId
+     * @return Null when the shelf isn't known.
+     */
+    public FreeSlot get(Long shelfId) {
+        return slots.get(shelfId);
+    }
+
+    /**
+     * Counts the shelves with room.
+     *
+     * @return
+     */
+    public int available() {
+        return orders.isEmpty() ? 0 : orders.values().iterator().next().size();
+    }
+
+    /**
+     * Replaces the shelf's slot in the map and in every ordering. Changes to the same shelf are serialized by
+     * the map, so the orderings always hold the shelf's current slot once it's done.
+     */
+    private void update(Long shelfId, UnaryOperator<FreeSlot> change) {
+        slots.compute(shelfId, (id, slot) -> {
+            FreeSlot changed = change.apply(slot);
+
+            if (changed == slot) {
+                return slot;
+            }
+
+            for (NavigableSet<FreeSlot> order : orders.values()) {
+                if (slot != null) {
+                    order.remove(slot);
+                }
+
+                if (changed != null && changed.getFree() > 0) {
+                    order.add(changed);
+                }
+            }
+
+            return changed;
+        });
+    }
+}
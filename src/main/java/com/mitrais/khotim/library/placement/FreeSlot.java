@@ -0,0 +1,67 @@
+package com.mitrais.khotim.library.placement;
+
+/**
+ * Capacity of one shelf as the {@link FreeCapacityIndex} sees it. Slots never change; the index replaces a
+ * shelf's slot whenever its capacity or reservations change.
+ */
+public final class FreeSlot {
+    private final long shelfId;
+    private final int maxCapacity;
+    private final int currentCapacity;
+    private final int reserved;
+
+    FreeSlot(long shelfId, int maxCapacity, int currentCapacity, int reserved) {
+        this.shelfId = shelfId;
+        this.maxCapacity = maxCapacity;
+        this.currentCapacity = currentCapacity;
+        this.reserved = reserved;
+    }
+
+    public long getShelfId() {
+        return shelfId;
+    }
+
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    public int getCurrentCapacity() {
+        return currentCapacity;
+    }
+
+    /**
+     * Gets the number of places taken by placements that haven't finished yet.
+     *
+     * @return
+     */
+    public int getReserved() {
+        return reserved;
+    }
+
+    /**
+     * Gets the number of places taken by books or reservations.
+     *
+     * @return
+     */
+    public int getUsed() {
+        return currentCapacity + reserved;
+    }
+
+    public int getFree() {
+        return maxCapacity - getUsed();
+    }
+
+    FreeSlot withCapacity(int maxCapacity, int currentCapacity) {
+        return new FreeSlot(shelfId, maxCapacity, currentCapacity, reserved);
+    }
+
+    FreeSlot withReserved(int reserved) {
+        return new FreeSlot(shelfId, maxCapacity, currentCapacity, reserved);
+    }
+
+    @Override
+    public String toString() {
+        return "FreeSlot(shelfId=" + shelfId + ", maxCapacity=" + maxCapacity + ", currentCapacity=" + currentCapacity
+                + ", reserved=" + reserved + ")";
+    }
+}
@@ -0,0 +1,48 @@
+package com.mitrais.khotim.library.placement;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Comparator;
+
+/**
+ * The built-in placement strategies. More can be added as {@link PlacementStrategy} beans.
+ */
+@Configuration
+public class PlacementConfiguration {
+    private static final Comparator<FreeSlot> BY_ID = Comparator.comparingLong(FreeSlot::getShelfId);
+
+    /**
+     * Places books on the shelf with the lowest id that has room, filling shelves one after the other.
+     *
+     * @return
+     */
+    @Bean
+    public PlacementStrategy firstFit() {
+        return PlacementStrategy.of("first-fit", BY_ID);
+    }
+
+    /**
+     * Places books on the shelf with the fewest free places, keeping the emptier shelves for later.
+     *
+     * @return
+     */
+    @Bean
+    public PlacementStrategy bestFit() {
+        return PlacementStrategy.of("best-fit", Comparator.comparingInt(FreeSlot::getFree).thenComparing(BY_ID));
+    }
+
+    /**
+     * Places books on the shelf that's the least full relative to its size, spreading books evenly.
+     *
+     * @return
+     */
+    @Bean
+    public PlacementStrategy leastLoaded() {
+        Comparator<FreeSlot> byLoad = (a, b) -> Long.compare(
+                (long) a.getUsed() * b.getMaxCapacity(),
+                (long) b.getUsed() * a.getMaxCapacity());
+
+        return PlacementStrategy.of("least-loaded", byLoad.thenComparing(BY_ID));
+    }
+}
@@ -0,0 +1,38 @@
+package com.mitrais.khotim.library.placement;
+
+import java.util.Comparator;
+
+/**
+ * Decides which shelf a book is placed on: the first shelf with room in the strategy's order. Every strategy
+ * bean gets its own ordering in the {@link FreeCapacityIndex}, so picking a shelf stays O(log n).
+ */
+public interface PlacementStrategy {
+    /**
+     * Gets the name clients choose the strategy by.
+     *
+     * @return
+     */
+    String getName();
+
+    /**
+     * Gets the order in which shelves are preferred. It must tell different shelves apart, e.g. by breaking ties
+     * by shelf id.
+     *
+     * @return
+     */
+    Comparator<FreeSlot> getOrder();
+
+    static PlacementStrategy of(String name, Comparator<FreeSlot> order) {
+        return new PlacementStrategy() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public Comparator<FreeSlot> getOrder() {
+                return order;
+            }
+        };
+    }
+}
@@ -0,0 +1,102 @@
+package com.mitrais.khotim.library.placement;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.errors.Rejection;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+import com.mitrais.khotim.library.services.BookService;
+import com.mitrais.khotim.library.services.ShelfService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Shelves books on a shelf with room picked from the {@link FreeCapacityIndex}, so clients don't have to list
+ * the shelves and race each other for the last places.
+ */
+@Service
+public class ShelfPlacement {
+    static final int MAX_ATTEMPTS = 5;
+
+    @Value("${library.placement.strategy:best-fit}")
+    private String defaultStrategy;
+
+    @Autowired
+    private FreeCapacityIndex index;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    /**
+     * Adds the book into the first shelf with room in the strategy's order. When the shelf turns out to be full
+     * after all, because the index was behind a change made elsewhere, the next one is tried.
+     *
+     * @param bookId
+     * @param strategy Name of the strategy, the configured one when null.
+     * @return The shelf the book was added into.
+     * @throws ShelfOperationException When the book doesn't exist or is shelved, no shelf has room or the
+     *                                 strategy is unknown.
+     */
+    public Shelf autoShelve(Long bookId, String strategy) {
+        String name = strategy != null ? strategy : defaultStrategy;
+
+        try {
+            Shelf shelf = place(bookId, name);
+            count(name, "placed");
+
+            return shelf;
+        } catch (ShelfOperationException e) {
+            // Unknown names aren't used as tags, so clients can't make up new meters.
+            count(index.supports(name) ? name : "unknown", e.getRejection().getCode());
+            throw e;
+        }
+    }
+
+    private Shelf place(Long bookId, String strategy) {
+        if (!index.supports(strategy)) {
+            throw new ShelfOperationException(Rejection.UNKNOWN_STRATEGY, strategy);
+        }
+
+        Book book = bookService.findById(bookId)
+                .orElseThrow(() -> new ShelfOperationException(Rejection.BOOK_NOT_FOUND, String.valueOf(bookId)));
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            Long shelfId = index.reserve(strategy);
+
+            if (shelfId == null) {
+                break;
+            }
+
+            try {
+                Shelf shelf = shelfService.findById(shelfId)
+                        .orElseThrow(() -> new ShelfOperationException(Rejection.SHELF_NOT_FOUND, shelfId.toString()));
+
+                Shelf saved = shelfService.addBook(shelf, book);
+
+                // The saved shelf's books can't be loaded once its transaction is over when open-in-view is off.
+                return shelfService.findByIdWithBooks(shelfId).orElse(saved);
+            } catch (ShelfOperationException e) {
+                if (e.getRejection() != Rejection.CAPACITY_REACHED) {
+                    throw e;
+                }
+
+                index.full(shelfId);
+            } finally {
+                index.release(shelfId);
+            }
+        }
+
+        throw new ShelfOperationException(Rejection.NO_SHELF_AVAILABLE);
+    }
+
+    private void count(String strategy, String outcome) {
+        registry.counter("library.placements", "strategy", strategy, "outcome", outcome).increment();
+    }
+}
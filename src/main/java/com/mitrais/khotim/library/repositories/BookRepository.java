@@ -1,14 +1,88 @@
 package com.mitrais.khotim.library.repositories;
 
 import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+/**
+ * Queries run in read-only transactions when they don't join the caller's, so they can be served by the read pool.
+ */
+@Transactional(readOnly = true)
 public interface BookRepository extends JpaRepository<Book, Long> {
-    List<Book> findByStatusIgnoreCase(String status);
+    List<Book> findByStatus(BookStatus status);
+
+    /**
+     * Finds the book and locks its row until the transaction ends.
+     *
+     * @param id
+     * @return
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Book> findForUpdateById(Long id);
+
+    /**
+     * Finds the books and locks their rows until the transaction ends. They're locked in id order, so two
+     * transactions locking overlapping books can't deadlock.
+     *
+     * @param ids
+     * @return
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Book> findForUpdateByIdInOrderByIdAsc(Collection<Long> ids);
+
+    /**
+     * Finds a page of books after the given id. Paging through the catalog would churn the second-level cache,
+     * so the books aren't put into it.
+     *
+     * @param after
+     * @param pageable
+     * @return
+     */
+    @QueryHints(@QueryHint(name = HINT_CACHE_MODE, value = "IGNORE"))
+    List<Book> findByIdGreaterThanOrderByIdAsc(Long after, Pageable pageable);
+
+    List<Book> findByStatusAndIdGreaterThanOrderByIdAsc(BookStatus status, Long after, Pageable pageable);
 
-    List<Book> findByTitleContainingIgnoreCase(String title);
+    /**
+     * Counts the books with each status, from the (status, id) index.
+     *
+     * @return
+     */
+    @Query("select b.status as status, count(b) as count from Book b group by b.status")
+    List<StatusCount> countByStatus();
 
-    List<Book> findByTitleContainingIgnoreCaseAndStatusIgnoreCase(String title, String status);
+    /**
+     * Streams every book matching the given filters in id order. An empty title or a null status disables that filter.
+     * Must be consumed inside a transaction and closed afterwards. The books aren't put into the second-level
+     * cache, so a full scan doesn't evict the entries the lookups use.
+     *
+     * @param title
+     * @param status
+     * @return
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select b from Book b"
+            + " where (:title = '' or upper(b.title) like upper(concat('%', :title, '%')))"
+            + " and (:status is null or b.status = :status)"
+            + " order by b.id")
+    Stream<Book> streamByTitleAndStatus(@Param("title") String title, @Param("status") BookStatus status);
 }
@@ -0,0 +1,28 @@
+package com.mitrais.khotim.library.repositories;
+
+import com.mitrais.khotim.library.domains.ChangeEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface ChangeEventRepository extends JpaRepository<ChangeEvent, Long> {
+    /**
+     * Finds the events that haven't been published yet, oldest first.
+     *
+     * @param pageable
+     * @return
+     */
+    List<ChangeEvent> findBySeqIsNullOrderByIdAsc(Pageable pageable);
+
+    List<ChangeEvent> findBySeqGreaterThanOrderBySeqAsc(long seq, Pageable pageable);
+
+    /**
+     * Gets the seq of the last published event.
+     *
+     * @return 0 when nothing has been published.
+     */
+    @Query("select coalesce(max(e.seq), 0) from ChangeEvent e")
+    long findLastSeq();
+}
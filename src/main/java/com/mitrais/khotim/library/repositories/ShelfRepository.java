@@ -1,7 +1,61 @@
 package com.mitrais.khotim.library.repositories;
 
 import com.mitrais.khotim.library.domains.Shelf;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH;
+
+/**
+ * Queries run in read-only transactions when they don't join the caller's, so they can be served by the read pool.
+ */
+@Transactional(readOnly = true)
 public interface ShelfRepository extends JpaRepository<Shelf, Long> {
+    /**
+     * Finds all shelves with their books fetched by the same query, so listing them doesn't load each
+     * shelf's books separately. The distinct only removes the duplicate shelves of the join in memory.
+     *
+     * @return
+     */
+    @EntityGraph(attributePaths = "books")
+    @QueryHints(@QueryHint(name = HINT_PASS_DISTINCT_THROUGH, value = "false"))
+    @Query("select distinct s from Shelf s order by s.id")
+    List<Shelf> findAllWithBooks();
+
+    /**
+     * Finds the shelf with its books fetched by the same query.
+     *
+     * @param id
+     * @return
+     */
+    @EntityGraph(attributePaths = "books")
+    Optional<Shelf> findWithBooksById(Long id);
+
+    /**
+     * Finds the shelf and locks its row until the transaction ends, so operations on the shelf from other
+     * instances wait for each other. The row is always read from the database, never from the second-level cache.
+     *
+     * @param id
+     * @return
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Shelf> findForUpdateById(Long id);
+
+    /**
+     * Finds the columns of all shelves without their books.
+     *
+     * @return
+     */
+    @Query("select s.id as id, s.name as name, s.maxCapacity as maxCapacity, s.currentCapacity as currentCapacity "
+            + "from Shelf s order by s.id")
+    List<ShelfSummary> findAllSummaries();
 }
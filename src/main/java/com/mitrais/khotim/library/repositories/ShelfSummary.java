@@ -0,0 +1,14 @@
+package com.mitrais.khotim.library.repositories;
+
+/**
+ * Shelf without its books, currentCapacity is the number of books in it.
+ */
+public interface ShelfSummary {
+    Long getId();
+
+    String getName();
+
+    int getMaxCapacity();
+
+    int getCurrentCapacity();
+}
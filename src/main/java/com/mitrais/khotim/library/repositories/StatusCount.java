@@ -0,0 +1,12 @@
+package com.mitrais.khotim.library.repositories;
+
+import com.mitrais.khotim.library.domains.BookStatus;
+
+/**
+ * Number of books with a status.
+ */
+public interface StatusCount {
+    BookStatus getStatus();
+
+    long getCount();
+}
@@ -0,0 +1,118 @@
+package com.mitrais.khotim.library.routing;
+
+import com.mitrais.khotim.library.threads.ConnectionLimitingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the connections into a write pool on the spring.datasource database and a read pool for read-only
+ * transactions, on the same database or a replica at library.read-datasource.jdbc-url. The read pool takes the
+ * spring.datasource.hikari settings unless they're set under library.read-datasource, so it can be sized on its
+ * own. Reads then no longer wait behind writes for a connection.
+ * <p>
+ * An entity manager kept open for the whole request would keep using the first connection it got, whatever the
+ * transactions after it are, so this needs spring.jpa.open-in-view=false.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.read-datasource.enabled", havingValue = "true")
+public class ReadWriteDataSourceConfiguration {
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    public ReadWriteDataSourceConfiguration(@Value("${spring.jpa.open-in-view:true}") boolean openInView) {
+        if (openInView) {
+            throw new IllegalStateException("library.read-datasource needs spring.jpa.open-in-view=false, "
+                    + "the performance profile sets it");
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    /**
+     * The data source JPA, Flyway and JDBC use, choosing the pool when a connection runs its first statement.
+     * The pools aren't beans of their own: Spring Boot's schema initializer would wait for the primary data source
+     * while it's being made out of them.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, Environment environment, MeterRegistry registry,
+                                 @Value("${library.threads:platform}") String threads) {
+        Binder binder = Binder.get(environment);
+
+        HikariDataSource write = pool(properties, registry);
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(write));
+        write.setPoolName("write");
+
+        HikariDataSource read = pool(properties, registry);
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(read));
+        binder.bind("library.read-datasource", Bindable.ofInstance(read));
+        read.setPoolName("read");
+        read.setReadOnly(true);
+
+        boolean virtual = threads.equals("virtual");
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(limited(write, virtual), limited(read, virtual));
+        routing.afterPropertiesSet();
+
+        LazyConnectionDataSourceProxy lazy = new LazyConnectionDataSourceProxy();
+        lazy.setTargetDataSource(routing);
+        // Given up front, the proxy doesn't open a connection at startup to find them out.
+        lazy.setDefaultAutoCommit(write.isAutoCommit());
+        lazy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        lazy.afterPropertiesSet();
+
+        return lazy;
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+            @Value("${library.read-datasource.sticky-window:5000}") long window) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration = new FilterRegistrationBean<>(new ReadYourWritesFilter(window));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+
+        return registration;
+    }
+
+    private HikariDataSource pool(DataSourceProperties properties, MeterRegistry registry) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        pools.add(pool);
+
+        return pool;
+    }
+
+    /**
+     * Puts threads in line for a connection of the pool when requests run on virtual threads, as
+     * {@link com.mitrais.khotim.library.threads.VirtualThreadConfiguration} does for the single pool.
+     */
+    private static DataSource limited(HikariDataSource pool, boolean virtual) {
+        if (!virtual) {
+            return pool;
+        }
+
+        pool.validate();
+
+        return new ConnectionLimitingDataSource(pool, pool.getMaximumPoolSize());
+    }
+}
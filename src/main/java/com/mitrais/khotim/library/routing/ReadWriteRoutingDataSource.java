@@ -0,0 +1,57 @@
+package com.mitrais.khotim.library.routing;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out connections of the read pool to read-only transactions and of the primary to everything else, unless
+ * {@link ReadYourWrites} pinned the request to the primary.
+ * <p>
+ * Transaction managers take their connection before the transaction is marked read-only, so this has to sit
+ * behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which only picks the pool
+ * when the first statement runs.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    /**
+     * The pools connections are taken from.
+     */
+    public enum Route {
+        READ, WRITE
+    }
+
+    public ReadWriteRoutingDataSource(DataSource write, DataSource read) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Route.WRITE, write);
+        targets.put(Route.READ, read);
+
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(write);
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return route();
+    }
+
+    /**
+     * Picks the pool for a connection taken now.
+     *
+     * @return
+     */
+    public Route route() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return ReadYourWrites.isPinned() ? Route.WRITE : Route.READ;
+        }
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            ReadYourWrites.wrote();
+        }
+
+        return Route.WRITE;
+    }
+}
@@ -0,0 +1,67 @@
+package com.mitrais.khotim.library.routing;
+
+/**
+ * Tracks, for the request running on the current thread, whether its reads have to go to the primary: because the
+ * client wrote shortly before, or because the request itself wrote. Outside a request nothing is tracked and reads
+ * go wherever their transaction says.
+ */
+public final class ReadYourWrites {
+    private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    /**
+     * Starts tracking the current thread's request.
+     *
+     * @param pinned       Whether reads go to the primary from the start.
+     * @param onFirstWrite Called when the request starts its first write, to tell the client.
+     */
+    public static void begin(boolean pinned, Runnable onFirstWrite) {
+        SCOPE.set(new Scope(pinned, onFirstWrite));
+    }
+
+    /**
+     * Stops tracking the current thread's request.
+     */
+    public static void end() {
+        SCOPE.remove();
+    }
+
+    /**
+     * Checks whether the current request reads from the primary.
+     *
+     * @return
+     */
+    public static boolean isPinned() {
+        Scope scope = SCOPE.get();
+
+        return scope != null && scope.pinned;
+    }
+
+    /**
+     * Records that the current request writes, so its later reads go to the primary too.
+     */
+    static void wrote() {
+        Scope scope = SCOPE.get();
+
+        if (scope == null || scope.wrote) {
+            return;
+        }
+
+        scope.wrote = true;
+        scope.pinned = true;
+        scope.onFirstWrite.run();
+    }
+
+    private static final class Scope {
+        private final Runnable onFirstWrite;
+        private boolean pinned;
+        private boolean wrote;
+
+        private Scope(boolean pinned, Runnable onFirstWrite) {
+            this.pinned = pinned;
+            this.onFirstWrite = onFirstWrite;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.mitrais.khotim.library.routing;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a client reading from the primary for a while after it wrote, so it sees its writes while the replica
+ * catches up. The first write of a request sets a cookie with the time until then; requests carrying it read
+ * from the primary until that time passes.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    static final String COOKIE = "library-primary-until";
+
+    private final long window;
+
+    /**
+     * @param window How long in ms a client reads from the primary after it wrote.
+     */
+    public ReadYourWritesFilter(long window) {
+        this.window = window;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ReadYourWrites.begin(pinnedUntil(request) > System.currentTimeMillis(), () -> response.addCookie(cookie()));
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.end();
+        }
+    }
+
+    private Cookie cookie() {
+        Cookie cookie = new Cookie(COOKIE, Long.toString(System.currentTimeMillis() + window));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(window + 999)));
+
+        return cookie;
+    }
+
+    private static long pinnedUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+
+        if (cookies == null) {
+            return 0;
+        }
+
+        for (Cookie cookie : cookies) {
+            if (cookie.getName().equals(COOKIE)) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+
+        return 0;
+    }
+}
@@ -0,0 +1,177 @@
+package com.mitrais.khotim.library.services;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Caches and invalidates the results of BookService.findByTitleAndStatus.
+ *
+ * Keys keep the query parameters, so a change to one book only evicts the cached queries whose
+ * results could contain it instead of the whole cache.
+ *
+ * A result loaded before a change commits could land in the cache after the change evicted it, and stay
+ * there until it expires. Loads in flight are therefore tracked too: an eviction marks the ones it would
+ * have evicted, and their results are returned without being cached.
+ */
+@Component
+public class BookQueryCache {
+    public static final String NAME = "bookQueries";
+
+    /**
+     * Larger results, like an unfiltered catalog, are not worth the heap they'd pin.
+     */
+    public static final int MAX_CACHED_RESULTS = 1000;
+
+    private final Set<Load> loads = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Puts hold the read lock, evictions the write lock, so a put either lands before an eviction removes it
+     * or sees its load marked.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    /**
+     * Gets the cached result of the query, or loads it and caches it unless a change it may contain was
+     * evicted while it was loading.
+     *
+     * @param query
+     * @param loader
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public List<Book> get(Query query, Supplier<List<Book>> loader) {
+        org.springframework.cache.Cache cache = cacheManager.getCache(NAME);
+
+        if (cache == null) {
+            return loader.get();
+        }
+
+        org.springframework.cache.Cache.ValueWrapper cached = cache.get(query);
+
+        if (cached != null) {
+            return (List<Book>) cached.get();
+        }
+
+        Load load = new Load(query);
+        loads.add(load);
+
+        try {
+            List<Book> result = loader.get();
+
+            if (result.size() <= MAX_CACHED_RESULTS) {
+                lock.readLock().lock();
+                try {
+                    if (!load.invalidated) {
+                        cache.put(query, result);
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            return result;
+        } finally {
+            loads.remove(load);
+        }
+    }
+
+    /**
+     * Evicts cached queries whose results may include the book before or after its status changed, and keeps
+     * the ones loading from being cached.
+     *
+     * @param book
+     */
+    public void evict(Book book) {
+        org.springframework.cache.Cache cache = cacheManager.getCache(NAME);
+
+        if (!(cache instanceof CaffeineCache)) {
+            clear();
+            return;
+        }
+
+        Cache<Object, Object> queries = ((CaffeineCache) cache).getNativeCache();
+        String title = book.getTitle() == null ? "" : book.getTitle().toLowerCase(Locale.ROOT);
+
+        lock.writeLock().lock();
+        try {
+            for (Load load : loads) {
+                if (load.query.mayContain(book.getId(), title)) {
+                    load.invalidated = true;
+                }
+            }
+
+            queries.asMap().keySet().removeIf(key -> !(key instanceof Query) || ((Query) key).mayContain(book.getId(), title));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        org.springframework.cache.Cache cache = cacheManager.getCache(NAME);
+
+        lock.writeLock().lock();
+        try {
+            for (Load load : loads) {
+                load.invalidated = true;
+            }
+
+            if (cache != null) {
+                cache.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EqualsAndHashCode
+    @ToString
+    static final class Query {
+        private final String title;
+        private final String status;
+        private final long after;
+        private final int limit;
+
+        Query(String title, String status, long after, int limit) {
+            this.title = title.toLowerCase(Locale.ROOT);
+            this.status = status.toLowerCase(Locale.ROOT);
+            this.after = after;
+            this.limit = limit;
+        }
+
+        /**
+         * The status filter is ignored since a changed book leaves one status and enters the other.
+         */
+        boolean mayContain(Long bookId, String bookTitle) {
+            return (bookId == null || bookId > after) && bookTitle.contains(title);
+        }
+    }
+
+    /**
+     * A load of the query in flight. Compared by identity, the same query may be loading more than once.
+     */
+    private static final class Load {
+        private final Query query;
+        private volatile boolean invalidated;
+
+        private Load(Query query) {
+            this.query = query;
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package com.mitrais.khotim.library.services;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.repositories.BookRepository;
+import com.mitrais.khotim.library.repositories.ShelfRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory copy of the books and shelves that serves lookups by id and by status without Hibernate.
+ *
+ * Books are kept in parallel primitive arrays sorted by id, so a lookup is a binary search and a page of
+ * books is a slice. Isbn, title and author are UTF-8 encoded in one {@link TextArena}, each distinct
+ * author once, and the status is its ordinal in a byte. A book costs its text
+ * plus 37 bytes instead of an entity with its strings and wrappers.
+ *
+ * Writes made through this instance are applied after their transaction commits. Writes from other instances
+ * arrive through the change events, within library.changes.invalidation-delay, though shelves they create only
+ * once a book is shelved on them. A write is ignored when the replica already has the same or a newer version,
+ * so a load racing with writes can't bring back an older row. Lookups go to the database until the replica
+ * is loaded.
+ */
+@Component
+public class BookReplica {
+    private static final int LOAD_BATCH_SIZE = 1000;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long NO_SHELF = 0;
+    private static final long NOT_PERSISTED = -1;
+    private static final BookStatus[] STATUSES = BookStatus.values();
+
+    private static final Logger log = LoggerFactory.getLogger(BookReplica.class);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] ids;
+    private long[] versions;
+    private long[] shelfIds;
+    private byte[] statuses;
+    private int[] isbns;
+    private int[] titles;
+    private int[] authors;
+    private int size;
+
+    private final TextArena text = new TextArena();
+    private final Map<String, Integer> authorPositions = new HashMap<>();
+    private final Map<Long, Shelf> shelves = new HashMap<>();
+    private final Map<Long, PostingList> shelfBooks = new HashMap<>();
+
+    private volatile boolean ready = false;
+
+    @Value("${library.replica.enabled:false}")
+    private boolean enabled;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ShelfRepository shelfRepository;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    public BookReplica() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Loads every shelf and book, lookups use the replica once it's done.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        ready = false;
+        clear();
+
+        for (Shelf shelf : shelfRepository.findAll()) {
+            put(shelf);
+        }
+
+        long after = 0;
+        List<Book> books;
+
+        do {
+            books = bookRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, LOAD_BATCH_SIZE));
+
+            lock.writeLock().lock();
+            try {
+                for (Book book : books) {
+                    putLocked(book);
+                    after = book.getId();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } while (books.size() == LOAD_BATCH_SIZE);
+
+        ready = true;
+        log.info("Loaded {} books and {} shelves into the replica in {} ms, {} bytes",
+                size(), shelves.size(), System.currentTimeMillis() - start, footprint());
+    }
+
+    /**
+     * Checks whether lookups can be served from the replica.
+     *
+     * @return
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Stores the committed state of the book unless the replica already has it.
+     *
+     * @param book
+     */
+    public void put(Book book) {
+        if (!enabled || book.getId() == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            putLocked(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stores the committed name, capacities and version of the shelf unless the replica already has them.
+     * Its books come from the books' shelf ids.
+     *
+     * @param shelf
+     */
+    public void put(Shelf shelf) {
+        if (!enabled || shelf.getId() == null) {
+            return;
+        }
+
+        Shelf copy = new Shelf(shelf.getName(), shelf.getMaxCapacity());
+        copy.setId(shelf.getId());
+        copy.setCurrentCapacity(shelf.getCurrentCapacity());
+        copy.setVersion(shelf.getVersion());
+
+        lock.writeLock().lock();
+        try {
+            Shelf current = shelves.get(shelf.getId());
+
+            if (current == null || version(current.getVersion()) < version(shelf.getVersion())) {
+                shelves.put(shelf.getId(), copy);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Optional<Book> findBook(long id) {
+        lock.readLock().lock();
+        try {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+
+            return index < 0 ? Optional.empty() : Optional.of(book(index));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the books with the given ids in the order of the ids, skipping the ones that don't exist.
+     *
+     * @param ids
+     * @return
+     */
+    public List<Book> findBooks(Collection<Long> ids) {
+        List<Book> books = new ArrayList<>(ids.size());
+
+        lock.readLock().lock();
+        try {
+            for (Long id : ids) {
+                int index = Arrays.binarySearch(this.ids, 0, size, id);
+
+                if (index >= 0) {
+                    books.add(book(index));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return books;
+    }
+
+    /**
+     * Finds at most limit books with an id greater than after and the given status, ordered by id.
+     *
+     * @param status Status to match ignoring case, empty for every status.
+     * @param after
+     * @param limit Maximum number of books, 0 for all of them.
+     * @return
+     */
+    public List<Book> findBooksByStatus(String status, long after, int limit) {
+        List<Book> books = new ArrayList<>();
+
+        Optional<BookStatus> wanted = BookStatus.find(status);
+
+        if (!status.isEmpty() && !wanted.isPresent()) {
+            return books;
+        }
+
+        int ordinal = wanted.map(BookStatus::ordinal).orElse(-1);
+
+        lock.readLock().lock();
+        try {
+            int index = Arrays.binarySearch(ids, 0, size, after);
+
+            for (index = index >= 0 ? index + 1 : -index - 1; index < size && (limit == 0 || books.size() < limit); index++) {
+                if (ordinal < 0 || statuses[index] == ordinal) {
+                    books.add(book(index));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return books;
+    }
+
+    /**
+     * Finds the shelf without its books, copying only its own fields however many books it holds.
+     *
+     * @param id
+     * @return
+     */
+    public Optional<Shelf> findShelfWithoutBooks(long id) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(shelves.get(id)).map(BookReplica::copy);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the shelf with its books.
+     *
+     * @param id
+     * @return
+     */
+    public Optional<Shelf> findShelf(long id) {
+        lock.readLock().lock();
+        try {
+            Shelf stored = shelves.get(id);
+
+            if (stored == null) {
+                return Optional.empty();
+            }
+
+            Shelf shelf = copy(stored);
+            PostingList books = shelfBooks.get(id);
+
+            for (int i = 0; books != null && i < books.size(); i++) {
+                shelf.addBook(book(Arrays.binarySearch(ids, 0, size, books.get(i))));
+            }
+
+            return Optional.of(shelf);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the bytes allocated for the books, including unused capacity and replaced text.
+     *
+     * @return
+     */
+    public long footprint() {
+        lock.readLock().lock();
+        try {
+            return ids.length * (8L + 8 + 8 + 1 + 4 + 4 + 4) + text.capacity();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PostConstruct
+    public void registerGauges() {
+        Gauge.builder("library.replica.books", this, BookReplica::size)
+                .description("Books in the in-memory replica")
+                .register(registry);
+        Gauge.builder("library.replica.footprint", this, BookReplica::footprint)
+                .description("Bytes allocated for the books in the in-memory replica")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private void putLocked(Book book) {
+        int index = Arrays.binarySearch(ids, 0, size, book.getId());
+        long shelfId = book.getShelfId() == null ? NO_SHELF : book.getShelfId();
+
+        if (index >= 0) {
+            if (versions[index] >= version(book.getVersion())) {
+                return;
+            }
+
+            if (shelfIds[index] != shelfId) {
+                removeFromShelf(shelfIds[index], book.getId());
+            }
+        } else {
+            index = -index - 1;
+            insertAt(index);
+            ids[index] = book.getId();
+            isbns[index] = titles[index] = authors[index] = -1;
+        }
+
+        versions[index] = version(book.getVersion());
+        shelfIds[index] = shelfId;
+        statuses[index] = (byte) book.getStatus().ordinal();
+        isbns[index] = store(isbns[index], book.getIsbn());
+        titles[index] = store(titles[index], book.getTitle());
+        authors[index] = authorPositions.computeIfAbsent(book.getAuthor(), text::add);
+
+        if (shelfId != NO_SHELF) {
+            shelfBooks.computeIfAbsent(shelfId, key -> new PostingList()).add(book.getId());
+        }
+    }
+
+    /**
+     * Keeps the text at its position when it hasn't changed, so updates that only touch the status or shelf
+     * don't grow the arena.
+     */
+    private int store(int position, String value) {
+        if (position >= 0 && text.get(position).equals(value)) {
+            return position;
+        }
+
+        return text.add(value);
+    }
+
+    private void removeFromShelf(long shelfId, long bookId) {
+        PostingList books = shelfBooks.get(shelfId);
+
+        if (books != null) {
+            books.remove(bookId);
+        }
+    }
+
+    private static Shelf copy(Shelf stored) {
+        Shelf shelf = new Shelf(stored.getName(), stored.getMaxCapacity());
+        shelf.setId(stored.getId());
+        shelf.setCurrentCapacity(stored.getCurrentCapacity());
+        shelf.setVersion(stored.getVersion());
+
+        return shelf;
+    }
+
+    private Book book(int index) {
+        Book book = new Book(text.get(isbns[index]), text.get(titles[index]), text.get(authors[index]));
+        book.setId(ids[index]);
+        book.setVersion(versions[index]);
+        book.setStatus(STATUSES[statuses[index]]);
+        book.setShelfId(shelfIds[index] == NO_SHELF ? null : shelfIds[index]);
+
+        return book;
+    }
+
+    private void insertAt(int index) {
+        if (size == ids.length) {
+            grow(size + (size >> 1));
+        }
+
+        int moved = size - index;
+        System.arraycopy(ids, index, ids, index + 1, moved);
+        System.arraycopy(versions, index, versions, index + 1, moved);
+        System.arraycopy(shelfIds, index, shelfIds, index + 1, moved);
+        System.arraycopy(statuses, index, statuses, index + 1, moved);
+        System.arraycopy(isbns, index, isbns, index + 1, moved);
+        System.arraycopy(titles, index, titles, index + 1, moved);
+        System.arraycopy(authors, index, authors, index + 1, moved);
+        size++;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        shelfIds = Arrays.copyOf(shelfIds, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        isbns = Arrays.copyOf(isbns, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        authors = Arrays.copyOf(authors, capacity);
+    }
+
+    private void allocate(int capacity) {
+        ids = new long[capacity];
+        versions = new long[capacity];
+        shelfIds = new long[capacity];
+        statuses = new byte[capacity];
+        isbns = new int[capacity];
+        titles = new int[capacity];
+        authors = new int[capacity];
+        size = 0;
+    }
+
+    private void clear() {
+        lock.writeLock().lock();
+        try {
+            allocate(INITIAL_CAPACITY);
+            text.clear();
+            authorPositions.clear();
+            shelves.clear();
+            shelfBooks.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long version(Long version) {
+        return version == null ? NOT_PERSISTED : version;
+    }
+}
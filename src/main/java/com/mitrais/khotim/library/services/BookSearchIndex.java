@@ -0,0 +1,462 @@
+package com.mitrais.khotim.library.services;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
+import com.mitrais.khotim.library.repositories.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over book title, author and isbn.
+ *
+ * Every field is split into overlapping three character grams, each gram keeps a sorted posting list of
+ * book ids. A substring query intersects the posting lists of its own grams and verifies the remaining
+ * candidates against the stored text, so results match the old SQL "containing ignore case" semantics
+ * without scanning the table. Queries shorter than a gram fall back to a scan of the in-memory documents.
+ *
+ * The documents and postings are guarded by a read/write lock, and replaced as a whole by a rebuild.
+ */
+@Component
+public class BookSearchIndex {
+    private static final int GRAM_LENGTH = 3;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private static final int TITLE = 0;
+    private static final int AUTHOR = 1;
+    private static final int ISBN = 2;
+
+    /**
+     * Ranking weight of each field, indexed by the field constants above.
+     */
+    private static final int[] WEIGHTS = {3, 2, 1};
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock rebuilding = new ReentrantLock();
+    private NavigableMap<Long, Document> documents = new TreeMap<>();
+    private Map<Long, PostingList> postings = new HashMap<>();
+
+    /**
+     * Documents indexed while a rebuild is loading the books, replayed over the rebuilt index before it's
+     * swapped in. Null when no rebuild is running.
+     */
+    private Map<Long, Document> indexedDuringRebuild;
+
+    @Autowired
+    private BookRepository repository;
+
+    /**
+     * Loads every book from the repository into a new index and swaps it in. Queries keep using the current
+     * index until then, and books indexed meanwhile are applied over the loaded copies, which may be older.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        rebuilding.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                indexedDuringRebuild = new HashMap<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            NavigableMap<Long, Document> newDocuments = new TreeMap<>();
+            Map<Long, PostingList> newPostings = new HashMap<>();
+            boolean loaded = false;
+
+            try {
+                long after = 0;
+                List<Book> books;
+
+                do {
+                    books = repository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, REBUILD_BATCH_SIZE));
+
+                    for (Book book : books) {
+                        put(newDocuments, newPostings, book.getId(), document(book));
+                        after = book.getId();
+                    }
+                } while (books.size() == REBUILD_BATCH_SIZE);
+
+                loaded = true;
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    if (loaded) {
+                        for (Map.Entry<Long, Document> entry : indexedDuringRebuild.entrySet()) {
+                            put(newDocuments, newPostings, entry.getKey(), entry.getValue());
+                        }
+
+                        documents = newDocuments;
+                        postings = newPostings;
+                    }
+
+                    indexedDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } finally {
+            rebuilding.unlock();
+        }
+    }
+
+    /**
+     * Adds the book to the index or refreshes its indexed fields and status.
+     *
+     * @param book
+     */
+    public void index(Book book) {
+        if (book.getId() == null) {
+            return;
+        }
+
+        Document document = document(book);
+
+        lock.writeLock().lock();
+        try {
+            put(documents, postings, book.getId(), document);
+
+            if (indexedDuringRebuild != null) {
+                indexedDuringRebuild.put(book.getId(), document);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static Document document(Book book) {
+        return new Document(
+                new String[]{normalize(book.getTitle()), normalize(book.getAuthor()), normalize(book.getIsbn())},
+                book.getStatus().getValue()
+        );
+    }
+
+    /**
+     * Stores the document and moves the book's postings from its previous fields to the new ones.
+     */
+    private static void put(NavigableMap<Long, Document> documents, Map<Long, PostingList> postings, long id, Document document) {
+        Document previous = documents.put(id, document);
+
+        if (previous != null && Arrays.equals(previous.fields, document.fields)) {
+            return;
+        }
+
+        if (previous != null) {
+            for (int field = 0; field < previous.fields.length; field++) {
+                for (long gram : grams(field, previous.fields[field])) {
+                    PostingList list = postings.get(gram);
+                    list.remove(id);
+
+                    if (list.isEmpty()) {
+                        postings.remove(gram);
+                    }
+                }
+            }
+        }
+
+        for (int field = 0; field < document.fields.length; field++) {
+            for (long gram : grams(field, document.fields[field])) {
+                postings.computeIfAbsent(gram, key -> new PostingList()).add(id);
+            }
+        }
+    }
+
+    /**
+     * Gets the status the book was last indexed with.
+     *
+     * @param id
+     * @return Empty when the book isn't indexed.
+     */
+    public Optional<BookStatus> findStatus(long id) {
+        lock.readLock().lock();
+        try {
+            Document document = documents.get(id);
+
+            return document == null ? Optional.empty() : BookStatus.find(document.status);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds ids of books whose title contains the given text, in id order.
+     *
+     * @param title
+     * @param status Empty to match any status.
+     * @param after  Only ids greater than this are returned.
+     * @param limit  Maximum number of ids, zero or less for no limit.
+     * @return
+     */
+    public List<Long> findIdsByTitle(String title, String status, long after, int limit) {
+        String query = normalize(title);
+        String wanted = normalize(status);
+        int max = limit > 0 ? limit : Integer.MAX_VALUE;
+        List<Long> ids = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            if (query.length() < GRAM_LENGTH) {
+                for (Map.Entry<Long, Document> entry : documents.tailMap(after, false).entrySet()) {
+                    if (ids.size() == max) {
+                        break;
+                    }
+
+                    if (entry.getValue().matches(TITLE, query, wanted)) {
+                        ids.add(entry.getKey());
+                    }
+                }
+
+                return ids;
+            }
+
+            PostingList[] lists = postingsFor(TITLE, query);
+
+            if (lists == null) {
+                return ids;
+            }
+
+            PostingList smallest = lists[0];
+
+            for (int i = smallest.indexAfter(after); i < smallest.size() && ids.size() < max; i++) {
+                long id = smallest.get(i);
+
+                if (containedInAll(lists, id) && documents.get(id).matches(TITLE, query, wanted)) {
+                    ids.add(id);
+                }
+            }
+
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds ids of books whose title, author or isbn contain every whitespace separated term of the query,
+     * best matches first. Title matches rank above author matches, which rank above isbn matches, and a match
+     * at the start of a field or word ranks above one in the middle of a word.
+     * <p>
+     * Terms shorter than a gram can't use the postings, so every book has to be checked. With a limit that scan
+     * stops at the first limit matches by id, which are then ranked, instead of ranking the whole catalog.
+     *
+     * @param text
+     * @param status Empty to match any status.
+     * @param limit  Maximum number of ids, zero or less for no limit.
+     * @return
+     */
+    public List<Long> search(String text, String status, int limit) {
+        String[] terms = normalize(text).trim().split("\\s+");
+        String wanted = normalize(status);
+
+        if (terms[0].isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // The longest term has the most selective grams.
+        String longest = terms[0];
+
+        for (String term : terms) {
+            if (term.length() > longest.length()) {
+                longest = term;
+            }
+        }
+
+        List<Scored> matches = new ArrayList<>();
+        boolean scan = longest.length() < GRAM_LENGTH;
+
+        lock.readLock().lock();
+        try {
+            for (long id : candidates(longest)) {
+                Document document = documents.get(id);
+
+                if (!wanted.isEmpty() && !wanted.equals(document.status)) {
+                    continue;
+                }
+
+                int score = document.score(terms);
+
+                if (score > 0) {
+                    matches.add(new Scored(id, score));
+
+                    if (scan && matches.size() == limit) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        matches.sort(Comparator.comparingInt((Scored scored) -> -scored.score).thenComparingLong(scored -> scored.id));
+
+        int max = limit > 0 ? Math.min(limit, matches.size()) : matches.size();
+        List<Long> ids = new ArrayList<>(max);
+
+        for (int i = 0; i < max; i++) {
+            ids.add(matches.get(i).id);
+        }
+
+        return ids;
+    }
+
+    private Collection<Long> candidates(String term) {
+        if (term.length() < GRAM_LENGTH) {
+            return documents.keySet();
+        }
+
+        Set<Long> ids = new HashSet<>();
+
+        for (int field = 0; field < WEIGHTS.length; field++) {
+            PostingList[] lists = postingsFor(field, term);
+
+            if (lists == null) {
+                continue;
+            }
+
+            for (int i = 0; i < lists[0].size(); i++) {
+                long id = lists[0].get(i);
+
+                if (containedInAll(lists, id)) {
+                    ids.add(id);
+                }
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Gets the posting lists of every gram in the text, smallest first, or null when a gram has no postings.
+     */
+    private PostingList[] postingsFor(int field, String text) {
+        long[] grams = grams(field, text);
+        PostingList[] lists = new PostingList[grams.length];
+
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = postings.get(grams[i]);
+
+            if (lists[i] == null) {
+                return null;
+            }
+        }
+
+        Arrays.sort(lists, Comparator.comparingInt(PostingList::size));
+
+        return lists;
+    }
+
+    private static boolean containedInAll(PostingList[] lists, long id) {
+        for (int i = 1; i < lists.length; i++) {
+            if (!lists[i].contains(id)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the distinct grams of the text, each packed with its field into a long key.
+     */
+    private static long[] grams(int field, String text) {
+        if (text.length() < GRAM_LENGTH) {
+            return new long[0];
+        }
+
+        long[] grams = new long[text.length() - GRAM_LENGTH + 1];
+
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) field << 48)
+                    | ((long) text.charAt(i) << 32)
+                    | ((long) text.charAt(i + 1) << 16)
+                    | text.charAt(i + 2);
+        }
+
+        return Arrays.stream(grams).distinct().toArray();
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Document {
+        private final String[] fields;
+        private final String status;
+
+        private Document(String[] fields, String status) {
+            this.fields = fields;
+            this.status = status;
+        }
+
+        private boolean matches(int field, String query, String wanted) {
+            return fields[field].contains(query) && (wanted.isEmpty() || wanted.equals(status));
+        }
+
+        /**
+         * Scores the document against every term, 0 when a term matches none of the fields.
+         */
+        private int score(String[] terms) {
+            int total = 0;
+
+            for (String term : terms) {
+                int termScore = 0;
+
+                for (int field = 0; field < fields.length; field++) {
+                    int position = fields[field].indexOf(term);
+
+                    if (position < 0) {
+                        continue;
+                    }
+
+                    int bonus = position == 0 ? 4 : Character.isLetterOrDigit(fields[field].charAt(position - 1)) ? 1 : 2;
+                    termScore += WEIGHTS[field] * bonus;
+                }
+
+                if (termScore == 0) {
+                    return 0;
+                }
+
+                total += termScore;
+            }
+
+            return total;
+        }
+    }
+
+    private static final class Scored {
+        private final long id;
+        private final int score;
+
+        private Scored(long id, int score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+}
@@ -1,39 +1,234 @@
 package com.mitrais.khotim.library.services;
 
+import com.mitrais.khotim.library.changes.ChangeOutbox;
 import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
 import com.mitrais.khotim.library.repositories.BookRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.List;
-import java.util.Optional;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class BookService {
+    static final String BOOK_LOOKUP = "book";
+    static final String QUERY_LOOKUP = "bookQuery";
+
     @Autowired
     private BookRepository repository;
 
+    @Autowired
+    private BookSearchIndex searchIndex;
+
+    @Autowired
+    private BookReplica replica;
+
+    @Autowired
+    private BookStatusCounts statusCounts;
+
+    @Autowired
+    private ChangeOutbox changeOutbox;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private BookQueryCache queryCache;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     public List<Book> findByTitleAndStatus(String title, String status) {
-        if (title.isEmpty() && status.isEmpty()) {
-            return repository.findAll();
+        if (title.isEmpty() && replica.isReady()) {
+            return replica.findBooksByStatus(status, 0, 0);
+        }
+
+        BookQueryCache.Query query = new BookQueryCache.Query(title, status, 0, 0);
+
+        return queryCache.get(query, () -> singleFlight.run(QUERY_LOOKUP, query, () -> {
+            if (title.isEmpty() && status.isEmpty()) {
+                return repository.findAll();
+            }
+
+            if (title.isEmpty()) {
+                return BookStatus.find(status).map(repository::findByStatus).orElseGet(ArrayList::new);
+            }
+
+            return findAllById(searchIndex.findIdsByTitle(title, status, 0, 0));
+        }));
+    }
+
+    /**
+     * Finds at most limit books with an id greater than after, ordered by id.
+     *
+     * @param title
+     * @param status
+     * @param after The last id of the previous page, 0 for the first page.
+     * @param limit
+     * @return
+     */
+    public List<Book> findByTitleAndStatus(String title, String status, long after, int limit) {
+        if (title.isEmpty() && replica.isReady()) {
+            return replica.findBooksByStatus(status, after, limit);
+        }
+
+        BookQueryCache.Query query = new BookQueryCache.Query(title, status, after, limit);
+
+        return queryCache.get(query, () -> singleFlight.run(QUERY_LOOKUP, query, () -> {
+            Pageable page = PageRequest.of(0, limit);
+
+            if (title.isEmpty() && status.isEmpty()) {
+                return repository.findByIdGreaterThanOrderByIdAsc(after, page);
+            }
+
+            if (title.isEmpty()) {
+                return BookStatus.find(status)
+                        .map(wanted -> repository.findByStatusAndIdGreaterThanOrderByIdAsc(wanted, after, page))
+                        .orElseGet(ArrayList::new);
+            }
+
+            return findAllById(searchIndex.findIdsByTitle(title, status, after, limit));
+        }));
+    }
+
+    /**
+     * Searches title, author and isbn for every term of the query, best matches first.
+     *
+     * @param query
+     * @param status
+     * @param limit
+     * @return
+     */
+    @Transactional(readOnly = true)
+    public List<Book> search(String query, String status, int limit) {
+        return findAllByIdInOrder(searchIds(query, status, limit));
+    }
+
+    /**
+     * Gets the ids of the books {@link #search(String, String, int)} would return, without loading them.
+     *
+     * @param query
+     * @param status
+     * @param limit
+     * @return
+     */
+    public List<Long> searchIds(String query, String status, int limit) {
+        return searchIndex.search(query, status, limit);
+    }
+
+    /**
+     * Loads the books with the given ids in the order of the ids, skipping the ones that don't exist.
+     *
+     * @param ids
+     * @return
+     */
+    @Transactional(readOnly = true)
+    public List<Book> findAllByIdInOrder(List<Long> ids) {
+        Map<Long, Integer> ranks = new HashMap<>();
+
+        for (int i = 0; i < ids.size(); i++) {
+            ranks.put(ids.get(i), i);
         }
 
-        if (status.isEmpty()) {
-            return repository.findByTitleContainingIgnoreCase(title);
+        List<Book> books = new ArrayList<>(loadAll(ids));
+        books.sort(Comparator.comparing(book -> ranks.get(book.getId())));
+
+        return books;
+    }
+
+    /**
+     * Passes every matching book to the consumer in id order, detaching each one afterwards
+     * so the persistence context doesn't grow with the catalog.
+     *
+     * @param title
+     * @param status
+     * @param consumer
+     */
+    @Transactional(readOnly = true)
+    public void streamByTitleAndStatus(String title, String status, Consumer<Book> consumer) {
+        Optional<BookStatus> wanted = BookStatus.find(status);
+
+        if (!status.isEmpty() && !wanted.isPresent()) {
+            return;
         }
 
-        if (title.isEmpty()) {
-            return repository.findByStatusIgnoreCase(status);
+        try (Stream<Book> books = repository.streamByTitleAndStatus(title, wanted.orElse(null))) {
+            books.forEach(book -> {
+                consumer.accept(book);
+                entityManager.detach(book);
+            });
         }
+    }
 
-        return repository.findByTitleContainingIgnoreCaseAndStatusIgnoreCase(title, status);
+    /**
+     * Gets the number of books with each status without counting them in the database.
+     *
+     * @return
+     */
+    public Map<String, Long> countByStatus() {
+        return statusCounts.asMap();
     }
 
+    /**
+     * Finds the book by id. Runs in the repository's read-only transaction rather than one of its own, so
+     * lookups served by the replica or sharing another one's query don't hold a connection.
+     *
+     * @param id
+     * @return
+     */
     public Optional<Book> findById(Long id) {
-        return repository.findById(id);
+        if (replica.isReady()) {
+            return replica.findBook(id);
+        }
+
+        return singleFlight.run(BOOK_LOOKUP, id, () -> repository.findById(id));
     }
 
+    /**
+     * Saves the book together with its change event.
+     *
+     * @param newBook
+     * @return
+     */
     public Book save(Book newBook) {
-        return repository.save(newBook);
+        Book book = transactionTemplate.execute(status -> {
+            Book saved = repository.save(newBook);
+            changeOutbox.bookSaved(saved);
+
+            return saved;
+        });
+        searchIndex.index(book);
+        replica.put(book);
+        singleFlight.forget(BOOK_LOOKUP, book.getId());
+        // After the shared loads are dropped, so none of their callers can cache what they read before.
+        singleFlight.forgetAll(QUERY_LOOKUP);
+        queryCache.clear();
+
+        return book;
+    }
+
+    /**
+     * Loads the books with the given ids, ordered by id.
+     */
+    private List<Book> findAllById(List<Long> ids) {
+        List<Book> books = new ArrayList<>(loadAll(ids));
+        books.sort(Comparator.comparing(Book::getId));
+
+        return books;
+    }
+
+    private List<Book> loadAll(List<Long> ids) {
+        return replica.isReady() ? replica.findBooks(ids) : repository.findAllById(ids);
     }
 }
@@ -0,0 +1,234 @@
+package com.mitrais.khotim.library.services;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
+import com.mitrais.khotim.library.repositories.BookRepository;
+import com.mitrais.khotim.library.repositories.StatusCount;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Number of books with each status, counted once at startup and kept up to date from the books Hibernate
+ * inserts, updates and deletes, so reading them doesn't scan the table. Writes are counted when their
+ * transaction commits; writes that bypass Hibernate need a {@link #reload()}, or a {@link #changed} per book
+ * when its status before and after is known.
+ * <p>
+ * A transaction writing books takes a read lock before it commits and only lets go once its writes are
+ * counted, and a reload holds the write lock from before its query until the counts are set. A commit is
+ * therefore either counted before the reload queries, or held back until the reload is done, never both.
+ */
+@Component
+public class BookStatusCounts implements PostInsertEventListener, PostUpdateEventListener,
+        PostDeleteEventListener {
+    private final Map<BookStatus, LongAdder> counts = new EnumMap<>(BookStatus.class);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Autowired
+    private BookRepository repository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    public BookStatusCounts() {
+        for (BookStatus status : BookStatus.values()) {
+            counts.put(status, new LongAdder());
+        }
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry listeners = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_INSERT, this);
+        listeners.appendListeners(EventType.POST_UPDATE, this);
+        listeners.appendListeners(EventType.POST_DELETE, this);
+
+        for (BookStatus status : BookStatus.values()) {
+            Gauge.builder("library.books", this, counts -> counts.get(status))
+                    .description("Books with each status")
+                    .tag("status", status.getValue())
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Counts the books in the database again. The counts move straight to the new values, readers never see
+     * them reset.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        lock.writeLock().lock();
+        try {
+            Map<BookStatus, Long> loaded = new EnumMap<>(BookStatus.class);
+
+            for (StatusCount count : repository.countByStatus()) {
+                loaded.put(count.getStatus(), count.getCount());
+            }
+
+            for (BookStatus status : BookStatus.values()) {
+                LongAdder count = counts.get(status);
+                count.add(loaded.getOrDefault(status, 0L) - count.sum());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves a book written outside this instance's Hibernate session from one status to another.
+     *
+     * @param previous Null for a book that wasn't counted yet.
+     * @param status
+     */
+    public void changed(BookStatus previous, BookStatus status) {
+        if (previous == status) {
+            return;
+        }
+
+        lock.readLock().lock();
+        try {
+            if (previous != null) {
+                counts.get(previous).decrement();
+            }
+
+            counts.get(status).increment();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long get(BookStatus status) {
+        return counts.get(status).sum();
+    }
+
+    /**
+     * Gets the number of books with each status, keyed by the status value.
+     *
+     * @return
+     */
+    public Map<String, Long> asMap() {
+        Map<String, Long> map = new LinkedHashMap<>();
+
+        for (BookStatus status : BookStatus.values()) {
+            map.put(status.getValue(), get(status));
+        }
+
+        return map;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        count(event.getSession(), event.getPersister(), null, event.getState());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getOldState() != null) {
+            count(event.getSession(), event.getPersister(), event.getOldState(), event.getState());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        count(event.getSession(), event.getPersister(), event.getDeletedState(), null);
+    }
+
+    /**
+     * Counting is done by the transaction's own completion processes, not by Hibernate's post-commit events.
+     */
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * Still abstract in Hibernate 5.3, which calls {@link #requiresPostCommitHandling} instead.
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+
+    private void count(EventSource session, EntityPersister persister, Object[] previous, Object[] state) {
+        if (persister.getMappedClass() != Book.class) {
+            return;
+        }
+
+        int index = persister.getEntityMetamodel().getPropertyIndex("status");
+        Commit commit = new Commit(previous == null ? null : (BookStatus) previous[index],
+                state == null ? null : (BookStatus) state[index]);
+
+        if (commit.previous != commit.status) {
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) commit);
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) commit);
+        }
+    }
+
+    /**
+     * One book's status change, holding the read lock from just before its transaction commits until it has
+     * been counted.
+     */
+    private class Commit implements BeforeTransactionCompletionProcess, AfterTransactionCompletionProcess {
+        private final BookStatus previous;
+        private final BookStatus status;
+        private boolean locked;
+
+        Commit(BookStatus previous, BookStatus status) {
+            this.previous = previous;
+            this.status = status;
+        }
+
+        @Override
+        public void doBeforeTransactionCompletion(SessionImplementor session) {
+            lock.readLock().lock();
+            locked = true;
+        }
+
+        @Override
+        public void doAfterTransactionCompletion(boolean success, SharedSessionContractImplementor session) {
+            if (!locked) {
+                return;
+            }
+
+            try {
+                if (success) {
+                    if (previous != null) {
+                        counts.get(previous).decrement();
+                    }
+
+                    if (status != null) {
+                        counts.get(status).increment();
+                    }
+                }
+            } finally {
+                locked = false;
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
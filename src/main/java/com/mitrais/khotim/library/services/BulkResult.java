@@ -0,0 +1,41 @@
+package com.mitrais.khotim.library.services;
+
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one book in a bulk shelf operation.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkResult {
+    private Long shelfId;
+    private Long bookId;
+    private boolean success;
+
+    /**
+     * Code of the rejection, null on success.
+     */
+    private String code;
+
+    /**
+     * Field that caused the rejection, null on success.
+     */
+    private String field;
+
+    /**
+     * Rejection message, null on success.
+     */
+    private String message;
+
+    public static BulkResult success(Long shelfId, Long bookId) {
+        return new BulkResult(shelfId, bookId, true, null, null, null);
+    }
+
+    public static BulkResult rejected(Long shelfId, Long bookId, ShelfOperationException e) {
+        return new BulkResult(shelfId, bookId, false, e.getRejection().getCode(), e.getField(), e.getMessage());
+    }
+}
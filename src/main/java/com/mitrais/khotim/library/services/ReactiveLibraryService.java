@@ -0,0 +1,121 @@
+package com.mitrais.khotim.library.services;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.repositories.ShelfSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Non-blocking view of the book and shelf services.
+ *
+ * JPA calls still block, so they run on a pool no bigger than the connection pool instead of on the
+ * request thread. A request waiting for a connection holds a queued task rather than a servlet thread,
+ * and streamed results are loaded page by page as the client reads them.
+ */
+@Service
+public class ReactiveLibraryService {
+    static final int PAGE_SIZE = 100;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int threads;
+
+    private ExecutorService executor;
+    private Scheduler scheduler;
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("reactive-jpa-"));
+        scheduler = Schedulers.fromExecutorService(executor);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.dispose();
+        executor.shutdown();
+    }
+
+    public Mono<Book> findBookById(Long id) {
+        return blocking(() -> bookService.findById(id)).flatMap(Mono::justOrEmpty);
+    }
+
+    /**
+     * Finds at most limit books with an id greater than after, ordered by id.
+     *
+     * @param title
+     * @param status
+     * @param after
+     * @param limit
+     * @return
+     */
+    public Mono<List<Book>> findBooks(String title, String status, long after, int limit) {
+        return blocking(() -> bookService.findByTitleAndStatus(title, status, after, limit));
+    }
+
+    /**
+     * Streams every matching book in id order, loading the next page only when the subscriber asks for it.
+     *
+     * @param title
+     * @param status
+     * @return
+     */
+    public Flux<Book> streamBooks(String title, String status) {
+        return findBooks(title, status, 0, PAGE_SIZE)
+                .expand(page -> page.size() < PAGE_SIZE
+                        ? Mono.empty()
+                        : findBooks(title, status, page.get(page.size() - 1).getId(), PAGE_SIZE))
+                .concatMapIterable(page -> page, 1);
+    }
+
+    /**
+     * Streams the search results best matches first, loading them a page at a time as the subscriber asks
+     * for them.
+     *
+     * @param query
+     * @param status
+     * @param limit
+     * @return
+     */
+    public Flux<Book> search(String query, String status, int limit) {
+        return blocking(() -> bookService.searchIds(query, status, limit))
+                .flatMapIterable(ids -> ids)
+                .buffer(PAGE_SIZE)
+                .concatMap(ids -> blocking(() -> bookService.findAllByIdInOrder(ids)), 1)
+                .concatMapIterable(page -> page, 1);
+    }
+
+    public Mono<Shelf> findShelfById(Long id) {
+        return blocking(() -> shelfService.findByIdWithBooks(id)).flatMap(Mono::justOrEmpty);
+    }
+
+    public Flux<Shelf> findAllShelves() {
+        return blocking(shelfService::findAllWithBooks).flatMapIterable(shelves -> shelves);
+    }
+
+    public Flux<ShelfSummary> findAllShelfSummaries() {
+        return blocking(shelfService::findAllSummaries).flatMapIterable(shelves -> shelves);
+    }
+
+    private <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(scheduler);
+    }
+}
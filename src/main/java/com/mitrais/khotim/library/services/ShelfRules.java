@@ -0,0 +1,97 @@
+package com.mitrais.khotim.library.services;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.errors.Rejection;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+
+/**
+ * The checks a shelf operation has to pass, shared by the controller, which rejects early without a transaction,
+ * and the single and bulk operations of {@link ShelfService}, which check again against the locked rows.
+ */
+public final class ShelfRules {
+    public static final Rule HAS_ROOM = (shelf, book) -> shelf.getCurrentCapacity() >= shelf.getMaxCapacity()
+            ? new ShelfOperationException(Rejection.CAPACITY_REACHED, shelf.getName())
+            : null;
+
+    public static final Rule NOT_IN_SHELF = (shelf, book) -> shelf.contains(book)
+            ? new ShelfOperationException(Rejection.ALREADY_IN_SHELF, book.getTitle(), shelf.getName())
+            : null;
+
+    /**
+     * A shelved book without a shelf, which imported rows can leave, is still rejected rather than failing.
+     */
+    public static final Rule NOT_SHELVED = (shelf, book) -> book.getStatus() == BookStatus.SHELVED
+            ? new ShelfOperationException(Rejection.ALREADY_SHELVED, book.getTitle(),
+                    book.getShelf() == null ? null : book.getShelf().getName())
+            : null;
+
+    public static final Rule IN_SHELF = (shelf, book) -> !shelf.contains(book)
+            ? new ShelfOperationException(Rejection.NOT_IN_SHELF, book.getTitle(), shelf.getName())
+            : null;
+
+    /**
+     * Checks for adding a book: the shelf has room, the book isn't in it and isn't shelved elsewhere.
+     */
+    public static final Rule ADD = HAS_ROOM.then(NOT_IN_SHELF).then(NOT_SHELVED);
+
+    /**
+     * Checks for adding a book that don't need the book's shelf, which can't be loaded outside a transaction
+     * when open-in-view is off: the shelf has room and the book isn't in it. A book shelved elsewhere is
+     * rejected by the service.
+     */
+    public static final Rule EARLY_ADD = HAS_ROOM.then(NOT_IN_SHELF);
+
+    /**
+     * Checks for removing a book: the book is in the shelf.
+     */
+    public static final Rule REMOVE = IN_SHELF;
+
+    private ShelfRules() {
+    }
+
+    /**
+     * A check of a book against a shelf.
+     */
+    @FunctionalInterface
+    public interface Rule {
+        /**
+         * Checks the book against the shelf.
+         *
+         * @param shelf
+         * @param book
+         * @return The rejection, or null when the operation may go on.
+         */
+        ShelfOperationException check(Shelf shelf, Book book);
+
+        /**
+         * Runs the next rule when this one passes.
+         *
+         * @param next
+         * @return
+         */
+        default Rule then(Rule next) {
+            return (shelf, book) -> {
+                ShelfOperationException rejected = check(shelf, book);
+
+                return rejected != null ? rejected : next.check(shelf, book);
+            };
+        }
+
+        /**
+         * Checks the book against the shelf.
+         *
+         * @param shelf
+         * @param book
+         * @throws ShelfOperationException When the check fails.
+         */
+        default void verify(Shelf shelf, Book book) {
+            ShelfOperationException rejected = check(shelf, book);
+
+            if (rejected != null) {
+                throw rejected;
+            }
+        }
+    }
+}
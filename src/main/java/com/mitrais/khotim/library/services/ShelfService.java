@@ -1,32 +1,91 @@
 package com.mitrais.khotim.library.services;
 
+import com.mitrais.khotim.library.changes.ChangeOutbox;
 import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
 import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.errors.Rejection;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+import com.mitrais.khotim.library.placement.FreeCapacityIndex;
+import com.mitrais.khotim.library.repositories.BookRepository;
 import com.mitrais.khotim.library.repositories.ShelfRepository;
+import com.mitrais.khotim.library.repositories.ShelfSummary;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.List;
-import java.util.Optional;
+import javax.persistence.EntityManagerFactory;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 @Service
 public class ShelfService {
+    static final int MAX_ATTEMPTS = 5;
+    static final String SHELF_LOOKUP = "shelf";
+    static final String SHELF_WITH_BOOKS_LOOKUP = "shelfWithBooks";
+
     @Autowired
     private ShelfRepository shelfRepository;
 
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookSearchIndex searchIndex;
+
+    @Autowired
+    private BookQueryCache bookQueryCache;
+
+    @Autowired
+    private BookStatusCounts statusCounts;
+
+    @Autowired
+    private BookReplica replica;
+
+    @Autowired
+    private ChangeOutbox changeOutbox;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private FreeCapacityIndex freeCapacity;
+
+    /**
+     * Serializes operations on the same shelf within this instance so they don't fail each other's
+     * version checks. Operations on other shelves mostly take other stripes and run in parallel.
+     */
+    private final StripedLock shelfLocks = new StripedLock(256);
+
     /**
      * Adds book into shelf.
      *
      * @param shelf
      * @param book
      * @return
+     * @throws ShelfOperationException When the shelf is full or the book is already shelved.
      */
     public Shelf addBook(Shelf shelf, Book book) {
-        book.setStatus(Book.SHELVED);
-        shelf.setCurrentCapacity(shelf.getCurrentCapacity() + 1);
-        shelf.addBook(book);
+        return update(shelf, book, (currentShelf, currentBook) -> {
+            ShelfRules.ADD.verify(currentShelf, currentBook);
 
-        return shelfRepository.save(shelf);
+            currentBook.setStatus(BookStatus.SHELVED);
+            currentShelf.setCurrentCapacity(currentShelf.getCurrentCapacity() + 1);
+            currentShelf.addBook(currentBook);
+            changeOutbox.bookShelved(currentBook, currentShelf);
+
+            return shelfRepository.save(currentShelf);
+        });
     }
 
     /**
@@ -35,24 +94,320 @@ public class ShelfService {
      * @param shelf
      * @param book
      * @return
+     * @throws ShelfOperationException When the book isn't in the shelf.
      */
     public Shelf removeBook(Shelf shelf, Book book) {
-        book.setStatus(Book.NOT_SHELVED);
-        shelf.setCurrentCapacity(shelf.getCurrentCapacity() - 1);
-        shelf.removeBook(book);
+        return update(shelf, book, (currentShelf, currentBook) -> {
+            ShelfRules.REMOVE.verify(currentShelf, currentBook);
+
+            currentBook.setStatus(BookStatus.NOT_SHELVED);
+            currentShelf.setCurrentCapacity(Math.max(0, currentShelf.getCurrentCapacity() - 1));
+            currentShelf.removeBook(currentBook);
+            changeOutbox.bookUnshelved(currentBook, currentShelf);
+
+            // The book is no longer reachable from the shelf's books, so it isn't saved by cascade.
+            bookRepository.save(currentBook);
+
+            return shelfRepository.save(currentShelf);
+        });
+    }
 
-        return shelfRepository.save(shelf);
+    /**
+     * Adds the books into the shelf, checking capacity once for the whole batch. Books are accepted in the
+     * given order until the shelf is full and written in one transaction with batched updates.
+     *
+     * @param shelfId
+     * @param bookIds
+     * @return One result per given book id, in the same order.
+     * @throws ShelfOperationException When the shelf id or book ids are missing.
+     */
+    public List<BulkResult> addBooks(Long shelfId, List<Long> bookIds) {
+        return updateAll(shelfId, bookIds, (shelf, books, results) -> {
+            for (Book book : books) {
+                ShelfOperationException rejected = ShelfRules.ADD.check(shelf, book);
+
+                if (rejected != null) {
+                    results.put(book.getId(), BulkResult.rejected(shelfId, book.getId(), rejected));
+                } else {
+                    book.setStatus(BookStatus.SHELVED);
+                    shelf.setCurrentCapacity(shelf.getCurrentCapacity() + 1);
+                    shelf.addBook(book);
+                    changeOutbox.bookShelved(book, shelf);
+                    results.put(book.getId(), BulkResult.success(shelfId, book.getId()));
+                }
+            }
+        });
     }
 
+    /**
+     * Removes the books from the shelf in one transaction with batched updates.
+     *
+     * @param shelfId
+     * @param bookIds
+     * @return One result per given book id, in the same order.
+     * @throws ShelfOperationException When the shelf id or book ids are missing.
+     */
+    public List<BulkResult> removeBooks(Long shelfId, List<Long> bookIds) {
+        return updateAll(shelfId, bookIds, (shelf, books, results) -> {
+            for (Book book : books) {
+                ShelfOperationException rejected = ShelfRules.REMOVE.check(shelf, book);
+
+                if (rejected != null) {
+                    results.put(book.getId(), BulkResult.rejected(shelfId, book.getId(), rejected));
+                } else {
+                    book.setStatus(BookStatus.NOT_SHELVED);
+                    shelf.setCurrentCapacity(Math.max(0, shelf.getCurrentCapacity() - 1));
+                    shelf.removeBook(book);
+                    changeOutbox.bookUnshelved(book, shelf);
+                    results.put(book.getId(), BulkResult.success(shelfId, book.getId()));
+                }
+            }
+        });
+    }
+
+    /**
+     * Finds the shelf without its books. Concurrent callers may share the same shelf, so its books must not
+     * be read from it; use {@link #findByIdWithBooks(Long)} for that. Runs in the repository's read-only
+     * transaction rather than one of its own, so lookups served by the replica or sharing another one's query
+     * don't hold a connection.
+     *
+     * @param id
+     * @return
+     */
     public Optional<Shelf> findById(Long id) {
-        return shelfRepository.findById(id);
+        if (replica.isReady()) {
+            return replica.findShelfWithoutBooks(id);
+        }
+
+        return singleFlight.run(SHELF_LOOKUP, id, () -> shelfRepository.findById(id));
     }
 
+    /**
+     * Finds the shelf with its books loaded, so they can be read after the persistence context is closed.
+     *
+     * @param id
+     * @return
+     */
+    public Optional<Shelf> findByIdWithBooks(Long id) {
+        if (replica.isReady()) {
+            return replica.findShelf(id);
+        }
+
+        return singleFlight.run(SHELF_WITH_BOOKS_LOOKUP, id, () -> shelfRepository.findWithBooksById(id));
+    }
+
+    @Transactional(readOnly = true)
     public List<Shelf> findAll() {
         return shelfRepository.findAll();
     }
 
+    /**
+     * Finds all shelves with their books loaded by a single query.
+     *
+     * @return
+     */
+    @Transactional(readOnly = true)
+    public List<Shelf> findAllWithBooks() {
+        return shelfRepository.findAllWithBooks();
+    }
+
+    /**
+     * Finds all shelves with their capacities only.
+     *
+     * @return
+     */
+    @Transactional(readOnly = true)
+    public List<ShelfSummary> findAllSummaries() {
+        return shelfRepository.findAllSummaries();
+    }
+
     public Shelf save(Shelf shelf) {
-        return shelfRepository.save(shelf);
+        Shelf saved = shelfRepository.save(shelf);
+        shelfChanged(saved);
+
+        return saved;
+    }
+
+    /**
+     * Refreshes what this instance keeps of the shelves and books another instance changed: evicts them from the
+     * second-level cache, then updates the search index, query cache and replica from the database. Status counts
+     * move each book from the status it was indexed with to the one it has now, without counting the table.
+     *
+     * @param shelfIds
+     * @param bookIds
+     */
+    public void refresh(Collection<Long> shelfIds, Collection<Long> bookIds) {
+        org.hibernate.Cache cache = entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class);
+
+        for (Long shelfId : shelfIds) {
+            cache.evictEntityData(Shelf.class, shelfId);
+            cache.evictCollectionData(Shelf.class.getName() + ".books", shelfId);
+        }
+
+        for (Long bookId : bookIds) {
+            cache.evictEntityData(Book.class, bookId);
+        }
+
+        for (Book book : bookRepository.findAllById(bookIds)) {
+            statusCounts.changed(searchIndex.findStatus(book.getId()).orElse(null), book.getStatus());
+            bookChanged(book);
+        }
+
+        for (Shelf shelf : shelfRepository.findAllById(shelfIds)) {
+            shelfChanged(shelf);
+        }
+    }
+
+    /**
+     * Applies the operation to freshly loaded copies of the shelf and book, locked in that order.
+     */
+    private Shelf update(Shelf shelf, Book book, BiFunction<Shelf, Book, Shelf> operation) {
+        Book[] updatedBook = new Book[1];
+
+        Shelf saved = inShelfTransaction(shelf.getId(), () -> {
+            Shelf currentShelf = shelfRepository.findForUpdateById(shelf.getId())
+                    .orElseThrow(() -> new ShelfOperationException(Rejection.SHELF_NOT_FOUND, String.valueOf(shelf.getId())));
+            updatedBook[0] = bookRepository.findForUpdateById(book.getId())
+                    .orElseThrow(() -> new ShelfOperationException(Rejection.BOOK_NOT_FOUND, String.valueOf(book.getId())));
+
+            return operation.apply(currentShelf, updatedBook[0]);
+        });
+        bookChanged(updatedBook[0]);
+        shelfChanged(saved);
+
+        return saved;
+    }
+
+    /**
+     * Loads and locks the shelf and all the books with one query each and applies the operation to the books
+     * that exist, each of them once. The operation records a result for every book it's given. Null ids are
+     * rejected without being looked up.
+     */
+    private List<BulkResult> updateAll(Long shelfId, List<Long> bookIds, BulkOperation operation) {
+        if (shelfId == null) {
+            throw new ShelfOperationException(Rejection.SHELF_ID_REQUIRED);
+        }
+
+        if (bookIds == null) {
+            throw new ShelfOperationException(Rejection.BOOK_IDS_REQUIRED);
+        }
+
+        Set<Long> distinctIds = new LinkedHashSet<>(bookIds);
+        distinctIds.remove(null);
+        Map<Long, BulkResult> results = new HashMap<>();
+        List<Book> updatedBooks = new ArrayList<>();
+
+        Shelf saved = inShelfTransaction(shelfId, () -> {
+            results.clear();
+            updatedBooks.clear();
+
+            Shelf shelf = shelfRepository.findForUpdateById(shelfId).orElse(null);
+
+            if (shelf == null) {
+                return null;
+            }
+
+            Map<Long, Book> books = new HashMap<>();
+
+            for (Book book : bookRepository.findForUpdateByIdInOrderByIdAsc(distinctIds)) {
+                books.put(book.getId(), book);
+            }
+
+            for (Long bookId : distinctIds) {
+                Book book = books.get(bookId);
+
+                if (book != null) {
+                    updatedBooks.add(book);
+                }
+            }
+
+            operation.apply(shelf, updatedBooks, results);
+            shelfRepository.save(shelf);
+
+            return shelf;
+        });
+        boolean found = saved != null;
+        ShelfOperationException shelfNotFound = found ? null : new ShelfOperationException(Rejection.SHELF_NOT_FOUND, String.valueOf(shelfId));
+
+        List<BulkResult> ordered = new ArrayList<>(bookIds.size());
+        Set<Long> seen = new HashSet<>();
+
+        for (Long bookId : bookIds) {
+            if (!found) {
+                ordered.add(BulkResult.rejected(shelfId, bookId, shelfNotFound));
+            } else if (bookId == null) {
+                ordered.add(BulkResult.rejected(shelfId, null, new ShelfOperationException(Rejection.BOOK_ID_REQUIRED)));
+            } else if (!seen.add(bookId)) {
+                ordered.add(BulkResult.rejected(shelfId, bookId, new ShelfOperationException(Rejection.LISTED_TWICE, bookId.toString())));
+            } else if (!results.containsKey(bookId)) {
+                ordered.add(BulkResult.rejected(shelfId, bookId, new ShelfOperationException(Rejection.BOOK_NOT_FOUND, bookId.toString())));
+            } else {
+                ordered.add(results.get(bookId));
+            }
+        }
+
+        for (Book book : updatedBooks) {
+            if (results.get(book.getId()).isSuccess()) {
+                bookChanged(book);
+            }
+        }
+
+        if (found) {
+            shelfChanged(saved);
+        }
+
+        return ordered;
+    }
+
+    /**
+     * Refreshes what's derived from the book outside the database once its change is committed.
+     */
+    private void bookChanged(Book book) {
+        searchIndex.index(book);
+        replica.put(book);
+        singleFlight.forget(BookService.BOOK_LOOKUP, book.getId());
+        // After the shared loads are dropped, so none of their callers can cache what they read before.
+        singleFlight.forgetAll(BookService.QUERY_LOOKUP);
+        bookQueryCache.evict(book);
+    }
+
+    /**
+     * Refreshes the replica and free capacity index and stops sharing lookups of the shelf that started before
+     * its change.
+     */
+    private void shelfChanged(Shelf shelf) {
+        replica.put(shelf);
+        freeCapacity.put(shelf);
+        singleFlight.forget(SHELF_LOOKUP, shelf.getId());
+        singleFlight.forget(SHELF_WITH_BOOKS_LOOKUP, shelf.getId());
+    }
+
+    /**
+     * Runs the work in its own transaction while holding the shelf's lock. Writers in other instances are kept
+     * out by the row locks the work takes, shelf first, then books in id order. The shelf and book versions still
+     * guard against writers that don't lock; when one of them wins, the work is run again against the new state,
+     * so it must load what it validates inside the transaction.
+     */
+    private <T> T inShelfTransaction(Long shelfId, Supplier<T> work) {
+        Lock lock = shelfLocks.get(shelfId);
+        lock.lock();
+
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return transactionTemplate.execute(status -> work.get());
+                } catch (OptimisticLockingFailureException e) {
+                    if (attempt == MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private interface BulkOperation {
+        void apply(Shelf shelf, List<Book> books, Map<Long, BulkResult> results);
     }
 }
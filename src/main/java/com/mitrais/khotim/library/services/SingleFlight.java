@@ -0,0 +1,147 @@
+package com.mitrais.khotim.library.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Shares one in-flight load between concurrent callers asking for the same key, so a burst of identical
+ * lookups runs one query instead of one each. Nothing is kept once the load finishes; at most max-keys loads
+ * are tracked at a time and callers past that load on their own.
+ * <p>
+ * Callers get the very same result, so only results that are read and not changed may be shared.
+ */
+@Component
+public class SingleFlight {
+    private final Map<Call, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    @Value("${library.coalescing.max-keys:10000}")
+    private int maxKeys;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    /**
+     * Runs the loader unless a load for the same lookup and key is already in flight, then waits for that one.
+     *
+     * @param lookup Name of the lookup, for the metrics and to keep keys of different lookups apart.
+     * @param key
+     * @param loader
+     * @param <V>
+     * @return
+     */
+    public <V> V run(String lookup, Object key, Supplier<V> loader) {
+        Counters counters = this.counters.computeIfAbsent(lookup, Counters::new);
+
+        if (calls.size() >= maxKeys) {
+            counters.bypassed.increment();
+            return loader.get();
+        }
+
+        Call call = new Call(lookup, key);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> leader = calls.putIfAbsent(call, flight);
+
+        if (leader != null) {
+            counters.coalesced.increment();
+            return await(leader);
+        }
+
+        counters.loaded.increment();
+
+        try {
+            V value = loader.get();
+            flight.complete(value);
+
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(call, flight);
+        }
+    }
+
+    /**
+     * Stops sharing the load in flight for the key, so callers after a write don't get what was read before it.
+     *
+     * @param lookup
+     * @param key
+     */
+    public void forget(String lookup, Object key) {
+        calls.remove(new Call(lookup, key));
+    }
+
+    /**
+     * Stops sharing every load in flight for the lookup.
+     *
+     * @param lookup
+     */
+    public void forgetAll(String lookup) {
+        calls.keySet().removeIf(call -> call.lookup.equals(lookup));
+    }
+
+    int inFlight() {
+        return calls.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V await(CompletableFuture<Object> flight) {
+        try {
+            return (V) flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    @EqualsAndHashCode
+    @ToString
+    private static final class Call {
+        private final String lookup;
+        private final Object key;
+
+        Call(String lookup, Object key) {
+            this.lookup = lookup;
+            this.key = key;
+        }
+    }
+
+    private class Counters {
+        private final Counter loaded;
+        private final Counter coalesced;
+        private final Counter bypassed;
+
+        Counters(String lookup) {
+            loaded = counter(lookup, "loaded");
+            coalesced = counter(lookup, "coalesced");
+            bypassed = counter(lookup, "bypassed");
+        }
+
+        private Counter counter(String lookup, String outcome) {
+            return Counter.builder("library.lookups")
+                    .description("Lookups by whether they ran a load, waited for one in flight or ran past the limit")
+                    .tag("lookup", lookup)
+                    .tag("outcome", outcome)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.mitrais.khotim.library.services;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks shared by key hash, so unrelated keys rarely contend and memory doesn't grow with keys.
+ */
+class StripedLock {
+    private final Lock[] locks;
+
+    StripedLock(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new Lock[size];
+
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    Lock get(Object key) {
+        int hash = key == null ? 0 : key.hashCode();
+        hash ^= hash >>> 16;
+
+        return locks[hash & (locks.length - 1)];
+    }
+}
@@ -0,0 +1,75 @@
+package com.mitrais.khotim.library.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only store of UTF-8 strings in one byte array, each addressed by the position it was added at.
+ * Strings that are replaced stay in the array until it's cleared.
+ */
+class TextArena {
+    private byte[] bytes = new byte[1024];
+    private int size = 0;
+
+    /**
+     * Appends the string, prefixed by its encoded length.
+     *
+     * @param text
+     * @return Position to read it back from.
+     */
+    int add(String text) {
+        byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+        int position = size;
+
+        ensureCapacity(5 + encoded.length);
+
+        for (int length = encoded.length; ; length >>>= 7) {
+            if (length < 0x80) {
+                bytes[size++] = (byte) length;
+                break;
+            }
+
+            bytes[size++] = (byte) (length & 0x7F | 0x80);
+        }
+
+        System.arraycopy(encoded, 0, bytes, size, encoded.length);
+        size += encoded.length;
+
+        return position;
+    }
+
+    String get(int position) {
+        int length = 0;
+
+        for (int shift = 0; ; shift += 7) {
+            byte next = bytes[position++];
+            length |= (next & 0x7F) << shift;
+
+            if (next >= 0) {
+                break;
+            }
+        }
+
+        return new String(bytes, position, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the number of bytes allocated, used or not.
+     *
+     * @return
+     */
+    long capacity() {
+        return bytes.length;
+    }
+
+    void clear() {
+        bytes = new byte[1024];
+        size = 0;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (size + needed > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(size + needed, size + (size >> 1)));
+        }
+    }
+}
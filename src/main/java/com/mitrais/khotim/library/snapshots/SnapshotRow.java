@@ -0,0 +1,52 @@
+package com.mitrais.khotim.library.snapshots;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.repositories.ShelfSummary;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of a snapshot file, a shelf or a book row with its ids and without the entity version.
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+    @JsonSubTypes.Type(value = SnapshotRow.ShelfRow.class, name = "shelf"),
+    @JsonSubTypes.Type(value = SnapshotRow.BookRow.class, name = "book")
+})
+public abstract class SnapshotRow {
+    @Data
+    @EqualsAndHashCode(callSuper = false)
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ShelfRow extends SnapshotRow {
+        private Long id;
+        private String name;
+        private int maxCapacity;
+        private int currentCapacity;
+
+        public static ShelfRow of(ShelfSummary shelf) {
+            return new ShelfRow(shelf.getId(), shelf.getName(), shelf.getMaxCapacity(), shelf.getCurrentCapacity());
+        }
+    }
+
+    @Data
+    @EqualsAndHashCode(callSuper = false)
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BookRow extends SnapshotRow {
+        private Long id;
+        private String isbn;
+        private String title;
+        private String author;
+        private String status;
+        private Long shelfId;
+
+        public static BookRow of(Book book) {
+            return new BookRow(book.getId(), book.getIsbn(), book.getTitle(), book.getAuthor(), book.getStatus().getValue(), book.getShelfId());
+        }
+    }
+}
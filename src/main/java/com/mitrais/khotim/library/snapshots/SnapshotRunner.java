@@ -0,0 +1,36 @@
+package com.mitrais.khotim.library.snapshots;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+
+/**
+ * Imports and exports snapshots on startup, e.g. {@code --library.snapshot.import=catalog.ndjson.gz}.
+ * Import runs first, so both together copy the imported catalog to the export file.
+ */
+@Component
+public class SnapshotRunner implements ApplicationRunner {
+    @Autowired
+    private SnapshotService snapshotService;
+
+    @Value("${library.snapshot.import:}")
+    private String importPath;
+
+    @Value("${library.snapshot.export:}")
+    private String exportPath;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!importPath.isEmpty()) {
+            snapshotService.importFrom(Paths.get(importPath));
+        }
+
+        if (!exportPath.isEmpty()) {
+            snapshotService.exportTo(Paths.get(exportPath));
+        }
+    }
+}
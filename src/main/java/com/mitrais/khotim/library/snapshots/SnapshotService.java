@@ -0,0 +1,293 @@
+package com.mitrais.khotim.library.snapshots;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mitrais.khotim.library.domains.BookStatus;
+import com.mitrais.khotim.library.placement.FreeCapacityIndex;
+import com.mitrais.khotim.library.repositories.ShelfSummary;
+import com.mitrais.khotim.library.services.BookQueryCache;
+import com.mitrais.khotim.library.services.BookReplica;
+import com.mitrais.khotim.library.services.BookSearchIndex;
+import com.mitrais.khotim.library.services.BookService;
+import com.mitrais.khotim.library.services.BookStatusCounts;
+import com.mitrais.khotim.library.services.ShelfService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports the catalog to a newline delimited JSON file and imports it back, gzipped when the file name
+ * ends with .gz. Every shelf comes before the books, so the books' shelves exist by the time they're inserted.
+ *
+ * Both directions stream, so heap use doesn't depend on the size of the catalog. Import reads and parses
+ * the file on its own thread while the calling thread inserts the rows in JDBC batches, one transaction
+ * per batch, without going through the entities.
+ */
+@Service
+public class SnapshotService {
+    static final int BATCH_SIZE = 1000;
+    static final int QUEUED_BATCHES = 4;
+
+    /**
+     * Hibernate's pooled optimizer hands out the allocationSize ids below the sequence value it reads.
+     */
+    static final int SEQUENCE_ALLOCATION = 50;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final List<SnapshotRow> END = Collections.emptyList();
+
+    private static final String INSERT_SHELF = "insert into shelf (shelf_id, name, max_capacity, current_capacity, version)"
+            + " values (?, ?, ?, ?, 0)";
+    private static final String INSERT_BOOK = "insert into book (id, isbn, title, author, status, shelf_id, version)"
+            + " values (?, ?, ?, ?, ?, ?, 0)";
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotService.class);
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private BookSearchIndex searchIndex;
+
+    @Autowired
+    private BookReplica replica;
+
+    @Autowired
+    private BookStatusCounts statusCounts;
+
+    @Autowired
+    private BookQueryCache queryCache;
+
+    @Autowired
+    private FreeCapacityIndex freeCapacity;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    /**
+     * Writes every shelf and then every book, in id order, to the file, replacing it if it exists.
+     *
+     * @param path
+     * @return Number of rows written.
+     * @throws IOException
+     */
+    public long exportTo(Path path) throws IOException {
+        long start = System.currentTimeMillis();
+        List<ShelfSummary> shelves = shelfService.findAllSummaries();
+        long[] books = new long[1];
+
+        // Rows written one after another to the generator are separated by a space unless told otherwise.
+        ObjectWriter writer = mapper.writerFor(SnapshotRow.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n");
+
+        try (OutputStream out = open(path); JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            for (ShelfSummary shelf : shelves) {
+                writer.writeValue(generator, SnapshotRow.ShelfRow.of(shelf));
+            }
+
+            bookService.streamByTitleAndStatus("", "", book -> {
+                try {
+                    writer.writeValue(generator, SnapshotRow.BookRow.of(book));
+                    books[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        log.info("Exported {} shelves and {} books to {} in {} ms", shelves.size(), books[0], path, System.currentTimeMillis() - start);
+
+        return shelves.size() + books[0];
+    }
+
+    /**
+     * Inserts every row of the file. Rows keep their ids, so they must not exist yet. Batches that were
+     * inserted before a failure stay inserted.
+     *
+     * The book and shelf sequences are moved past the imported ids, but ids Hibernate already reserved
+     * in this instance are still handed out, so import before the application saves anything.
+     *
+     * @param path
+     * @return Number of rows inserted.
+     * @throws IOException When the file can't be read or parsed.
+     */
+    public long importFrom(Path path) throws IOException {
+        long start = System.currentTimeMillis();
+        BlockingQueue<List<SnapshotRow>> batches = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+        ExecutorService reader = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("snapshot-reader-"));
+        Future<?> reading = reader.submit(() -> {
+            read(path, batches);
+            return null;
+        });
+        long rows = 0;
+
+        try {
+            List<SnapshotRow> batch;
+
+            while ((batch = batches.take()) != END) {
+                insert(batch);
+                rows += batch.size();
+            }
+
+            reading.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while importing " + path);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            reading.cancel(true);
+            reader.shutdownNow();
+        }
+
+        restartSequence("book_seq", "select max(id) from book");
+        restartSequence("shelf_seq", "select max(shelf_id) from shelf");
+        refreshCaches();
+
+        log.info("Imported {} rows from {} in {} ms", rows, path, System.currentTimeMillis() - start);
+
+        return rows;
+    }
+
+    /**
+     * Parses the file into batches of rows, always ending with {@link #END} so the importing thread
+     * doesn't wait forever when parsing fails. When the import failed and cancelled the reader nothing takes
+     * from the queue any more, so the end is then only offered.
+     */
+    private void read(Path path, BlockingQueue<List<SnapshotRow>> batches) throws IOException, InterruptedException {
+        boolean cancelled = false;
+
+        try (InputStream in = openForRead(path);
+             MappingIterator<SnapshotRow> rows = mapper.readerFor(SnapshotRow.class).readValues(in)) {
+            List<SnapshotRow> batch = new ArrayList<>(BATCH_SIZE);
+
+            while (rows.hasNextValue()) {
+                batch.add(rows.nextValue());
+
+                if (batch.size() == BATCH_SIZE) {
+                    batches.put(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                batches.put(batch);
+            }
+        } catch (InterruptedException e) {
+            cancelled = true;
+            throw e;
+        } finally {
+            if (cancelled || Thread.currentThread().isInterrupted()) {
+                batches.offer(END);
+            } else {
+                batches.put(END);
+            }
+        }
+    }
+
+    private void insert(List<SnapshotRow> batch) {
+        List<Object[]> shelves = new ArrayList<>();
+        List<Object[]> books = new ArrayList<>();
+
+        for (SnapshotRow row : batch) {
+            if (row instanceof SnapshotRow.ShelfRow) {
+                SnapshotRow.ShelfRow shelf = (SnapshotRow.ShelfRow) row;
+                shelves.add(new Object[]{shelf.getId(), shelf.getName(), shelf.getMaxCapacity(), shelf.getCurrentCapacity()});
+            } else {
+                SnapshotRow.BookRow book = (SnapshotRow.BookRow) row;
+                books.add(new Object[]{book.getId(), book.getIsbn(), book.getTitle(), book.getAuthor(),
+                        String.valueOf(BookStatus.of(book.getStatus()).getCode()), book.getShelfId()});
+            }
+        }
+
+        transactionTemplate.execute(status -> {
+            if (!shelves.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SHELF, shelves);
+            }
+
+            if (!books.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_BOOK, books);
+            }
+
+            return null;
+        });
+    }
+
+    private void restartSequence(String sequence, String maxId) {
+        Long max = jdbcTemplate.queryForObject(maxId, Long.class);
+
+        if (max != null) {
+            jdbcTemplate.execute("alter sequence " + sequence + " restart with " + (max + SEQUENCE_ALLOCATION + 1));
+        }
+    }
+
+    /**
+     * The rows were inserted behind Hibernate's back, so drop everything cached about books and shelves.
+     */
+    private void refreshCaches() {
+        entityManagerFactory.getCache().evictAll();
+
+        queryCache.clear();
+
+        searchIndex.rebuild();
+        replica.rebuild();
+        statusCounts.reload();
+        freeCapacity.reload();
+    }
+
+    private static OutputStream open(Path path) throws IOException {
+        OutputStream out = Channels.newOutputStream(FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+
+        return isGzip(path) ? new GZIPOutputStream(out, BUFFER_SIZE) : new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    private static InputStream openForRead(Path path) throws IOException {
+        InputStream in = Channels.newInputStream(FileChannel.open(path, StandardOpenOption.READ));
+
+        return isGzip(path) ? new GZIPInputStream(in, BUFFER_SIZE) : new BufferedInputStream(in, BUFFER_SIZE);
+    }
+
+    private static boolean isGzip(Path path) {
+        return path.getFileName().toString().endsWith(".gz");
+    }
+}
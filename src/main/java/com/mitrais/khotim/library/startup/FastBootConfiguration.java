@@ -0,0 +1,18 @@
+package com.mitrais.khotim.library.startup;
+
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Creates beans on first use in the fast-boot profile, see application-fast-boot.properties for the rest of it.
+ */
+@Configuration
+@Profile("fast-boot")
+public class FastBootConfiguration {
+    @Bean
+    public static BeanFactoryPostProcessor lazyInitBeanFactoryPostProcessor() {
+        return new LazyInitBeanFactoryPostProcessor();
+    }
+}
@@ -0,0 +1,70 @@
+package com.mitrais.khotim.library.startup;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+
+/**
+ * Makes singletons lazy, so startup only creates what serving requests and the startup listeners need and the
+ * rest is created on first use. Kept eager:
+ * <ul>
+ *     <li>infrastructure beans and beans with an explicit lazy setting,</li>
+ *     <li>{@link SmartInitializingSingleton}s, which only run their callback when created eagerly,</li>
+ *     <li>beans with {@link Scheduled} methods, which are only scheduled when created.</li>
+ * </ul>
+ * A lazy bean that fails to be created fails the request that first needs it instead of the startup.
+ */
+class LazyInitBeanFactoryPostProcessor implements BeanFactoryPostProcessor {
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+
+            if (definition.isLazyInit() || !definition.isSingleton() || isEager(definition, beanFactory.getBeanClassLoader())) {
+                continue;
+            }
+
+            definition.setLazyInit(true);
+        }
+    }
+
+    /**
+     * Only looks at the class of scanned and registered beans; beans from factory methods are made lazy
+     * without resolving their type, which could create factory beans early.
+     */
+    static boolean isEager(BeanDefinition definition, ClassLoader classLoader) {
+        if (definition.getRole() == BeanDefinition.ROLE_INFRASTRUCTURE) {
+            return true;
+        }
+
+        String className = definition.getBeanClassName();
+
+        if (className == null || definition.getFactoryMethodName() != null
+                || !ClassUtils.isPresent(className, classLoader)) {
+            return false;
+        }
+
+        Class<?> type = ClassUtils.resolveClassName(className, classLoader);
+
+        return SmartInitializingSingleton.class.isAssignableFrom(type) || hasScheduledMethods(type);
+    }
+
+    private static boolean hasScheduledMethods(Class<?> type) {
+        boolean[] scheduled = {false};
+
+        ReflectionUtils.doWithMethods(type, method -> scheduled[0] = true, LazyInitBeanFactoryPostProcessor::isScheduled);
+
+        return scheduled[0];
+    }
+
+    private static boolean isScheduled(Method method) {
+        return AnnotatedElementUtils.hasAnnotation(method, Scheduled.class);
+    }
+}
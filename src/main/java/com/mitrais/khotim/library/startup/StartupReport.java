@@ -0,0 +1,54 @@
+package com.mitrais.khotim.library.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Logs how long the JVM took to get ready and its resident memory then, and exits right after when
+ * library.startup.exit is set, for scripts/startup.sh and the CDS training run.
+ */
+@Component
+public class StartupReport implements ApplicationListener<ApplicationReadyEvent> {
+    private static final Logger log = LoggerFactory.getLogger(StartupReport.class);
+    private static final Path STATUS = Paths.get("/proc/self/status");
+
+    @Value("${library.startup.exit:false}")
+    private boolean exit;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        log.info("Ready in {} ms, RSS {} MB", ManagementFactory.getRuntimeMXBean().getUptime(), residentMegabytes());
+
+        if (exit) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    /**
+     * @return Resident set size from /proc, -1 where there's none.
+     */
+    static long residentMegabytes() {
+        try {
+            for (String line : Files.readAllLines(STATUS)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Resident set size is not available", e);
+        }
+
+        return -1;
+    }
+}
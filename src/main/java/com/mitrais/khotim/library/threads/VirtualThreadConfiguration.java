@@ -0,0 +1,68 @@
+package com.mitrais.khotim.library.threads;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.coyote.AbstractProtocol;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs requests and async request processing on virtual threads when library.threads is virtual.
+ *
+ * Every request gets its own virtual thread instead of waiting for one of Tomcat's worker threads, so
+ * the number of threads no longer caps concurrency. The connection pool does, and threads past it wait
+ * for a permit of the {@link ConnectionLimitingDataSource} rather than time out in the pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.threads", havingValue = "virtual")
+public class VirtualThreadConfiguration {
+    private final ExecutorService executor = VirtualThreads.newExecutor("request-");
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadTomcatCustomizer() {
+        return factory -> factory.addConnectorCustomizers(connector ->
+                ((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(executor));
+    }
+
+    /**
+     * Replaces the pooled executor Spring MVC uses for StreamingResponseBody, Callable and reactive return values.
+     *
+     * @return
+     */
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(executor);
+    }
+
+    @Bean
+    public static BeanPostProcessor connectionLimitingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource) {
+                    HikariDataSource dataSource = (HikariDataSource) bean;
+                    // Fills in the defaults, the pool size isn't set until the pool starts otherwise.
+                    dataSource.validate();
+
+                    return new ConnectionLimitingDataSource(dataSource, dataSource.getMaximumPoolSize());
+                }
+
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package com.mitrais.khotim.library.writebehind;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.mitrais.khotim.library.services.BulkResult;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * State of an operation queued by the {@link WriteBehindQueue}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"id", "operation", "status", "result", "error"})
+public class OperationResult {
+    public static final String PENDING = "pending";
+    public static final String DONE = "done";
+    public static final String FAILED = "failed";
+
+    private String id;
+    private OperationType operation;
+
+    /**
+     * Pending until the writer got to it, then done, or failed when its batch couldn't be written.
+     */
+    private String status;
+
+    /**
+     * Whether the book was added or removed, or why not, once done.
+     */
+    private BulkResult result;
+
+    /**
+     * Why the batch couldn't be written, once failed.
+     */
+    private String error;
+}
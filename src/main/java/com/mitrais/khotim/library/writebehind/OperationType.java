@@ -0,0 +1,53 @@
+package com.mitrais.khotim.library.writebehind;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Optional;
+
+/**
+ * What an operation does with its book, written to JSON as its lower case value.
+ */
+public enum OperationType {
+    ADD("add"),
+    REMOVE("remove");
+
+    private final String value;
+
+    OperationType(String value) {
+        this.value = value;
+    }
+
+    @JsonValue
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Finds the type with the given value, ignoring case.
+     *
+     * @param value
+     * @return Empty when no type has that value.
+     */
+    public static Optional<OperationType> find(String value) {
+        for (OperationType type : values()) {
+            if (type.value.equalsIgnoreCase(value)) {
+                return Optional.of(type);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Gets the type with the given value, ignoring case.
+     *
+     * @param value
+     * @return
+     * @throws IllegalArgumentException When no type has that value.
+     */
+    @JsonCreator
+    public static OperationType of(String value) {
+        return find(value).orElseThrow(() -> new IllegalArgumentException("Unknown operation " + value));
+    }
+}
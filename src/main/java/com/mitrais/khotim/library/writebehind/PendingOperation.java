@@ -0,0 +1,65 @@
+package com.mitrais.khotim.library.writebehind;
+
+import com.mitrais.khotim.library.services.BulkResult;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An operation accepted by the {@link WriteBehindQueue}, completed once the writer applied it.
+ */
+public class PendingOperation {
+    private final String id;
+    private final OperationType type;
+    private final Long shelfId;
+    private final Long bookId;
+    private final CompletableFuture<OperationResult> completion = new CompletableFuture<>();
+
+    public PendingOperation(String id, OperationType type, Long shelfId, Long bookId) {
+        this.id = id;
+        this.type = type;
+        this.shelfId = shelfId;
+        this.bookId = bookId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public OperationType getType() {
+        return type;
+    }
+
+    public Long getShelfId() {
+        return shelfId;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    /**
+     * Gets the result, completed when the operation was applied or its batch failed.
+     *
+     * @return
+     */
+    public CompletableFuture<OperationResult> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Gets the result, pending while the operation is queued.
+     *
+     * @return
+     */
+    public OperationResult getResult() {
+        return completion.getNow(new OperationResult(id, type, OperationResult.PENDING, null, null));
+    }
+
+    void done(BulkResult result) {
+        completion.complete(new OperationResult(id, type, OperationResult.DONE, result, null));
+    }
+
+    void failed(String error) {
+        completion.complete(new OperationResult(id, type, OperationResult.FAILED, null, error));
+    }
+}
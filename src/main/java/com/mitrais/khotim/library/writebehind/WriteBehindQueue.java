@@ -0,0 +1,294 @@
+package com.mitrais.khotim.library.writebehind;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mitrais.khotim.library.errors.Rejection;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+import com.mitrais.khotim.library.services.BulkResult;
+import com.mitrais.khotim.library.services.ShelfService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Accepts shelf operations without waiting for them to be written, for bursts of check-ins.
+ * <p>
+ * Operations go into a lock-free queue bounded by library.write-behind.capacity and are acknowledged with an id
+ * straight away. One writer thread takes up to batch-size of them at a time, groups them by shelf and writes
+ * each shelf's operations with {@link ShelfService#addBooks} or {@link ShelfService#removeBooks}: one transaction
+ * per shelf for a run of adds or removes instead of one per book, with the same capacity rules. Operations on the
+ * same shelf are applied in the order they were accepted, and a batch never holds the same book twice, so
+ * operations on one book are applied in order too.
+ * <p>
+ * Results can be looked up by id for library.write-behind.retention, at most max-results of them. They're only
+ * known to the instance that accepted the operation. Operations still queued when the instance stops are written
+ * first.
+ */
+@Component
+@ConditionalOnProperty(name = "library.write-behind.enabled", havingValue = "true")
+public class WriteBehindQueue {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    private final ConcurrentLinkedQueue<PendingOperation> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Taken from the queue but left for the next batch because its book was already in the batch. Only touched
+     * by the writer.
+     */
+    private PendingOperation carried;
+
+    private Cache<String, PendingOperation> operations;
+    private DistributionSummary batches;
+    private Thread writer;
+    private volatile boolean running;
+
+    @Value("${library.write-behind.capacity:10000}")
+    private int capacity;
+
+    @Value("${library.write-behind.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${library.write-behind.retention:600000}")
+    private long retention;
+
+    @Value("${library.write-behind.max-results:100000}")
+    private long maxResults;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @PostConstruct
+    public void start() {
+        operations = Caffeine.newBuilder()
+                .maximumSize(maxResults)
+                .expireAfterWrite(Duration.ofMillis(retention))
+                .build();
+        batches = DistributionSummary.builder("library.write-behind.batch")
+                .description("Operations written per batch")
+                .register(registry);
+        Gauge.builder("library.write-behind.queued", size, AtomicInteger::get)
+                .description("Operations waiting to be written")
+                .register(registry);
+
+        running = true;
+        writer = new Thread(this::write, "write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Writes what's still queued, then stops the writer.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * Queues the operation.
+     *
+     * @param type
+     * @param shelfId
+     * @param bookId
+     * @return The accepted operation, pending until the writer gets to it.
+     * @throws ShelfOperationException When the type or an id is missing or the queue is full.
+     */
+    public PendingOperation submit(OperationType type, Long shelfId, Long bookId) {
+        if (type == null) {
+            throw new ShelfOperationException(Rejection.OPERATION_REQUIRED);
+        }
+
+        if (shelfId == null) {
+            throw new ShelfOperationException(Rejection.SHELF_ID_REQUIRED);
+        }
+
+        if (bookId == null) {
+            throw new ShelfOperationException(Rejection.BOOK_ID_REQUIRED);
+        }
+
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            throw new ShelfOperationException(Rejection.QUEUE_FULL);
+        }
+
+        PendingOperation operation = new PendingOperation(UUID.randomUUID().toString(), type, shelfId, bookId);
+        operations.put(operation.getId(), operation);
+        queue.offer(operation);
+        LockSupport.unpark(writer);
+
+        return operation;
+    }
+
+    /**
+     * Finds an operation accepted by this instance.
+     *
+     * @param id
+     * @return Null when it's unknown or its result expired.
+     */
+    public PendingOperation find(String id) {
+        return operations.getIfPresent(id);
+    }
+
+    private void write() {
+        while (running || size.get() > 0) {
+            boolean flushed;
+
+            try {
+                flushed = flush();
+            } catch (Throwable e) {
+                // Keep the only writer alive, whatever the batch did.
+                log.error("Write-behind batch failed", e);
+                flushed = false;
+            }
+
+            if (!flushed) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+            }
+        }
+    }
+
+    /**
+     * Takes one batch off the queue and writes it. When the batch fails past the per-shelf handling, its
+     * operations that weren't written yet fail with it.
+     *
+     * @return False when the queue was empty.
+     */
+    boolean flush() {
+        List<PendingOperation> batch = take();
+
+        if (batch.isEmpty()) {
+            return false;
+        }
+
+        try {
+            batches.record(batch.size());
+            Map<Long, List<PendingOperation>> byShelf = new LinkedHashMap<>();
+
+            for (PendingOperation operation : batch) {
+                byShelf.computeIfAbsent(operation.getShelfId(), shelfId -> new ArrayList<>()).add(operation);
+            }
+
+            for (Map.Entry<Long, List<PendingOperation>> shelf : byShelf.entrySet()) {
+                writeShelf(shelf.getKey(), shelf.getValue());
+            }
+        } catch (Throwable e) {
+            log.error("Couldn't write a batch of {} operations", batch.size(), e);
+
+            for (PendingOperation operation : batch) {
+                operation.failed(e.getMessage());
+            }
+        } finally {
+            size.addAndGet(-batch.size());
+        }
+
+        return true;
+    }
+
+    /**
+     * Takes up to batch-size operations, each with a book not in the batch yet.
+     */
+    private List<PendingOperation> take() {
+        List<PendingOperation> batch = new ArrayList<>();
+        Set<Long> books = new HashSet<>();
+        PendingOperation operation = carried;
+        carried = null;
+
+        if (operation == null) {
+            operation = queue.poll();
+        }
+
+        while (operation != null) {
+            if (!books.add(operation.getBookId())) {
+                carried = operation;
+                break;
+            }
+
+            batch.add(operation);
+
+            if (batch.size() == batchSize) {
+                break;
+            }
+
+            operation = queue.poll();
+        }
+
+        return batch;
+    }
+
+    /**
+     * Writes the shelf's operations in order, each run of adds or removes in one transaction.
+     */
+    private void writeShelf(Long shelfId, List<PendingOperation> operations) {
+        int start = 0;
+
+        for (int i = 1; i <= operations.size(); i++) {
+            if (i == operations.size() || operations.get(i).getType() != operations.get(start).getType()) {
+                writeRun(shelfId, operations.subList(start, i));
+                start = i;
+            }
+        }
+    }
+
+    private void writeRun(Long shelfId, List<PendingOperation> run) {
+        List<Long> bookIds = new ArrayList<>(run.size());
+
+        for (PendingOperation operation : run) {
+            bookIds.add(operation.getBookId());
+        }
+
+        OperationType type = run.get(0).getType();
+
+        try {
+            List<BulkResult> results;
+
+            if (type == OperationType.ADD) {
+                results = shelfService.addBooks(shelfId, bookIds);
+            } else if (type == OperationType.REMOVE) {
+                results = shelfService.removeBooks(shelfId, bookIds);
+            } else {
+                throw new IllegalStateException("Unknown operation " + type);
+            }
+
+            for (int i = 0; i < run.size(); i++) {
+                run.get(i).done(results.get(i));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Couldn't write {} operations on shelf {}", run.size(), shelfId, e);
+
+            for (PendingOperation operation : run) {
+                operation.failed(e.getMessage());
+            }
+        }
+    }
+}
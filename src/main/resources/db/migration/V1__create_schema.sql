@@ -0,0 +1,25 @@
+create sequence book_seq start with 1 increment by 50;
+create sequence shelf_seq start with 1 increment by 50;
+
+create table shelf (
+    shelf_id bigint not null,
+    current_capacity integer check (current_capacity >= 0),
+    max_capacity integer check (max_capacity >= 0),
+    name varchar(255) not null,
+    version bigint,
+    primary key (shelf_id)
+);
+
+create table book (
+    id bigint not null,
+    author varchar(255) not null,
+    isbn varchar(255) not null,
+    shelf_id bigint,
+    status varchar(255),
+    title varchar(255) not null,
+    version bigint,
+    primary key (id)
+);
+
+create index book_shelf_id_idx on book (shelf_id);
+alter table book add constraint book_shelf_id_fk foreign key (shelf_id) references shelf;
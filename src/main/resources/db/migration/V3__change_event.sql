@@ -0,0 +1,17 @@
+create sequence change_event_seq start with 1 increment by 50;
+
+create table change_event (
+    id bigint not null,
+    seq bigint,
+    type varchar(20) not null,
+    book_id bigint not null,
+    shelf_id bigint,
+    status varchar(1) not null,
+    isbn varchar(255) not null,
+    title varchar(255) not null,
+    author varchar(255) not null,
+    created_at timestamp not null,
+    version bigint,
+    primary key (id),
+    constraint change_event_seq_uk unique (seq)
+);
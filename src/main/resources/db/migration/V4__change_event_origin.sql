@@ -0,0 +1,2 @@
+-- Instance that wrote the event, so each instance only applies the changes made by the others to its caches.
+alter table change_event add column origin varchar(36);
@@ -0,0 +1,38 @@
+package com.mitrais.khotim.library;
+
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class MigrationTest {
+    private static final String[] LOCATIONS = {"db/migration", "db/vendor/h2"};
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:migration;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("drop all objects");
+    }
+
+    @Test
+    public void statusValuesBecomeCodes() {
+        Flyway.configure().dataSource(dataSource).locations(LOCATIONS).target("1").load().migrate();
+        jdbcTemplate.update("insert into book (id, isbn, title, author, status, version) values (1, '1', 'A', 'K', 'shelved', 0)");
+        jdbcTemplate.update("insert into book (id, isbn, title, author, status, version) values (2, '2', 'B', 'K', 'NOT_SHELVED', 0)");
+
+        Flyway.configure().dataSource(dataSource).locations(LOCATIONS).load().migrate();
+
+        assertEquals(Arrays.asList("S", "N"),
+                jdbcTemplate.queryForList("select status from book order by id", String.class));
+    }
+}
@@ -0,0 +1,88 @@
+package com.mitrais.khotim.library;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.services.BookService;
+import com.mitrais.khotim.library.services.ShelfService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:performance;DB_CLOSE_DELAY=-1",
+        "library.admission.enabled=false"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("performance")
+public class PerformanceProfileIntegrationTest {
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void rendersShelvesWithoutOpenInView() throws Exception {
+        assertEquals(0, context.getBeanNamesForType(OpenEntityManagerInViewInterceptor.class).length);
+
+        Shelf shelf = shelfService.save(new Shelf("Tuned shelf", 5));
+        Shelf other = shelfService.save(new Shelf("Other shelf", 5));
+        Book book = bookService.save(new Book("isbn-tuned", "Tuned", "Khotim"));
+        Book placed = bookService.save(new Book("isbn-placed", "Placed", "Khotim"));
+        String body = "{\"id\":" + book.getId() + "}";
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/libraries/{id}/addBook", shelf.getId())
+                .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books[0].title").value("Tuned"));
+
+        // The book's shelf is only loaded inside the service's transaction.
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/libraries/{id}/addBook", other.getId())
+                .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.book").value("Book Tuned is already shelved in shelf Tuned shelf"));
+
+        mockMvc.perform(MockMvcRequestBuilders.delete("/api/libraries/{id}/removeBook", shelf.getId())
+                .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books").isEmpty());
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/books/{id}/autoShelve", placed.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books[0].title").value("Placed"));
+    }
+
+    @Test
+    public void configuresH2Caches() {
+        assertEquals("64", setting("QUERY_CACHE_SIZE"));
+        assertEquals("65536", setting("CACHE_SIZE"));
+    }
+
+    private String setting(String name) {
+        return jdbcTemplate.queryForObject("select value from information_schema.settings where name = ?", String.class, name);
+    }
+}
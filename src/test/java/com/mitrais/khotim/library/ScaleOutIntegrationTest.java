@@ -0,0 +1,182 @@
+package com.mitrais.khotim.library;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+import com.mitrais.khotim.library.services.BookService;
+import com.mitrais.khotim.library.services.ShelfService;
+import org.h2.tools.Server;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs two instances of the application against one H2 server, the way several instances share PostgreSQL.
+ */
+public class ScaleOutIntegrationTest {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 40;
+    private static final int SHELVES = 3;
+    private static final int BOOKS = 30;
+
+    private Server server;
+    private String database;
+    private List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            server = Server.createTcpServer("-tcpPort", Integer.toString(socket.getLocalPort()));
+        }
+
+        server.start();
+        database = "mem:scaleout" + System.nanoTime();
+        nodes.add(start("node-1"));
+        nodes.add(start("node-2"));
+    }
+
+    @After
+    public void tearDown() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+        server.stop();
+    }
+
+    @Test
+    public void concurrentShelvingOnBothNodesKeepsCapacities() throws Exception {
+        ShelfService shelves = nodes.get(0).getBean(ShelfService.class);
+        BookService books = nodes.get(0).getBean(BookService.class);
+        List<Long> shelfIds = new ArrayList<>();
+        List<Long> bookIds = new ArrayList<>();
+
+        for (int i = 0; i < SHELVES; i++) {
+            shelfIds.add(shelves.save(new Shelf("Shelf " + i, 5)).getId());
+        }
+
+        for (int i = 0; i < BOOKS; i++) {
+            bookIds.add(books.save(new Book("isbn-" + i, "Scaled " + i, "Khotim")).getId());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            ConfigurableApplicationContext node = nodes.get(i % nodes.size());
+            Random random = new Random(i);
+
+            futures.add(executor.submit(() -> {
+                start.await();
+                shelve(node, random, shelfIds, bookIds);
+                return null;
+            }));
+        }
+
+        start.countDown();
+
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+
+        executor.shutdown();
+
+        JdbcTemplate jdbcTemplate = nodes.get(0).getBean(JdbcTemplate.class);
+
+        for (Long shelfId : shelfIds) {
+            Map<String, Object> shelf = jdbcTemplate.queryForMap(
+                    "select current_capacity, max_capacity from shelf where shelf_id = ?", shelfId);
+            int shelved = jdbcTemplate.queryForObject("select count(*) from book where shelf_id = ?", Integer.class, shelfId);
+
+            assertEquals(shelved, ((Number) shelf.get("current_capacity")).intValue());
+            assertTrue(shelved <= ((Number) shelf.get("max_capacity")).intValue());
+        }
+
+        assertEquals(jdbcTemplate.queryForObject("select count(*) from book where shelf_id is not null", Integer.class),
+                jdbcTemplate.queryForObject("select count(*) from book where status = 'S'", Integer.class));
+    }
+
+    @Test
+    public void changesOnOneNodeReachTheOthersCaches() throws Exception {
+        BookService first = nodes.get(0).getBean(BookService.class);
+        BookService second = nodes.get(1).getBean(BookService.class);
+
+        assertEquals(0, second.findByTitleAndStatus("scaled", "").size());
+
+        Book book = first.save(new Book("isbn-remote", "Scaled remotely", "Khotim"));
+        Shelf shelf = nodes.get(0).getBean(ShelfService.class).save(new Shelf("Remote shelf", 5));
+        nodes.get(0).getBean(ShelfService.class).addBooks(shelf.getId(), Arrays.asList(book.getId()));
+
+        await(() -> second.findByTitleAndStatus("scaled", "").size() == 1);
+        await(() -> second.findByTitleAndStatus("scaled", BookStatus.SHELVED.getValue()).size() == 1);
+        await(() -> second.countByStatus().get(BookStatus.SHELVED.getValue()) == 1);
+    }
+
+    private static void shelve(ConfigurableApplicationContext node, Random random, List<Long> shelfIds, List<Long> bookIds) {
+        ShelfService shelves = node.getBean(ShelfService.class);
+        BookService books = node.getBean(BookService.class);
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            Long shelfId = shelfIds.get(random.nextInt(shelfIds.size()));
+            Long bookId = bookIds.get(random.nextInt(bookIds.size()));
+
+            try {
+                switch (random.nextInt(3)) {
+                    case 0:
+                        shelves.addBook(shelves.findById(shelfId).get(), books.findById(bookId).get());
+                        break;
+                    case 1:
+                        shelves.removeBook(shelves.findById(shelfId).get(), books.findById(bookId).get());
+                        break;
+                    default:
+                        shelves.addBooks(shelfId, Arrays.asList(bookId, bookIds.get(random.nextInt(bookIds.size()))));
+                }
+            } catch (ShelfOperationException e) {
+                // Full shelf, book already shelved or not in the shelf.
+            }
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    private ConfigurableApplicationContext start(String nodeId) {
+        // The second-level cache is off since both instances would share the JCache provider's caches in one JVM.
+        return new SpringApplicationBuilder(Application.class)
+                .profiles("h2server")
+                .web(WebApplicationType.NONE)
+                .run("--library.database.port=" + server.getPort(),
+                        "--library.database.name=" + database + ";DB_CLOSE_DELAY=-1",
+                        "--library.node-id=" + nodeId,
+                        "--library.changes.relay-delay=50",
+                        "--library.changes.invalidation-delay=50",
+                        "--library.admission.enabled=false",
+                        "--spring.jmx.enabled=false",
+                        "--spring.jpa.properties.hibernate.cache.use_second_level_cache=false");
+    }
+}
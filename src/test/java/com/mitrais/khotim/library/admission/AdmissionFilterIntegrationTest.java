@@ -0,0 +1,58 @@
+package com.mitrais.khotim.library.admission;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Requests come from the loopback address, which Tomcat trusts as a proxy, like a load balancer in front of the
+ * application.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:admission;DB_CLOSE_DELAY=-1",
+        "library.admission.write-rate=1",
+        "library.admission.write-burst=2"
+})
+public class AdmissionFilterIntegrationTest {
+    @LocalServerPort
+    private int port;
+
+    @Test
+    public void rateLimitsForwardedClientsSeparately() throws Exception {
+        assertNotEquals(429, put("203.0.113.1"));
+        assertNotEquals(429, put("203.0.113.1"));
+        assertEquals(429, put("203.0.113.1"));
+
+        assertNotEquals(429, put("203.0.113.2"));
+    }
+
+    private int put(String forwardedFor) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/api/libraries/999999/addBook").openConnection();
+        connection.setRequestMethod("PUT");
+        connection.setRequestProperty("X-Forwarded-For", forwardedFor);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setDoOutput(true);
+
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write("{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.mitrais.khotim.library.admission;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class AdmissionFilterTest {
+    private MeterRegistry registry;
+    private AdmissionProperties properties;
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        properties = new AdmissionProperties();
+        properties.setWriteRate(1);
+        properties.setWriteBurst(2);
+        properties.setBulkRate(1);
+        properties.setBulkBurst(3);
+        properties.setApiKeys(new HashSet<>(Arrays.asList("a", "b")));
+    }
+
+    @Test
+    public void rateLimitsEachClientSeparately() throws Exception {
+        AdmissionFilter filter = new AdmissionFilter(properties, registry);
+
+        assertEquals(200, put(filter, "a").getStatus());
+        assertEquals(200, put(filter, "a").getStatus());
+
+        MockHttpServletResponse rejected = put(filter, "a");
+        assertEquals(429, rejected.getStatus());
+        assertNotNull(rejected.getHeader("Retry-After"));
+        assertEquals("{\"admission\":\"Too many requests, retry later\"}", rejected.getContentAsString());
+
+        assertEquals(200, put(filter, "b").getStatus());
+        assertEquals(200, get(filter, "a").getStatus());
+        assertEquals(1, registry.get("library.admission.rejected").tags("reason", "rate", "kind", "write").counter().count(), 0);
+        assertEquals(0, filter.getLimiter().getInFlight());
+    }
+
+    @Test
+    public void identifiesUnknownKeysByAddress() throws Exception {
+        AdmissionFilter filter = new AdmissionFilter(properties, registry);
+
+        assertEquals(200, put(filter, "x").getStatus());
+        assertEquals(200, put(filter, "y").getStatus());
+        assertEquals(429, put(filter, "z").getStatus());
+        assertEquals(200, put(filter, "a").getStatus());
+    }
+
+    @Test
+    public void rateLimitsBulkWritesSeparately() throws Exception {
+        AdmissionFilter filter = new AdmissionFilter(properties, registry);
+
+        assertEquals(200, put(filter, "a").getStatus());
+        assertEquals(200, put(filter, "a").getStatus());
+        assertEquals(429, put(filter, "a").getStatus());
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, perform(filter, "PUT", "/api/libraries/addBooks", "a").getStatus());
+        }
+
+        assertEquals(429, perform(filter, "POST", "/api/libraries/operations", "a").getStatus());
+        assertEquals(1, registry.get("library.admission.rejected").tags("reason", "rate", "kind", "bulk").counter().count(), 0);
+    }
+
+    @Test
+    public void shedsWritesBeforeReads() throws Exception {
+        properties.setWriteRate(1000);
+        properties.setInitialLimit(4);
+        properties.setWriteShare(0.5);
+        AdmissionFilter filter = new AdmissionFilter(properties, registry);
+
+        filter.getLimiter().tryAcquire(1);
+        filter.getLimiter().tryAcquire(1);
+
+        assertEquals(503, put(filter, "a").getStatus());
+        assertEquals(200, get(filter, "a").getStatus());
+        assertEquals(1, registry.get("library.admission.rejected").tags("reason", "overload", "kind", "write").counter().count(), 0);
+    }
+
+    private static MockHttpServletResponse put(AdmissionFilter filter, String apiKey) throws Exception {
+        return perform(filter, "PUT", "/api/libraries/1/addBook", apiKey);
+    }
+
+    private static MockHttpServletResponse get(AdmissionFilter filter, String apiKey) throws Exception {
+        return perform(filter, "GET", "/api/libraries/1/addBook", apiKey);
+    }
+
+    private static MockHttpServletResponse perform(AdmissionFilter filter, String method, String uri, String apiKey) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.addHeader(AdmissionFilter.API_KEY_HEADER, apiKey);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain());
+
+        return response;
+    }
+}
@@ -0,0 +1,64 @@
+package com.mitrais.khotim.library.admission;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AimdLimiterTest {
+    private static final long TARGET = 100;
+
+    @Test
+    public void writesOnlyUseTheirShare() {
+        AimdLimiter limiter = new AimdLimiter(4, 1, 10, TARGET, 0);
+
+        assertTrue(limiter.tryAcquire(0.5));
+        assertTrue(limiter.tryAcquire(0.5));
+        assertFalse(limiter.tryAcquire(0.5));
+        assertTrue(limiter.tryAcquire(1));
+        assertTrue(limiter.tryAcquire(1));
+        assertFalse(limiter.tryAcquire(1));
+        assertEquals(4, limiter.getInFlight());
+    }
+
+    @Test
+    public void growsWhileBusyAndFast() {
+        AimdLimiter limiter = new AimdLimiter(4, 1, 10, TARGET, 0);
+
+        for (int i = 0; i < 8; i++) {
+            fill(limiter);
+            limiter.release(TARGET / 2, false, 0);
+            drain(limiter);
+        }
+
+        assertTrue(limiter.getLimit() > 4);
+    }
+
+    @Test
+    public void shrinksOncePerTargetWhenSlow() {
+        AimdLimiter limiter = new AimdLimiter(10, 1, 10, TARGET, 0);
+
+        limiter.tryAcquire(1);
+        limiter.tryAcquire(1);
+        limiter.release(TARGET * 2, false, TARGET);
+        limiter.release(TARGET * 2, true, TARGET);
+        assertEquals(9, limiter.getLimit());
+
+        limiter.tryAcquire(1);
+        limiter.release(TARGET * 2, false, TARGET * 2);
+        assertEquals(8, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private static void fill(AimdLimiter limiter) {
+        while (limiter.tryAcquire(1)) {
+        }
+    }
+
+    private static void drain(AimdLimiter limiter) {
+        while (limiter.getInFlight() > 0) {
+            limiter.release();
+        }
+    }
+}
@@ -2,7 +2,13 @@ package com.mitrais.khotim.library.apis;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.errors.Rejection;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+import com.mitrais.khotim.library.placement.ShelfPlacement;
 import com.mitrais.khotim.library.services.BookService;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -10,22 +16,33 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.isEmptyString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(value = BookController.class, secure = false)
+@Import({SimpleMeterRegistry.class, BinaryFormatConfiguration.class})
 public class BookControllerTest {
     @Autowired
     private MockMvc mockMvc;
@@ -33,6 +50,9 @@ public class BookControllerTest {
     @MockBean
     private BookService bookService;
 
+    @MockBean
+    private ShelfPlacement shelfPlacement;
+
     private Book book;
     private Book book2;
     private ObjectMapper mapper;
@@ -52,12 +72,85 @@ public class BookControllerTest {
     public void getAll() throws Exception {
         List<Book> books = Arrays.asList(book, book2);
 
-        Mockito.when(bookService.findByTitleAndStatus(Mockito.anyString(), Mockito.anyString())).thenReturn(books);
+        Mockito.when(bookService.findByTitleAndStatus(Mockito.anyString(), Mockito.anyString(), Mockito.anyLong(), Mockito.anyInt())).thenReturn(books);
         mockMvc.perform(MockMvcRequestBuilders.get("/api/books").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(mapper.writeValueAsString(new BookPage(books, null))));
+    }
+
+    @Test
+    public void getAllWithNextPage() throws Exception {
+        Mockito.when(bookService.findByTitleAndStatus("", "", 0L, 2)).thenReturn(Arrays.asList(book, book2));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/books").param("limit", "1").accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string(mapper.writeValueAsString(new BookPage(Collections.singletonList(book), book.getId()))));
+    }
+
+    @Test
+    public void getAllAsSmile() throws Exception {
+        List<Book> books = Arrays.asList(book, book2);
+
+        Mockito.when(bookService.findByTitleAndStatus("", "", 0L, BookController.DEFAULT_LIMIT + 1)).thenReturn(books);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/books").accept(BinaryFormatConfiguration.APPLICATION_SMILE_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(BinaryFormatConfiguration.APPLICATION_SMILE_VALUE))
+                .andReturn();
+
+        byte[] body = result.getResponse().getContentAsByteArray();
+
+        assertEquals(mapper.readTree(mapper.writeValueAsString(new BookPage(books, null))), new ObjectMapper(new SmileFactory()).readTree(body));
+        assertTrue(body.length < mapper.writeValueAsBytes(new BookPage(books, null)).length);
+    }
+
+    @Test
+    public void streamAll() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            Consumer<Book> consumer = invocation.getArgument(2);
+            consumer.accept(book);
+            consumer.accept(book2);
+            return null;
+        }).when(bookService).streamByTitleAndStatus(Mockito.eq(""), Mockito.eq(""), Mockito.any());
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/books").accept(BookController.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BookController.APPLICATION_NDJSON_VALUE))
+                .andExpect(content().string(mapper.writeValueAsString(book) + "\n" + mapper.writeValueAsString(book2)));
+    }
+
+    @Test
+    public void search() throws Exception {
+        List<Book> books = Arrays.asList(book2, book);
+
+        Mockito.when(bookService.search("space", "", BookController.DEFAULT_LIMIT)).thenReturn(books);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/books/search").param("q", "space").accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(content().string(mapper.writeValueAsString(books)));
     }
 
+    @Test
+    public void getCounts() throws Exception {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put("shelved", 3L);
+        counts.put("not_shelved", 5L);
+
+        Mockito.when(bookService.countByStatus()).thenReturn(counts);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/books/counts").accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"shelved\":3,\"not_shelved\":5}"));
+    }
+
     @Test
     public void getOneWhenBookExists() throws Exception {
         Mockito.when(bookService.findById(book.getId())).thenReturn(Optional.ofNullable(book));
@@ -77,4 +170,28 @@ public class BookControllerTest {
                 .andExpect(status().is4xxClientError())
                 .andExpect(content().string(isEmptyString()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void autoShelve() throws Exception {
+        Shelf shelf = new Shelf("Shelf A", 20);
+        shelf.setId(1L);
+
+        Mockito.when(shelfPlacement.autoShelve(book.getId(), "first-fit")).thenReturn(shelf);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/books/{id}/autoShelve", book.getId()).param("strategy", "first-fit"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string(mapper.writeValueAsString(shelf)));
+    }
+
+    @Test
+    public void autoShelveWhenNoShelfHasRoom() throws Exception {
+        Mockito.when(shelfPlacement.autoShelve(book.getId(), null))
+                .thenThrow(new ShelfOperationException(Rejection.NO_SHELF_AVAILABLE));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/books/{id}/autoShelve", book.getId()))
+                .andDo(print())
+                .andExpect(status().isConflict())
+                .andExpect(content().string("{\"code\":\"no_shelf_available\",\"shelf\":\"There's no shelf with free capacity\"}"));
+    }
+}
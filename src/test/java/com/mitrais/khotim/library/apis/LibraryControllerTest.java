@@ -2,9 +2,18 @@ package com.mitrais.khotim.library.apis;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
 import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.errors.Rejection;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+import com.mitrais.khotim.library.repositories.ShelfSummary;
 import com.mitrais.khotim.library.services.BookService;
+import com.mitrais.khotim.library.services.BulkResult;
 import com.mitrais.khotim.library.services.ShelfService;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -12,6 +21,8 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
@@ -25,15 +36,20 @@ import static org.hamcrest.Matchers.isEmptyString;
 import static org.junit.Assert.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(value = LibraryController.class, secure = false)
+@Import({SimpleMeterRegistry.class, BinaryFormatConfiguration.class})
 public class LibraryControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @MockBean
     private ShelfService shelfService;
 
@@ -55,7 +71,6 @@ public class LibraryControllerTest {
 
         book = new Book();
         book.setId(1L);
-        book.setShelf(shelf);
 
         mapper = new ObjectMapper();
     }
@@ -64,7 +79,7 @@ public class LibraryControllerTest {
     public void getAll() throws Exception {
         List<Shelf> shelves = Arrays.asList(shelf, shelf2);
 
-        Mockito.when(shelfService.findAll()).thenReturn(shelves);
+        Mockito.when(shelfService.findAllWithBooks()).thenReturn(shelves);
 
         mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries").accept(MediaType.APPLICATION_JSON))
                 .andDo(print())
@@ -72,9 +87,48 @@ public class LibraryControllerTest {
                 .andExpect(content().string(mapper.writeValueAsString(shelves)));
     }
 
+    @Test
+    public void getAllAsCbor() throws Exception {
+        shelf.addBook(book);
+        List<Shelf> shelves = Arrays.asList(shelf, shelf2);
+
+        Mockito.when(shelfService.findAllWithBooks()).thenReturn(shelves);
+
+        byte[] body = mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries").accept(BinaryFormatConfiguration.APPLICATION_CBOR_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(BinaryFormatConfiguration.APPLICATION_CBOR_VALUE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(mapper.readTree(mapper.writeValueAsString(shelves)), new ObjectMapper(new CBORFactory()).readTree(body));
+    }
+
+    @Test
+    public void getAllSummaries() throws Exception {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("id", 1L);
+        summary.put("name", "Shelf A");
+        summary.put("maxCapacity", 20);
+        summary.put("currentCapacity", 3);
+
+        Mockito.when(shelfService.findAllSummaries())
+                .thenReturn(Collections.singletonList(new SpelAwareProxyProjectionFactory().createProjection(ShelfSummary.class, summary)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries").param("summary", "true").accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].name").value("Shelf A"))
+                .andExpect(jsonPath("$[0].maxCapacity").value(20))
+                .andExpect(jsonPath("$[0].currentCapacity").value(3))
+                .andExpect(jsonPath("$[0].books").doesNotExist());
+
+        Mockito.verify(shelfService, Mockito.never()).findAllWithBooks();
+    }
+
     @Test
     public void getOneWhenShelfExists() throws Exception {
-        Mockito.when(shelfService.findById(Mockito.anyLong())).thenReturn(Optional.of(shelf));
+        Mockito.when(shelfService.findByIdWithBooks(Mockito.anyLong())).thenReturn(Optional.of(shelf));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries/{id}", Mockito.anyLong()).accept(MediaType.APPLICATION_JSON))
                 .andDo(print())
@@ -98,8 +152,8 @@ public class LibraryControllerTest {
 
         mockMvc.perform(request)
                 .andDo(print())
-                .andExpect(status().isOk())
-                .andExpect(content().string("{\"shelf\":\"There's no shelf found with id " + shelf.getId() + "\"}"));
+                .andExpect(status().isNotFound())
+                .andExpect(content().string("{\"code\":\"shelf_not_found\",\"shelf\":\"There's no shelf found with id " + shelf.getId() + "\"}"));
     }
 
     @Test
@@ -113,10 +167,14 @@ public class LibraryControllerTest {
                 .contentType(MediaType.APPLICATION_JSON_VALUE)
                 .content(mapper.writeValueAsString(book));
 
+        long rejected = operationCount("add", "capacity_reached");
+
         mockMvc.perform(request)
                 .andDo(print())
-                .andExpect(status().isOk())
-                .andExpect(content().string("{\"shelf\":\"Shelf " + shelf.getName() + " already reached maximum capacity\"}"));
+                .andExpect(status().isConflict())
+                .andExpect(content().string("{\"code\":\"capacity_reached\",\"shelf\":\"Shelf " + shelf.getName() + " already reached maximum capacity\"}"));
+
+        assertEquals(rejected + 1, operationCount("add", "capacity_reached"));
     }
 
     @Test
@@ -129,13 +187,28 @@ public class LibraryControllerTest {
 
         mockMvc.perform(request)
                 .andDo(print())
-                .andExpect(status().isOk())
-                .andExpect(content().string("{\"book\":\"There's no book found with id " + book.getId() + "\"}"));
+                .andExpect(status().isNotFound())
+                .andExpect(content().string("{\"code\":\"book_not_found\",\"book\":\"There's no book found with id " + book.getId() + "\"}"));
+    }
+
+    @Test
+    public void addBookWithoutBookId() throws Exception {
+        Mockito.when(shelfService.findById(shelf.getId())).thenReturn(Optional.of(shelf));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put("/api/libraries/{id}/addBook", shelf.getId())
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content("{}");
+
+        mockMvc.perform(request)
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string("{\"code\":\"book_id_required\",\"book\":\"Book id is required\"}"));
     }
 
     @Test
     public void addBookWhenBookExistsInShelf() throws Exception {
         shelf.setBooks(Collections.singletonList(book));
+        book.setShelf(shelf);
 
         Mockito.when(shelfService.findById(shelf.getId())).thenReturn(Optional.of(shelf));
         Mockito.when(bookService.findById(book.getId())).thenReturn(Optional.of(book));
@@ -146,16 +219,20 @@ public class LibraryControllerTest {
 
         mockMvc.perform(request)
                 .andDo(print())
-                .andExpect(status().isOk())
-                .andExpect(content().string("{\"shelf\":\"Book " + book.getTitle() + " already exists in shelf " + shelf.getName() + "\"}"));
+                .andExpect(status().isConflict())
+                .andExpect(content().string("{\"code\":\"already_in_shelf\",\"shelf\":\"Book " + book.getTitle() + " already exists in shelf " + shelf.getName() + "\"}"));
     }
 
     @Test
     public void addBookWhenBookIsShelved() throws Exception {
-        book.setStatus(Book.SHELVED);
+        book.setStatus(BookStatus.SHELVED);
+        book.setShelf(shelf2);
 
         Mockito.when(shelfService.findById(shelf.getId())).thenReturn(Optional.of(shelf));
         Mockito.when(bookService.findById(book.getId())).thenReturn(Optional.of(book));
+        // The book's shelf isn't loaded before the service's transaction, so the service rejects it.
+        Mockito.when(shelfService.addBook(shelf, book))
+                .thenThrow(new ShelfOperationException(Rejection.ALREADY_SHELVED, book.getTitle(), shelf2.getName()));
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put("/api/libraries/{id}/addBook", shelf.getId())
                 .contentType(MediaType.APPLICATION_JSON_VALUE)
@@ -163,8 +240,8 @@ public class LibraryControllerTest {
 
         mockMvc.perform(request)
                 .andDo(print())
-                .andExpect(status().isOk())
-                .andExpect(content().string("{\"book\":\"Book " + book.getTitle() + " is already shelved in shelf " + book.getShelf().getName() + "\"}"));
+                .andExpect(status().isConflict())
+                .andExpect(content().string("{\"code\":\"already_shelved\",\"book\":\"Book " + book.getTitle() + " is already shelved in shelf " + book.getShelf().getName() + "\"}"));
     }
 
     @Test
@@ -186,6 +263,124 @@ public class LibraryControllerTest {
 
         assertTrue(shelf2.getBooks().contains(book));
         assertEquals(1, shelf2.getBooks().size());
+        assertEquals(1, operationTimer("add", "success").count());
+    }
+
+    @Test
+    public void addBookWhenShelfFilledConcurrently() throws Exception {
+        Mockito.when(shelfService.findById(shelf.getId())).thenReturn(Optional.of(shelf));
+        Mockito.when(bookService.findById(book.getId())).thenReturn(Optional.of(book));
+        Mockito.when(shelfService.addBook(shelf, book))
+                .thenThrow(new ShelfOperationException(Rejection.CAPACITY_REACHED, shelf.getName()));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put("/api/libraries/{id}/addBook", shelf.getId())
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(mapper.writeValueAsString(book));
+
+        long rejected = operationCount("add", "capacity_reached");
+
+        mockMvc.perform(request)
+                .andDo(print())
+                .andExpect(status().isConflict())
+                .andExpect(content().string("{\"code\":\"capacity_reached\",\"shelf\":\"Shelf " + shelf.getName() + " already reached maximum capacity\"}"));
+
+        assertEquals(rejected + 1, operationCount("add", "capacity_reached"));
+    }
+
+    @Test
+    public void addBooks() throws Exception {
+        List<BulkResult> results = Arrays.asList(
+                BulkResult.success(1L, 1L),
+                BulkResult.rejected(1L, 2L, new ShelfOperationException(Rejection.CAPACITY_REACHED, "Shelf A")),
+                BulkResult.rejected(2L, 3L, new ShelfOperationException(Rejection.BOOK_NOT_FOUND, "3"))
+        );
+
+        Mockito.when(shelfService.addBooks(1L, Arrays.asList(1L, 2L))).thenReturn(results.subList(0, 2));
+        Mockito.when(shelfService.addBooks(2L, Collections.singletonList(3L))).thenReturn(results.subList(2, 3));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put("/api/libraries/addBooks")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(mapper.writeValueAsString(Arrays.asList(
+                        new ShelfBooks(1L, Arrays.asList(1L, 2L)),
+                        new ShelfBooks(2L, Collections.singletonList(3L))
+                )));
+
+        mockMvc.perform(request)
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo(mapper.writeValueAsString(results))));
+    }
+
+    @Test
+    public void addBooksWithoutBookIds() throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put("/api/libraries/addBooks")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content("[{\"shelfId\":1,\"bookIds\":[1]},{\"shelfId\":2,\"bookIds\":null}]");
+
+        mockMvc.perform(request)
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string("{\"code\":\"book_ids_required\",\"books\":\"Book ids are required\"}"));
+
+        Mockito.verify(shelfService, Mockito.never()).addBooks(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void addBooksWithoutShelfId() throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put("/api/libraries/addBooks")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content("[{\"bookIds\":[1]}]");
+
+        mockMvc.perform(request)
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string("{\"code\":\"shelf_id_required\",\"shelf\":\"Shelf id is required\"}"));
+
+        Mockito.verify(shelfService, Mockito.never()).addBooks(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void removeBooksWithoutBookIds() throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.delete("/api/libraries/removeBooks")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content("[{\"shelfId\":1}]");
+
+        mockMvc.perform(request)
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string("{\"code\":\"book_ids_required\",\"books\":\"Book ids are required\"}"));
+
+        Mockito.verify(shelfService, Mockito.never()).removeBooks(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void removeBooksWithoutShelfId() throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.delete("/api/libraries/removeBooks")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content("[{\"shelfId\":null,\"bookIds\":[1]}]");
+
+        mockMvc.perform(request)
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string("{\"code\":\"shelf_id_required\",\"shelf\":\"Shelf id is required\"}"));
+
+        Mockito.verify(shelfService, Mockito.never()).removeBooks(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void removeBooks() throws Exception {
+        List<BulkResult> results = Collections.singletonList(BulkResult.success(1L, 1L));
+
+        Mockito.when(shelfService.removeBooks(1L, Collections.singletonList(1L))).thenReturn(results);
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.delete("/api/libraries/removeBooks")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(mapper.writeValueAsString(Collections.singletonList(new ShelfBooks(1L, Collections.singletonList(1L)))));
+
+        mockMvc.perform(request)
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo(mapper.writeValueAsString(results))));
     }
 
     @Test
@@ -196,8 +391,8 @@ public class LibraryControllerTest {
 
         mockMvc.perform(request)
                 .andDo(print())
-                .andExpect(status().isOk())
-                .andExpect(content().string("{\"shelf\":\"There's no shelf found with id " + shelf.getId() + "\"}"));
+                .andExpect(status().isNotFound())
+                .andExpect(content().string("{\"code\":\"shelf_not_found\",\"shelf\":\"There's no shelf found with id " + shelf.getId() + "\"}"));
     }
 
     @Test
@@ -210,8 +405,8 @@ public class LibraryControllerTest {
 
         mockMvc.perform(request)
                 .andDo(print())
-                .andExpect(status().isOk())
-                .andExpect(content().string("{\"book\":\"There's no book found with id " + book.getId() + "\"}"));
+                .andExpect(status().isNotFound())
+                .andExpect(content().string("{\"code\":\"book_not_found\",\"book\":\"There's no book found with id " + book.getId() + "\"}"));
     }
 
     @Test
@@ -225,13 +420,14 @@ public class LibraryControllerTest {
 
         mockMvc.perform(request)
                 .andDo(print())
-                .andExpect(status().isOk())
-                .andExpect(content().string("{\"shelf\":\"There's no book " + book.getTitle() + " in shelf " + shelf.getName() + "\"}"));
+                .andExpect(status().isConflict())
+                .andExpect(content().string("{\"code\":\"not_in_shelf\",\"shelf\":\"There's no book " + book.getTitle() + " in shelf " + shelf.getName() + "\"}"));
     }
 
     @Test
     public void removeBookSuccess() throws Exception {
         shelf.setBooks(Collections.singletonList(book));
+        book.setShelf(shelf);
 
         Mockito.when(shelfService.findById(shelf.getId())).thenReturn(Optional.of(shelf));
         Mockito.when(bookService.findById(book.getId())).thenReturn(Optional.of(book));
@@ -250,4 +446,14 @@ public class LibraryControllerTest {
         assertFalse(shelf2.getBooks().contains(book));
         assertEquals(0, shelf2.getBooks().size());
     }
-}
\ No newline at end of file
+
+    private long operationCount(String operation, String outcome) {
+        Timer timer = meterRegistry.find("library.shelf.operation").tags("operation", operation, "outcome", outcome).timer();
+
+        return timer != null ? timer.count() : 0;
+    }
+
+    private Timer operationTimer(String operation, String outcome) {
+        return meterRegistry.get("library.shelf.operation").tags("operation", operation, "outcome", outcome).timer();
+    }
+}
@@ -0,0 +1,125 @@
+package com.mitrais.khotim.library.apis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mitrais.khotim.library.errors.Rejection;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+import com.mitrais.khotim.library.services.BulkResult;
+import com.mitrais.khotim.library.writebehind.OperationResult;
+import com.mitrais.khotim.library.writebehind.OperationType;
+import com.mitrais.khotim.library.writebehind.PendingOperation;
+import com.mitrais.khotim.library.writebehind.WriteBehindQueue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(value = OperationController.class, secure = false, properties = "library.write-behind.enabled=true")
+@Import(SimpleMeterRegistry.class)
+public class OperationControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private WriteBehindQueue queue;
+
+    private PendingOperation operation;
+    private ObjectMapper mapper;
+
+    @Before
+    public void setUp() {
+        operation = new PendingOperation("op-1", OperationType.ADD, 1L, 2L);
+        mapper = new ObjectMapper();
+    }
+
+    @Test
+    public void submit() throws Exception {
+        Mockito.when(queue.submit(OperationType.ADD, 1L, 2L)).thenReturn(operation);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/libraries/operations")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(mapper.writeValueAsString(new ShelfOperation("add", 1L, 2L))))
+                .andDo(print())
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/libraries/operations/op-1"))
+                .andExpect(content().string("{\"id\":\"op-1\",\"operation\":\"add\",\"status\":\"pending\"}"));
+    }
+
+    @Test
+    public void submitWithoutOperation() throws Exception {
+        Mockito.when(queue.submit(null, 1L, 2L)).thenThrow(new ShelfOperationException(Rejection.OPERATION_REQUIRED));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/libraries/operations")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content("{\"shelfId\":1,\"bookId\":2}"))
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string("{\"code\":\"operation_required\",\"operation\":\"Operation is required\"}"));
+    }
+
+    @Test
+    public void submitUnknownOperation() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/libraries/operations")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content("{\"operation\":\"ad\",\"shelfId\":1,\"bookId\":2}"))
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string("{\"code\":\"unknown_operation\",\"operation\":\"There's no operation ad\"}"));
+
+        Mockito.verifyZeroInteractions(queue);
+    }
+
+    @Test
+    public void getWhenDone() throws Exception {
+        Mockito.when(queue.find("op-1")).thenReturn(operation);
+        operation.getCompletion().complete(done());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries/operations/{id}", "op-1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"id\":\"op-1\",\"operation\":\"add\",\"status\":\"done\","
+                        + "\"result\":{\"shelfId\":1,\"bookId\":2,\"success\":true,\"code\":null,\"field\":null,\"message\":null}}"));
+    }
+
+    @Test
+    public void getWhenUnknown() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries/operations/{id}", "op-2"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void awaitAnswersOnceDone() throws Exception {
+        Mockito.when(queue.find("op-1")).thenReturn(operation);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries/operations/{id}", "op-1").param("wait", "5000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        operation.getCompletion().complete(done());
+
+        mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isOk());
+    }
+
+    private OperationResult done() {
+        return new OperationResult("op-1", OperationType.ADD, OperationResult.DONE, BulkResult.success(1L, 2L), null);
+    }
+}
@@ -0,0 +1,116 @@
+package com.mitrais.khotim.library.apis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.services.ReactiveLibraryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.isEmptyString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(value = ReactiveBookController.class, secure = false)
+@Import(SimpleMeterRegistry.class)
+public class ReactiveBookControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ReactiveLibraryService libraryService;
+
+    private Book book;
+    private Book book2;
+    private ObjectMapper mapper;
+
+    @Before
+    public void setUp() {
+        book = new Book("9876", "Space 1", "Khotim");
+        book.setId(1L);
+
+        book2 = new Book("1234", "Space 2", "Khotim");
+        book2.setId(2L);
+
+        mapper = new ObjectMapper();
+    }
+
+    @Test
+    public void getAllWithNextPage() throws Exception {
+        Mockito.when(libraryService.findBooks("", "", 0L, 2)).thenReturn(Mono.just(Arrays.asList(book, book2)));
+
+        perform(MockMvcRequestBuilders.get("/api/reactive/books").param("limit", "1").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(mapper.writeValueAsString(new BookPage(Collections.singletonList(book), book.getId()))));
+    }
+
+    @Test
+    public void streamAll() throws Exception {
+        Mockito.when(libraryService.streamBooks("", "")).thenReturn(Flux.just(book, book2));
+
+        perform(MockMvcRequestBuilders.get("/api/reactive/books").accept(MediaType.APPLICATION_STREAM_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_STREAM_JSON))
+                .andExpect(content().string(mapper.writeValueAsString(book) + "\n" + mapper.writeValueAsString(book2) + "\n"));
+    }
+
+    @Test
+    public void search() throws Exception {
+        List<Book> books = Arrays.asList(book2, book);
+
+        Mockito.when(libraryService.search("space", "", BookController.DEFAULT_LIMIT)).thenReturn(Flux.fromIterable(books));
+
+        perform(MockMvcRequestBuilders.get("/api/reactive/books/search").param("q", "space").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(mapper.writeValueAsString(books)));
+    }
+
+    @Test
+    public void getOneWhenBookExists() throws Exception {
+        Mockito.when(libraryService.findBookById(book.getId())).thenReturn(Mono.just(book));
+
+        perform(MockMvcRequestBuilders.get("/api/reactive/books/{id}", book.getId()).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(mapper.writeValueAsString(book)));
+    }
+
+    @Test
+    public void getOneWhenBookNotExists() throws Exception {
+        Mockito.when(libraryService.findBookById(book.getId())).thenReturn(Mono.empty());
+
+        perform(MockMvcRequestBuilders.get("/api/reactive/books/{id}", book.getId()).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string(isEmptyString()));
+    }
+
+    private ResultActions perform(MockHttpServletRequestBuilder builder) throws Exception {
+        MvcResult result = mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        return mockMvc.perform(asyncDispatch(result)).andDo(print());
+    }
+}
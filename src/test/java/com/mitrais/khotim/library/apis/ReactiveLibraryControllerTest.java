@@ -0,0 +1,87 @@
+package com.mitrais.khotim.library.apis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.services.ReactiveLibraryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(value = ReactiveLibraryController.class, secure = false)
+@Import(SimpleMeterRegistry.class)
+public class ReactiveLibraryControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ReactiveLibraryService libraryService;
+
+    private Shelf shelf;
+    private Shelf shelf2;
+    private ObjectMapper mapper;
+
+    @Before
+    public void setUp() {
+        shelf = new Shelf("Shelf A", 20);
+        shelf.setId(1L);
+
+        Book book = new Book("9876", "Space 1", "Khotim");
+        book.setId(1L);
+        shelf.addBook(book);
+
+        shelf2 = new Shelf("Shelf B", 35);
+        shelf2.setId(2L);
+
+        mapper = new ObjectMapper();
+    }
+
+    @Test
+    public void getAll() throws Exception {
+        Mockito.when(libraryService.findAllShelves()).thenReturn(Flux.just(shelf, shelf2));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/reactive/libraries").accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string(mapper.writeValueAsString(Arrays.asList(shelf, shelf2))));
+    }
+
+    @Test
+    public void getOneWhenShelfNotExists() throws Exception {
+        Mockito.when(libraryService.findShelfById(3L)).thenReturn(Mono.empty());
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/reactive/libraries/{id}", 3L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+    }
+}
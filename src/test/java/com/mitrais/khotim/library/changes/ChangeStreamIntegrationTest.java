@@ -0,0 +1,149 @@
+package com.mitrais.khotim.library.changes;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+import com.mitrais.khotim.library.repositories.ChangeEventRepository;
+import com.mitrais.khotim.library.services.BookService;
+import com.mitrais.khotim.library.services.ShelfService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:changes;DB_CLOSE_DELAY=-1",
+        "library.changes.relay-delay=50"
+})
+public class ChangeStreamIntegrationTest {
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private ChangeEventRepository repository;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void streamsCommittedChangesInOrder() throws Exception {
+        long since = repository.findLastSeq();
+
+        Shelf shelf = shelfService.save(new Shelf("Streamed shelf", 1));
+        Book book = bookService.save(new Book("isbn-streamed", "Streamed", "Khotim"));
+        Book other = bookService.save(new Book("isbn-rejected", "Rejected", "Khotim"));
+        shelfService.addBook(shelf, book);
+
+        try {
+            shelfService.addBook(shelfService.findById(shelf.getId()).get(), other);
+            fail();
+        } catch (ShelfOperationException e) {
+            // The shelf is full, nothing is written.
+        }
+
+        shelfService.removeBook(shelfService.findById(shelf.getId()).get(), bookService.findById(book.getId()).get());
+
+        List<Event> events = read("/api/changes?since=" + since, null, 4);
+
+        assertEquals(Arrays.asList("book_saved", "book_saved", "book_shelved", "book_unshelved"), names(events));
+        assertEquals(Arrays.asList(book.getId(), other.getId(), book.getId(), book.getId()), bookIds(events));
+        assertEquals(shelf.getId().longValue(), events.get(2).data.get("shelfId").asLong());
+        assertEquals("shelved", events.get(2).data.get("status").asText());
+        assertEquals(shelf.getId().longValue(), events.get(3).data.get("shelfId").asLong());
+        assertEquals("not_shelved", events.get(3).data.get("status").asText());
+
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(since + i + 1, events.get(i).id);
+        }
+
+        List<Event> resumed = read("/api/changes", events.get(1).id, 2);
+
+        assertEquals(Arrays.asList("book_shelved", "book_unshelved"), names(resumed));
+        assertEquals(events.get(2).id, resumed.get(0).id);
+    }
+
+    /**
+     * Reads the first count events of the stream.
+     */
+    private List<Event> read(String path, Long lastEventId, int count) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setRequestProperty("Accept", "text/event-stream");
+        connection.setReadTimeout(10000);
+
+        if (lastEventId != null) {
+            connection.setRequestProperty("Last-Event-ID", String.valueOf(lastEventId));
+        }
+
+        List<Event> events = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            Event event = new Event();
+
+            while (events.size() < count) {
+                String line = reader.readLine();
+
+                if (line == null) {
+                    break;
+                }
+
+                if (line.startsWith("id:")) {
+                    event.id = Long.parseLong(line.substring(3).trim());
+                } else if (line.startsWith("event:")) {
+                    event.name = line.substring(6).trim();
+                } else if (line.startsWith("data:")) {
+                    event.data = mapper.readTree(line.substring(5));
+                } else if (line.isEmpty() && event.name != null) {
+                    events.add(event);
+                    event = new Event();
+                }
+            }
+        } finally {
+            connection.disconnect();
+        }
+
+        return events;
+    }
+
+    private static List<String> names(List<Event> events) {
+        List<String> names = new ArrayList<>();
+        events.forEach(event -> names.add(event.name));
+
+        return names;
+    }
+
+    private static List<Long> bookIds(List<Event> events) {
+        List<Long> ids = new ArrayList<>();
+        events.forEach(event -> ids.add(event.data.get("bookId").asLong()));
+
+        return ids;
+    }
+
+    private static class Event {
+        private long id;
+        private String name;
+        private JsonNode data;
+    }
+}
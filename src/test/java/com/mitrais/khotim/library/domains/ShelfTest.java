@@ -0,0 +1,55 @@
+package com.mitrais.khotim.library.domains;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ShelfTest {
+    @Test
+    public void contains() {
+        Shelf shelf = new Shelf("Shelf A", 20);
+        shelf.setId(1L);
+        Book book = new Book("9876", "Space 1", "Khotim");
+        book.setId(1L);
+
+        assertFalse(shelf.contains(book));
+
+        shelf.addBook(book);
+        assertTrue(shelf.contains(book));
+
+        shelf.removeBook(book);
+        assertFalse(shelf.contains(book));
+        assertTrue(shelf.getBooks().isEmpty());
+    }
+
+    @Test
+    public void containsByShelfIdWithoutBooks() {
+        Shelf shelf = new Shelf("Shelf A", 20);
+        shelf.setId(1L);
+        Book book = new Book();
+        book.setShelfId(1L);
+
+        assertTrue(shelf.contains(book));
+        assertTrue(shelf.getBooks().isEmpty());
+    }
+
+    @Test
+    public void equalityById() {
+        Book book = new Book("9876", "Space 1", "Khotim");
+        book.setId(1L);
+        Book sameBook = new Book("1234", "Renamed", "Someone");
+        sameBook.setId(1L);
+
+        assertEquals(book, sameBook);
+        assertEquals(book.hashCode(), sameBook.hashCode());
+        assertNotEquals(new Book(), new Book());
+
+        Set<Book> books = new HashSet<>();
+        books.add(new Book());
+        books.add(new Book());
+        assertEquals(2, books.size());
+    }
+}
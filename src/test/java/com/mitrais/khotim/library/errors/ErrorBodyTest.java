@@ -0,0 +1,47 @@
+package com.mitrais.khotim.library.errors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ErrorBodyTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void writesCodeAndMessage() {
+        byte[] body = ErrorBody.write(Rejection.ALREADY_SHELVED, "Space", "Shelf B");
+
+        assertEquals("{\"code\":\"already_shelved\",\"book\":\"Book Space is already shelved in shelf Shelf B\"}",
+                new String(body, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void sharesBodiesWithoutArguments() {
+        assertSame(ErrorBody.write(Rejection.BOOK_ID_REQUIRED), ErrorBody.write(Rejection.BOOK_ID_REQUIRED));
+    }
+
+    @Test
+    public void escapesArguments() throws Exception {
+        String title = "\"Quotes\" \\ tab\t café € 📚";
+        JsonNode body = mapper.readTree(ErrorBody.write(Rejection.NOT_IN_SHELF, title, null));
+
+        assertEquals("not_in_shelf", body.get("code").asText());
+        assertEquals("There's no book " + title + " in shelf null", body.get("shelf").asText());
+    }
+
+    @Test
+    public void answersWithTheRejectionsStatus() {
+        ResponseEntity<byte[]> response = ErrorBody.response(new ShelfOperationException(Rejection.SHELF_NOT_FOUND, "7"));
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        assertEquals("{\"code\":\"shelf_not_found\",\"shelf\":\"There's no shelf found with id 7\"}",
+                new String(response.getBody(), StandardCharsets.UTF_8));
+    }
+}
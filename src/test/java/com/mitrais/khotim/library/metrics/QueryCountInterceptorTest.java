@@ -0,0 +1,64 @@
+package com.mitrais.khotim.library.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QueryCountInterceptorTest {
+    private QueryCountInspector inspector;
+    private MeterRegistry registry;
+    private QueryCountInterceptor interceptor;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Before
+    public void setUp() {
+        inspector = new QueryCountInspector();
+        registry = new SimpleMeterRegistry();
+        interceptor = new QueryCountInterceptor(inspector, registry);
+
+        request = new MockHttpServletRequest("GET", "/api/libraries");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/libraries");
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    public void recordsQueriesPerRequest() {
+        interceptor.preHandle(request, response, null);
+        inspector.inspect("select * from shelf");
+        inspector.inspect("update shelf set name=? where shelf_id=?");
+        interceptor.afterCompletion(request, response, null, null);
+
+        assertEquals(2.0, registry.get("library.request.queries").tag("uri", "/api/libraries").summary().totalAmount(), 0);
+        assertNull(registry.find("library.request.repeated.selects").counter());
+    }
+
+    @Test
+    public void countsRepeatedSelects() {
+        interceptor.preHandle(request, response, null);
+        inspector.inspect("select * from shelf");
+
+        for (int i = 0; i < QueryCountInterceptor.REPEATED_SELECT_THRESHOLD; i++) {
+            inspector.inspect("select * from book where shelf_id=?");
+        }
+
+        interceptor.afterCompletion(request, response, null, null);
+
+        assertEquals(1.0, registry.get("library.request.repeated.selects").tag("uri", "/api/libraries").counter().count(), 0);
+    }
+
+    @Test
+    public void ignoresStatementsOutsideRequests() {
+        inspector.inspect("select * from shelf");
+
+        assertTrue(inspector.finish().isEmpty());
+    }
+}
@@ -0,0 +1,178 @@
+package com.mitrais.khotim.library.placement;
+
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.repositories.ShelfRepository;
+import com.mitrais.khotim.library.repositories.ShelfSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FreeCapacityIndexTest {
+    private FreeCapacityIndex index;
+    private ShelfRepository shelfRepository;
+
+    @Before
+    public void setUp() {
+        PlacementConfiguration configuration = new PlacementConfiguration();
+        shelfRepository = Mockito.mock(ShelfRepository.class);
+        Mockito.when(shelfRepository.findAllSummaries()).thenReturn(Collections.emptyList());
+
+        index = new FreeCapacityIndex();
+        ReflectionTestUtils.setField(index, "strategies",
+                Arrays.asList(configuration.firstFit(), configuration.bestFit(), configuration.leastLoaded()));
+        ReflectionTestUtils.setField(index, "shelfRepository", shelfRepository);
+        ReflectionTestUtils.setField(index, "registry", new SimpleMeterRegistry());
+        index.init();
+
+        // 1: 2 of 10 free, 2: 5 of 10 free, 3: 3 of 4 free, 4: full.
+        index.put(shelf(1L, 10, 8));
+        index.put(shelf(2L, 10, 5));
+        index.put(shelf(3L, 4, 1));
+        index.put(shelf(4L, 5, 5));
+    }
+
+    @Test
+    public void picksByStrategy() {
+        assertEquals(Long.valueOf(1L), index.reserve("first-fit"));
+        assertEquals(Long.valueOf(1L), index.reserve("best-fit"));
+        assertEquals(Long.valueOf(3L), index.reserve("least-loaded"));
+
+        // Shelf 1's last two places are reserved.
+        assertEquals(2, index.available());
+    }
+
+    @Test
+    public void reservationsTakePlacesUntilReleased() {
+        assertEquals(Long.valueOf(1L), index.reserve("first-fit"));
+        assertEquals(Long.valueOf(1L), index.reserve("first-fit"));
+        assertEquals(Long.valueOf(2L), index.reserve("first-fit"));
+
+        index.release(1L);
+
+        assertEquals(Long.valueOf(1L), index.reserve("first-fit"));
+    }
+
+    @Test
+    public void changesKeepReservations() {
+        index.reserve("first-fit");
+        index.put(shelf(1L, 10, 7));
+
+        assertEquals(7, index.get(1L).getCurrentCapacity());
+        assertEquals(1, index.get(1L).getReserved());
+        assertEquals(2, index.get(1L).getFree());
+    }
+
+    @Test
+    public void fullShelvesAreSkipped() {
+        index.full(1L);
+        index.full(3L);
+
+        assertEquals(Long.valueOf(2L), index.reserve("first-fit"));
+
+        index.full(2L);
+
+        assertNull(index.reserve("best-fit"));
+        assertEquals(0, index.available());
+    }
+
+    @Test
+    public void loadsOnce() {
+        index.reserve("first-fit");
+        index.reserve("best-fit");
+        index.load();
+
+        Mockito.verify(shelfRepository, Mockito.times(1)).findAllSummaries();
+    }
+
+    @Test
+    public void reloadPicksUpShelvesWrittenElsewhere() {
+        index.load();
+        index.reserve("first-fit");
+
+        List<ShelfSummary> summaries = Arrays.asList(summary(1L, 10, 9), summary(5L, 10, 0));
+        Mockito.when(shelfRepository.findAllSummaries()).thenReturn(summaries);
+        index.reload();
+
+        assertEquals(9, index.get(1L).getCurrentCapacity());
+        assertEquals(1, index.get(1L).getReserved());
+        assertEquals(10, index.get(5L).getFree());
+        assertEquals(Long.valueOf(5L), index.reserve("least-loaded"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownStrategies() {
+        index.reserve("random");
+    }
+
+    @Test
+    public void concurrentReservationsDontOverbook() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Map<Long, AtomicInteger> reserved = new ConcurrentHashMap<>();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < threads; i++) {
+            String strategy = i % 2 == 0 ? "best-fit" : "least-loaded";
+
+            futures.add(executor.submit(() -> {
+                start.await();
+
+                for (Long shelfId = index.reserve(strategy); shelfId != null; shelfId = index.reserve(strategy)) {
+                    reserved.computeIfAbsent(shelfId, id -> new AtomicInteger()).incrementAndGet();
+                }
+
+                return null;
+            }));
+        }
+
+        start.countDown();
+
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        executor.shutdown();
+
+        assertEquals(2, reserved.get(1L).get());
+        assertEquals(5, reserved.get(2L).get());
+        assertEquals(3, reserved.get(3L).get());
+        assertNull(reserved.get(4L));
+        assertEquals(0, index.available());
+    }
+
+    private static Shelf shelf(Long id, int maxCapacity, int currentCapacity) {
+        Shelf shelf = new Shelf("Shelf " + id, maxCapacity);
+        shelf.setId(id);
+        shelf.setCurrentCapacity(currentCapacity);
+
+        return shelf;
+    }
+
+    private static ShelfSummary summary(Long id, int maxCapacity, int currentCapacity) {
+        ShelfSummary summary = Mockito.mock(ShelfSummary.class);
+        Mockito.when(summary.getId()).thenReturn(id);
+        Mockito.when(summary.getMaxCapacity()).thenReturn(maxCapacity);
+        Mockito.when(summary.getCurrentCapacity()).thenReturn(currentCapacity);
+
+        return summary;
+    }
+}
@@ -0,0 +1,127 @@
+package com.mitrais.khotim.library.placement;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.errors.Rejection;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+import com.mitrais.khotim.library.services.BookService;
+import com.mitrais.khotim.library.services.ShelfService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ShelfPlacementTest {
+    @Mock
+    FreeCapacityIndex index;
+
+    @Mock
+    ShelfService shelfService;
+
+    @Mock
+    BookService bookService;
+
+    @Spy
+    MeterRegistry registry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    ShelfPlacement shelfPlacement;
+
+    private Book book;
+    private Shelf shelf1;
+    private Shelf shelf2;
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(shelfPlacement, "defaultStrategy", "best-fit");
+
+        book = new Book("9876", "Space 1", "Khotim");
+        book.setId(1L);
+        shelf1 = new Shelf("Shelf 1", 5);
+        shelf1.setId(1L);
+        shelf2 = new Shelf("Shelf 2", 5);
+        shelf2.setId(2L);
+
+        lenient().when(index.supports("best-fit")).thenReturn(true);
+        lenient().when(bookService.findById(1L)).thenReturn(Optional.of(book));
+        lenient().when(shelfService.findById(1L)).thenReturn(Optional.of(shelf1));
+        lenient().when(shelfService.findById(2L)).thenReturn(Optional.of(shelf2));
+    }
+
+    @Test
+    public void autoShelve() {
+        when(index.reserve("best-fit")).thenReturn(1L);
+        when(shelfService.addBook(shelf1, book)).thenReturn(shelf1);
+
+        assertSame(shelf1, shelfPlacement.autoShelve(1L, null));
+        verify(index).release(1L);
+        assertEquals(1, registry.get("library.placements").tags("strategy", "best-fit", "outcome", "placed").counter().count(), 0);
+    }
+
+    @Test
+    public void autoShelveTriesTheNextShelfWhenTheIndexWasBehind() {
+        when(index.reserve("best-fit")).thenReturn(1L, 2L);
+        when(shelfService.addBook(shelf1, book)).thenThrow(new ShelfOperationException(Rejection.CAPACITY_REACHED, "Shelf 1"));
+        when(shelfService.addBook(shelf2, book)).thenReturn(shelf2);
+
+        assertSame(shelf2, shelfPlacement.autoShelve(1L, "best-fit"));
+        verify(index).full(1L);
+        verify(index).release(1L);
+        verify(index).release(2L);
+    }
+
+    @Test
+    public void autoShelveWhenNoShelfHasRoom() {
+        when(index.reserve("best-fit")).thenReturn(null);
+
+        assertRejected(Rejection.NO_SHELF_AVAILABLE, 1L, "best-fit");
+    }
+
+    @Test
+    public void autoShelveWhenBookIsShelved() {
+        when(index.reserve("best-fit")).thenReturn(1L);
+        when(shelfService.addBook(shelf1, book)).thenThrow(new ShelfOperationException(Rejection.ALREADY_SHELVED, "Space 1", "Shelf 2"));
+
+        assertRejected(Rejection.ALREADY_SHELVED, 1L, "best-fit");
+        verify(index, never()).full(any());
+        verify(index).release(1L);
+    }
+
+    @Test
+    public void autoShelveWhenBookNotExists() {
+        assertRejected(Rejection.BOOK_NOT_FOUND, 9L, "best-fit");
+    }
+
+    @Test
+    public void autoShelveWithUnknownStrategy() {
+        assertRejected(Rejection.UNKNOWN_STRATEGY, 1L, "random");
+        assertEquals(1, registry.get("library.placements").tags("strategy", "unknown").counter().count(), 0);
+    }
+
+    private void assertRejected(Rejection rejection, Long bookId, String strategy) {
+        try {
+            shelfPlacement.autoShelve(bookId, strategy);
+            fail();
+        } catch (ShelfOperationException e) {
+            assertEquals(rejection, e.getRejection());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.mitrais.khotim.library.routing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReadWriteRoutingDataSourceTest {
+    @Mock
+    DataSource writePool;
+
+    @Mock
+    DataSource readPool;
+
+    @Mock
+    Connection writeConnection;
+
+    @Mock
+    Connection readConnection;
+
+    @Mock
+    Statement statement;
+
+    private TransactionTemplate writes;
+    private TransactionTemplate reads;
+    private JdbcTemplate jdbc;
+    private int firstWrites;
+
+    @Before
+    public void setUp() throws SQLException {
+        lenient().when(writePool.getConnection()).thenReturn(writeConnection);
+        lenient().when(readPool.getConnection()).thenReturn(readConnection);
+        lenient().when(writeConnection.createStatement()).thenReturn(statement);
+        lenient().when(readConnection.createStatement()).thenReturn(statement);
+
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(writePool, readPool);
+        routing.afterPropertiesSet();
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy();
+        dataSource.setTargetDataSource(routing);
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        dataSource.afterPropertiesSet();
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        writes = new TransactionTemplate(transactionManager);
+        reads = new TransactionTemplate(transactionManager);
+        reads.setReadOnly(true);
+        jdbc = new JdbcTemplate(dataSource);
+    }
+
+    @After
+    public void tearDown() {
+        ReadYourWrites.end();
+    }
+
+    @Test
+    public void readOnlyTransactionsUseTheReadPool() throws SQLException {
+        read();
+
+        verify(readPool).getConnection();
+        verify(writePool, never()).getConnection();
+    }
+
+    @Test
+    public void writesUseThePrimary() throws SQLException {
+        write();
+
+        verify(writePool).getConnection();
+        verify(readPool, never()).getConnection();
+    }
+
+    @Test
+    public void readsAfterAWriteInTheSameRequestUseThePrimary() throws SQLException {
+        ReadYourWrites.begin(false, () -> firstWrites++);
+
+        read();
+        write();
+        write();
+        read();
+
+        verify(readPool, times(1)).getConnection();
+        verify(writePool, times(3)).getConnection();
+        assertEquals(1, firstWrites);
+    }
+
+    @Test
+    public void pinnedRequestsReadFromThePrimary() throws SQLException {
+        ReadYourWrites.begin(true, () -> firstWrites++);
+
+        read();
+
+        verify(writePool).getConnection();
+        verify(readPool, never()).getConnection();
+        assertEquals(0, firstWrites);
+    }
+
+    @Test
+    public void writesOutsideRequestsArentTracked() throws SQLException {
+        write();
+        read();
+
+        verify(readPool).getConnection();
+    }
+
+    private void read() {
+        reads.execute(status -> {
+            jdbc.execute("select 1");
+            return null;
+        });
+    }
+
+    private void write() {
+        writes.execute(status -> {
+            jdbc.execute("update book set title = title");
+            return null;
+        });
+    }
+}
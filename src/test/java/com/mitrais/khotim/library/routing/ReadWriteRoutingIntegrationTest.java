@@ -0,0 +1,92 @@
+package com.mitrais.khotim.library.routing;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.services.BookService;
+import com.mitrais.khotim.library.services.ShelfService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.servlet.http.Cookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Both pools point at the same in-memory database, the pools' connection metrics tell which one a call used.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing;DB_CLOSE_DELAY=-1",
+        "spring.jpa.open-in-view=false",
+        "library.read-datasource.enabled=true",
+        "library.admission.enabled=false",
+        "library.changes.relay.enabled=false",
+        "library.changes.invalidation.enabled=false"
+})
+@AutoConfigureMockMvc
+public class ReadWriteRoutingIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    public void readsUseTheReadPool() {
+        double reads = connections("read");
+        double writes = connections("write");
+
+        Shelf shelf = shelfService.save(new Shelf("Routed shelf", 5));
+        Book book = bookService.save(new Book("isbn-routed", "Routed", "Khotim"));
+        assertEquals(writes + 2, connections("write"), 0);
+
+        assertTrue(shelfService.findAll().contains(shelf));
+        assertTrue(bookService.findByTitleAndStatus("Routed", "").contains(book));
+
+        assertEquals(reads + 2, connections("read"), 0);
+        assertEquals(writes + 2, connections("write"), 0);
+    }
+
+    @Test
+    public void clientsReadTheirWritesFromThePrimary() throws Exception {
+        Shelf shelf = shelfService.save(new Shelf("Sticky shelf", 5));
+        Book book = bookService.save(new Book("isbn-sticky", "Sticky", "Khotim"));
+
+        Cookie cookie = mockMvc.perform(MockMvcRequestBuilders.put("/api/libraries/{id}/addBook", shelf.getId())
+                .contentType(MediaType.APPLICATION_JSON).content("{\"id\":" + book.getId() + "}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getCookie(ReadYourWritesFilter.COOKIE);
+        assertNotNull(cookie);
+
+        double reads = connections("read");
+        double writes = connections("write");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries").cookie(cookie)).andExpect(status().isOk());
+        assertEquals(reads, connections("read"), 0);
+        assertEquals(writes + 1, connections("write"), 0);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries")).andExpect(status().isOk());
+        assertEquals(reads + 1, connections("read"), 0);
+    }
+
+    private double connections(String pool) {
+        return registry.get("hikaricp.connections.usage").tag("pool", pool).timer().count();
+    }
+}
@@ -0,0 +1,74 @@
+package com.mitrais.khotim.library.routing;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReadYourWritesFilterTest {
+    private final ReadYourWritesFilter filter = new ReadYourWritesFilter(5000);
+
+    @Test
+    public void setsACookieOnTheFirstWrite() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        boolean[] pinned = new boolean[1];
+
+        filter.doFilter(new MockHttpServletRequest("PUT", "/api/libraries/1/addBook"), response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                ReadYourWrites.wrote();
+                ReadYourWrites.wrote();
+                pinned[0] = ReadYourWrites.isPinned();
+            }
+        }));
+
+        Cookie cookie = response.getCookie(ReadYourWritesFilter.COOKIE);
+        assertNotNull(cookie);
+        assertTrue(Long.parseLong(cookie.getValue()) > System.currentTimeMillis());
+        assertEquals(5, cookie.getMaxAge());
+        assertEquals(1, response.getHeaders("Set-Cookie").size());
+        assertTrue(pinned[0]);
+        assertFalse(ReadYourWrites.isPinned());
+    }
+
+    @Test
+    public void pinsRequestsWithAFreshCookie() throws Exception {
+        assertTrue(pinned(System.currentTimeMillis() + 1000));
+        assertFalse(pinned(System.currentTimeMillis() - 1000));
+    }
+
+    @Test
+    public void leavesReadsAlone() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/books"), response, new MockFilterChain());
+
+        assertNull(response.getCookie(ReadYourWritesFilter.COOKIE));
+    }
+
+    private boolean pinned(long until) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books");
+        request.setCookies(new Cookie(ReadYourWritesFilter.COOKIE, Long.toString(until)));
+        boolean[] pinned = new boolean[1];
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                pinned[0] = ReadYourWrites.isPinned();
+            }
+        }));
+
+        return pinned[0];
+    }
+}
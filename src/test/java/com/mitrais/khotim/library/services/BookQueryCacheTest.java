@@ -0,0 +1,109 @@
+package com.mitrais.khotim.library.services;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BookQueryCacheTest {
+    @Spy
+    CacheManager cacheManager = new CaffeineCacheManager(BookQueryCache.NAME);
+
+    @InjectMocks
+    BookQueryCache bookQueryCache;
+
+    private Cache cache;
+
+    @Before
+    public void setUp() {
+        cache = cacheManager.getCache(BookQueryCache.NAME);
+    }
+
+    @Test
+    public void queriesAreNormalized() {
+        assertEquals(new BookQueryCache.Query("Space", "SHELVED", 0, 0), new BookQueryCache.Query("space", "shelved", 0, 0));
+        assertNotEquals(new BookQueryCache.Query("space", "", 0, 0), new BookQueryCache.Query("space", "", 0, 100));
+    }
+
+    @Test
+    public void getCachesLoadedResults() {
+        BookQueryCache.Query query = new BookQueryCache.Query("space", "", 0, 0);
+        List<Book> books = Collections.singletonList(new Book("9876", "Space Adventure", "Khotim"));
+
+        assertSame(books, bookQueryCache.get(query, () -> books));
+        assertSame(books, bookQueryCache.get(query, () -> {
+            throw new AssertionError("Loaded again");
+        }));
+    }
+
+    @Test
+    public void getDoesntCacheResultsEvictedWhileLoading() {
+        BookQueryCache.Query query = new BookQueryCache.Query("space", "", 0, 0);
+        BookQueryCache.Query other = new BookQueryCache.Query("cooking", "", 0, 0);
+        Book book = new Book("9876", "Space Adventure", "Khotim");
+        book.setId(5L);
+
+        bookQueryCache.get(query, () -> {
+            // A result that doesn't match the change is still cached.
+            bookQueryCache.get(other, () -> {
+                bookQueryCache.evict(book);
+                return Collections.emptyList();
+            });
+
+            return Collections.emptyList();
+        });
+
+        assertNull(cache.get(query));
+        assertNotNull(cache.get(other));
+    }
+
+    @Test
+    public void evictOnlyQueriesThatMayContainTheBook() {
+        Object all = put("", "");
+        Object space = put("space", "");
+        Object shelvedSpace = put("SPACE", BookStatus.SHELVED.getValue());
+        Object cooking = put("cooking", "");
+        Object laterPage = new BookQueryCache.Query("", "", 10L, 100);
+        cache.put(laterPage, Collections.emptyList());
+
+        Book book = new Book("9876", "Space Adventure", "Khotim");
+        book.setId(5L);
+
+        bookQueryCache.evict(book);
+
+        assertNull(cache.get(all));
+        assertNull(cache.get(space));
+        assertNull(cache.get(shelvedSpace));
+        assertNotNull(cache.get(cooking));
+        assertNotNull(cache.get(laterPage));
+    }
+
+    @Test
+    public void clear() {
+        Object space = put("space", "");
+
+        bookQueryCache.clear();
+
+        assertNull(cache.get(space));
+    }
+
+    private Object put(String title, String status) {
+        Object key = new BookQueryCache.Query(title, status, 0, 0);
+        cache.put(key, Collections.emptyList());
+
+        return key;
+    }
+}
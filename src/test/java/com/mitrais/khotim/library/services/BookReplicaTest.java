@@ -0,0 +1,169 @@
+package com.mitrais.khotim.library.services;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.repositories.BookRepository;
+import com.mitrais.khotim.library.repositories.ShelfRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BookReplicaTest {
+    @Mock
+    BookRepository bookRepository;
+
+    @Mock
+    ShelfRepository shelfRepository;
+
+    @Spy
+    MeterRegistry registry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    BookReplica replica;
+
+    private Shelf shelf;
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(replica, "enabled", true);
+        replica.registerGauges();
+
+        shelf = new Shelf("Shelf 1", 5);
+        shelf.setId(10L);
+        shelf.setVersion(0L);
+        shelf.setCurrentCapacity(1);
+
+        Book shelved = book(2L, "Lost in Space", "Jane", BookStatus.SHELVED);
+        shelf.addBook(shelved);
+
+        when(shelfRepository.findAll()).thenReturn(Collections.singletonList(shelf));
+        when(bookRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 1000))).thenReturn(Arrays.asList(
+                book(1L, "Space Adventure", "Khotim", BookStatus.NOT_SHELVED),
+                shelved,
+                book(3L, "Cooking", "Khotim", BookStatus.NOT_SHELVED)
+        ));
+
+        replica.rebuild();
+    }
+
+    @Test
+    public void rebuild() {
+        assertTrue(replica.isReady());
+        assertEquals(3, replica.size());
+        assertTrue(replica.footprint() > 0);
+        assertEquals(3, registry.get("library.replica.books").gauge().value(), 0);
+
+        Book book = replica.findBook(2L).get();
+        assertEquals("isbn-2", book.getIsbn());
+        assertEquals("Lost in Space", book.getTitle());
+        assertEquals("Jane", book.getAuthor());
+        assertEquals(BookStatus.SHELVED, book.getStatus());
+        assertEquals(Long.valueOf(10L), book.getShelfId());
+        assertEquals(Long.valueOf(0L), book.getVersion());
+        assertFalse(replica.findBook(4L).isPresent());
+    }
+
+    @Test
+    public void findBooks() {
+        assertEquals(Arrays.asList(3L, 1L), ids(replica.findBooks(Arrays.asList(3L, 4L, 1L))));
+    }
+
+    @Test
+    public void findBooksByStatus() {
+        assertEquals(Arrays.asList(1L, 2L, 3L), ids(replica.findBooksByStatus("", 0, 0)));
+        assertEquals(Arrays.asList(1L, 3L), ids(replica.findBooksByStatus("NOT_SHELVED", 0, 0)));
+        assertEquals(Collections.singletonList(3L), ids(replica.findBooksByStatus(BookStatus.NOT_SHELVED.getValue(), 1L, 1)));
+        assertEquals(Collections.singletonList(2L), ids(replica.findBooksByStatus(BookStatus.SHELVED.getValue(), 0, 0)));
+    }
+
+    @Test
+    public void findShelf() {
+        Shelf testShelf = replica.findShelf(10L).get();
+
+        assertEquals("Shelf 1", testShelf.getName());
+        assertEquals(1, testShelf.getCurrentCapacity());
+        assertEquals(Collections.singletonList(2L), ids(testShelf.getBooks()));
+        assertFalse(replica.findShelf(11L).isPresent());
+    }
+
+    @Test
+    public void findShelfWithoutBooks() {
+        Shelf testShelf = replica.findShelfWithoutBooks(10L).get();
+
+        assertEquals("Shelf 1", testShelf.getName());
+        assertEquals(1, testShelf.getCurrentCapacity());
+        assertTrue(testShelf.getBooks().isEmpty());
+        assertFalse(replica.findShelfWithoutBooks(11L).isPresent());
+    }
+
+    @Test
+    public void putNewerVersion() {
+        Book book = book(1L, "Space Adventure", "Khotim", BookStatus.SHELVED);
+        book.setVersion(1L);
+        shelf.addBook(book);
+        shelf.setCurrentCapacity(2);
+        shelf.setVersion(1L);
+
+        replica.put(book);
+        replica.put(shelf);
+
+        assertEquals(BookStatus.SHELVED, replica.findBook(1L).get().getStatus());
+        assertEquals(Arrays.asList(1L, 2L), ids(replica.findShelf(10L).get().getBooks()));
+        assertEquals(2, replica.findShelf(10L).get().getCurrentCapacity());
+    }
+
+    @Test
+    public void putIgnoresOlderVersion() {
+        Book book = book(2L, "Lost in Space", "Jane", BookStatus.NOT_SHELVED);
+        book.setVersion(1L);
+        replica.put(book);
+
+        Book stale = book(2L, "Lost in Space", "Jane", BookStatus.SHELVED);
+        stale.setShelfId(10L);
+        replica.put(stale);
+
+        assertEquals(BookStatus.NOT_SHELVED, replica.findBook(2L).get().getStatus());
+        assertNull(replica.findBook(2L).get().getShelfId());
+        assertTrue(replica.findShelf(10L).get().getBooks().isEmpty());
+    }
+
+    @Test
+    public void putInsertsInIdOrder() {
+        replica.put(book(5L, "Gardening", "Spa Chef", BookStatus.NOT_SHELVED));
+        replica.put(book(4L, "Sailing", "Khotim", BookStatus.NOT_SHELVED));
+
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), ids(replica.findBooksByStatus("", 0, 0)));
+        assertEquals("Spa Chef", replica.findBook(5L).get().getAuthor());
+    }
+
+    private Book book(Long id, String title, String author, BookStatus status) {
+        Book book = new Book("isbn-" + id, title, author);
+        book.setId(id);
+        book.setStatus(status);
+        book.setVersion(0L);
+
+        return book;
+    }
+
+    private static List<Long> ids(List<Book> books) {
+        return books.stream().map(Book::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,132 @@
+package com.mitrais.khotim.library.services;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
+import com.mitrais.khotim.library.repositories.BookRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BookSearchIndexTest {
+    @Mock
+    BookRepository bookRepository;
+
+    @InjectMocks
+    BookSearchIndex searchIndex;
+
+    private Book book;
+    private Book book2;
+    private Book book3;
+
+    @Before
+    public void setUp() {
+        book = book(1L, "9876", "Space Adventure", "Khotim");
+        book2 = book(2L, "1234", "Lost in Space", "Jane Spacey");
+        book3 = book(3L, "5555", "Cooking", "Spa Chef");
+
+        searchIndex.index(book);
+        searchIndex.index(book2);
+        searchIndex.index(book3);
+    }
+
+    @Test
+    public void findIdsByTitle() {
+        assertEquals(Arrays.asList(1L, 2L), searchIndex.findIdsByTitle("SPACE", "", 0, 0));
+        assertEquals(Collections.singletonList(2L), searchIndex.findIdsByTitle("space", "", 1L, 0));
+        assertEquals(Collections.singletonList(1L), searchIndex.findIdsByTitle("space", "", 0, 1));
+        assertEquals(Collections.singletonList(1L), searchIndex.findIdsByTitle("e adv", "", 0, 0));
+        assertTrue(searchIndex.findIdsByTitle("spaceship", "", 0, 0).isEmpty());
+    }
+
+    @Test
+    public void findIdsByShortTitle() {
+        assertEquals(Arrays.asList(1L, 2L, 3L), searchIndex.findIdsByTitle("n", "", 0, 0));
+        assertEquals(Arrays.asList(1L, 2L, 3L), searchIndex.findIdsByTitle("", "", 0, 0));
+    }
+
+    @Test
+    public void findIdsByTitleAndStatus() {
+        book2.setStatus(BookStatus.SHELVED);
+        searchIndex.index(book2);
+
+        assertEquals(Collections.singletonList(2L), searchIndex.findIdsByTitle("space", BookStatus.SHELVED.getValue(), 0, 0));
+        assertEquals(Collections.singletonList(1L), searchIndex.findIdsByTitle("space", BookStatus.NOT_SHELVED.getValue(), 0, 0));
+    }
+
+    @Test
+    public void reindexChangedTitle() {
+        book.setTitle("Gardening");
+        searchIndex.index(book);
+
+        assertEquals(Collections.singletonList(2L), searchIndex.findIdsByTitle("space", "", 0, 0));
+        assertEquals(Collections.singletonList(1L), searchIndex.findIdsByTitle("garden", "", 0, 0));
+        assertEquals(3, searchIndex.size());
+    }
+
+    @Test
+    public void searchRanksTitleAboveAuthor() {
+        assertEquals(Arrays.asList(1L, 2L), searchIndex.search("space", "", 0));
+        assertEquals(Arrays.asList(1L, 2L, 3L), searchIndex.search("spa", "", 0));
+        assertEquals(Collections.singletonList(3L), searchIndex.search("5555", "", 0));
+        assertEquals(Collections.singletonList(2L), searchIndex.search("lost jane", "", 0));
+        assertEquals(Collections.singletonList(1L), searchIndex.search("space", "", 1));
+        assertTrue(searchIndex.search("   ", "", 0).isEmpty());
+    }
+
+    @Test
+    public void searchShortTermStopsAtLimit() {
+        assertEquals(3, searchIndex.search("c", "", 0).size());
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), new HashSet<>(searchIndex.search("c", "", 2)));
+    }
+
+    @Test
+    public void rebuild() {
+        when(bookRepository.findByIdGreaterThanOrderByIdAsc(Mockito.eq(0L), Mockito.any()))
+                .thenReturn(Collections.singletonList(book2));
+
+        searchIndex.rebuild();
+
+        assertEquals(1, searchIndex.size());
+        assertEquals(Collections.singletonList(2L), searchIndex.findIdsByTitle("space", "", 0, 0));
+    }
+
+    @Test
+    public void rebuildKeepsBooksIndexedWhileLoading() {
+        Book stale = book(2L, "1234", "Lost in Space", "Jane Spacey");
+
+        when(bookRepository.findByIdGreaterThanOrderByIdAsc(Mockito.eq(0L), Mockito.any())).thenAnswer(invocation -> {
+            // Queries still see the current index, and the book is retitled after the page was read.
+            assertEquals(3, searchIndex.size());
+            book2.setTitle("Found on Earth");
+            searchIndex.index(book2);
+
+            return Arrays.asList(book, stale);
+        });
+
+        searchIndex.rebuild();
+
+        assertEquals(2, searchIndex.size());
+        assertEquals(Collections.singletonList(1L), searchIndex.findIdsByTitle("space", "", 0, 0));
+        assertEquals(Collections.singletonList(2L), searchIndex.findIdsByTitle("earth", "", 0, 0));
+    }
+
+    private static Book book(Long id, String isbn, String title, String author) {
+        Book book = new Book(isbn, title, author);
+        book.setId(id);
+
+        return book;
+    }
+}
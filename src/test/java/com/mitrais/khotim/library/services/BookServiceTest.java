@@ -1,19 +1,34 @@
 package com.mitrais.khotim.library.services;
 
+import com.mitrais.khotim.library.changes.ChangeOutbox;
 import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
 import com.mitrais.khotim.library.repositories.BookRepository;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -24,12 +39,43 @@ public class BookServiceTest {
     @InjectMocks
     BookService bookService;
 
+    @Mock
+    EntityManager entityManager;
+
+    @Mock
+    BookSearchIndex searchIndex;
+
+    @Mock
+    BookReplica replica;
+
+    @Mock
+    ChangeOutbox changeOutbox;
+
+    @Mock
+    TransactionTemplate transactionTemplate;
+
+    @Mock
+    SingleFlight singleFlight;
+
+    @Mock
+    BookQueryCache queryCache;
+
     @Mock
     Book book;
 
     @Mock
     Book book2;
 
+    @Before
+    public void setUp() {
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        lenient().when(singleFlight.run(any(), any(), any())).thenAnswer(invocation ->
+                invocation.<Supplier<?>>getArgument(2).get());
+        lenient().when(queryCache.get(any(), any())).thenAnswer(invocation ->
+                invocation.<Supplier<?>>getArgument(1).get());
+    }
+
     @Test
     public void findAll() {
         when(bookRepository.findAll()).thenReturn(Arrays.asList(book, book2));
@@ -38,26 +84,73 @@ public class BookServiceTest {
 
     @Test
     public void findByTitle() {
-        when(bookRepository.findByTitleContainingIgnoreCase("space")).thenReturn(Collections.singletonList(book));
+        when(searchIndex.findIdsByTitle("space", "", 0, 0)).thenReturn(Collections.singletonList(1L));
+        when(bookRepository.findAllById(Collections.singletonList(1L))).thenReturn(Collections.singletonList(book));
         assertEquals(1, bookService.findByTitleAndStatus("space", "").size());
 
-        when(bookRepository.findByStatusIgnoreCase(Book.SHELVED)).thenReturn(Arrays.asList(book, book2));
-        assertEquals(2, bookService.findByTitleAndStatus("", Book.SHELVED).size());
+        when(bookRepository.findByStatus(BookStatus.SHELVED)).thenReturn(Arrays.asList(book, book2));
+        assertEquals(2, bookService.findByTitleAndStatus("", BookStatus.SHELVED.getValue()).size());
 
-        when(bookRepository.findByTitleContainingIgnoreCaseAndStatusIgnoreCase("space", Book.NOT_SHELVED)).thenReturn(Arrays.asList(book, book2));
-        assertEquals(2, bookService.findByTitleAndStatus("space", Book.NOT_SHELVED).size());
+        when(searchIndex.findIdsByTitle("space", BookStatus.NOT_SHELVED.getValue(), 0, 0)).thenReturn(Arrays.asList(1L, 2L));
+        when(bookRepository.findAllById(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(book, book2));
+        assertEquals(2, bookService.findByTitleAndStatus("space", BookStatus.NOT_SHELVED.getValue()).size());
+
+        verify(bookRepository, never()).findAll();
     }
 
     @Test
     public void findByStatus() {
-        when(bookRepository.findByStatusIgnoreCase(Book.SHELVED)).thenReturn(Arrays.asList(book, book2));
-        assertEquals(2, bookService.findByTitleAndStatus("", Book.SHELVED).size());
+        when(bookRepository.findByStatus(BookStatus.SHELVED)).thenReturn(Arrays.asList(book, book2));
+        assertEquals(2, bookService.findByTitleAndStatus("", BookStatus.SHELVED.getValue()).size());
     }
 
     @Test
     public void findByTitleAndStatus() {
-        when(bookRepository.findByTitleContainingIgnoreCaseAndStatusIgnoreCase("space", Book.NOT_SHELVED)).thenReturn(Arrays.asList(book, book2));
-        assertEquals(2, bookService.findByTitleAndStatus("space", Book.NOT_SHELVED).size());
+        when(searchIndex.findIdsByTitle("space", BookStatus.NOT_SHELVED.getValue(), 0, 0)).thenReturn(Arrays.asList(1L, 2L));
+        when(bookRepository.findAllById(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(book, book2));
+        assertEquals(2, bookService.findByTitleAndStatus("space", BookStatus.NOT_SHELVED.getValue()).size());
+    }
+
+    @Test
+    public void search() {
+        Book first = new Book("1", "Space", "Khotim");
+        first.setId(1L);
+        Book second = new Book("2", "Outer Space", "Khotim");
+        second.setId(2L);
+
+        when(searchIndex.search("space", "", 10)).thenReturn(Arrays.asList(1L, 2L));
+        when(bookRepository.findAllById(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(second, first));
+
+        assertEquals(Arrays.asList(first, second), bookService.search("space", "", 10));
+    }
+
+    @Test
+    public void findPage() {
+        when(bookRepository.findByIdGreaterThanOrderByIdAsc(Mockito.eq(0L), Mockito.any())).thenReturn(Arrays.asList(book, book2));
+        assertEquals(2, bookService.findByTitleAndStatus("", "", 0L, 10).size());
+
+        when(searchIndex.findIdsByTitle("space", "", 5L, 10)).thenReturn(Collections.singletonList(6L));
+        when(bookRepository.findAllById(Collections.singletonList(6L))).thenReturn(Collections.singletonList(book));
+        assertEquals(1, bookService.findByTitleAndStatus("space", "", 5L, 10).size());
+
+        when(bookRepository.findByStatusAndIdGreaterThanOrderByIdAsc(Mockito.eq(BookStatus.SHELVED), Mockito.eq(0L), Mockito.any())).thenReturn(Arrays.asList(book, book2));
+        assertEquals(2, bookService.findByTitleAndStatus("", BookStatus.SHELVED.getValue(), 0L, 10).size());
+
+        when(searchIndex.findIdsByTitle("space", BookStatus.NOT_SHELVED.getValue(), 0L, 10)).thenReturn(Collections.singletonList(7L));
+        when(bookRepository.findAllById(Collections.singletonList(7L))).thenReturn(Collections.singletonList(book2));
+        assertEquals(1, bookService.findByTitleAndStatus("space", BookStatus.NOT_SHELVED.getValue(), 0L, 10).size());
+    }
+
+    @Test
+    public void streamByTitleAndStatus() {
+        when(bookRepository.streamByTitleAndStatus("", null)).thenReturn(Stream.of(book, book2));
+
+        List<Book> books = new ArrayList<>();
+        bookService.streamByTitleAndStatus("", "", books::add);
+
+        assertEquals(Arrays.asList(book, book2), books);
+        verify(entityManager).detach(book);
+        verify(entityManager).detach(book2);
     }
 
     @Test
@@ -68,6 +161,20 @@ public class BookServiceTest {
 
         assertNotNull(testBook);
         assertEquals(book.getId(), testBook.getId());
+        verify(singleFlight).run(Mockito.eq(BookService.BOOK_LOOKUP), Mockito.eq(1L), Mockito.any());
+    }
+
+    @Test
+    public void findFromReplica() {
+        when(replica.isReady()).thenReturn(true);
+        when(replica.findBook(1L)).thenReturn(Optional.of(book));
+        when(replica.findBooksByStatus(BookStatus.SHELVED.getValue(), 5L, 10)).thenReturn(Collections.singletonList(book2));
+
+        assertEquals(book, bookService.findById(1L).orElse(null));
+        assertEquals(Collections.singletonList(book2), bookService.findByTitleAndStatus("", BookStatus.SHELVED.getValue(), 5L, 10));
+        verify(bookRepository, never()).findById(1L);
+        verify(bookRepository, never()).findByStatusAndIdGreaterThanOrderByIdAsc(Mockito.any(), Mockito.any(), Mockito.any());
+        verify(singleFlight, never()).run(Mockito.any(), Mockito.any(), Mockito.any());
     }
 
     @Test
@@ -83,5 +190,10 @@ public class BookServiceTest {
         assertNotNull(testBook.getAuthor());
         assertEquals("Space Adventure 1", testBook.getTitle());
         assertEquals(newBook.getShelf(), testBook.getShelf());
+        verify(searchIndex).index(newBook);
+        verify(replica).put(newBook);
+        verify(changeOutbox).bookSaved(newBook);
+        verify(singleFlight).forgetAll(BookService.QUERY_LOOKUP);
+        verify(queryCache).clear();
     }
 }
\ No newline at end of file
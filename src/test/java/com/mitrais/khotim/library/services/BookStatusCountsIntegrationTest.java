@@ -0,0 +1,160 @@
+package com.mitrais.khotim.library.services;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.repositories.BookRepository;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class BookStatusCountsIntegrationTest {
+    private static final long OTHER_INSTANCE_BOOK = 800_001L;
+
+    @Autowired
+    private BookStatusCounts statusCounts;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookSearchIndex searchIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Test
+    public void countsFollowCommittedWrites() {
+        statusCounts.reload();
+        long shelved = statusCounts.get(BookStatus.SHELVED);
+        long notShelved = statusCounts.get(BookStatus.NOT_SHELVED);
+
+        Book book = bookService.save(new Book("isbn-counted", "Counted", "Khotim"));
+        assertEquals(notShelved + 1, statusCounts.get(BookStatus.NOT_SHELVED));
+
+        Shelf shelf = shelfService.save(new Shelf("Counted shelf", 1));
+        shelfService.addBook(shelf, book);
+        assertEquals(shelved + 1, statusCounts.get(BookStatus.SHELVED));
+        assertEquals(notShelved, statusCounts.get(BookStatus.NOT_SHELVED));
+
+        shelfService.removeBook(shelfService.findById(shelf.getId()).get(), bookService.findById(book.getId()).get());
+        bookRepository.deleteById(book.getId());
+        assertEquals(shelved, statusCounts.get(BookStatus.SHELVED));
+        assertEquals(notShelved, statusCounts.get(BookStatus.NOT_SHELVED));
+    }
+
+    @Test
+    public void countsFollowRefreshedWritesOfOtherInstances() {
+        statusCounts.reload();
+        long shelved = statusCounts.get(BookStatus.SHELVED);
+        long notShelved = statusCounts.get(BookStatus.NOT_SHELVED);
+        List<Long> ids = Collections.singletonList(OTHER_INSTANCE_BOOK);
+
+        try {
+            jdbcTemplate.update("insert into book (id, isbn, title, author, status, shelf_id, version)"
+                    + " values (?, 'isbn-elsewhere', 'Counted elsewhere', 'Khotim', 'N', null, 0)", OTHER_INSTANCE_BOOK);
+            shelfService.refresh(Collections.emptySet(), ids);
+            assertEquals(notShelved + 1, statusCounts.get(BookStatus.NOT_SHELVED));
+
+            jdbcTemplate.update("update book set status = 'S' where id = ?", OTHER_INSTANCE_BOOK);
+            shelfService.refresh(Collections.emptySet(), ids);
+            assertEquals(shelved + 1, statusCounts.get(BookStatus.SHELVED));
+            assertEquals(notShelved, statusCounts.get(BookStatus.NOT_SHELVED));
+
+            shelfService.refresh(Collections.emptySet(), ids);
+            assertEquals(shelved + 1, statusCounts.get(BookStatus.SHELVED));
+        } finally {
+            jdbcTemplate.update("delete from book where id = ?", OTHER_INSTANCE_BOOK);
+            searchIndex.rebuild();
+            statusCounts.reload();
+        }
+    }
+
+    @Test
+    public void reloadMatchesTable() {
+        statusCounts.reload();
+
+        for (BookStatus status : BookStatus.values()) {
+            Long rows = jdbcTemplate.queryForObject("select count(*) from book where status = ?", Long.class,
+                    String.valueOf(status.getCode()));
+            assertEquals(rows.longValue(), statusCounts.get(status));
+        }
+    }
+
+    @Test
+    public void reloadDoesNotCountACommitTwice() throws Exception {
+        statusCounts.reload();
+        long notShelved = statusCounts.get(BookStatus.NOT_SHELVED);
+        CountDownLatch committed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Book book = new Book("isbn-reloaded", "Reloaded", "Khotim");
+
+        // Registered before the insert is flushed, so it runs after the commit but before the insert is counted.
+        Thread writer = new Thread(() -> new TransactionTemplate(transactionManager).execute(status -> {
+            entityManager.unwrap(SessionImplementor.class).getActionQueue()
+                    .registerProcess((AfterTransactionCompletionProcess) (success, session) -> {
+                        committed.countDown();
+                        await(release);
+                    });
+            return bookRepository.save(book);
+        }));
+        Thread reloader = new Thread(statusCounts::reload);
+
+        try {
+            writer.start();
+            assertTrue(committed.await(10, TimeUnit.SECONDS));
+            reloader.start();
+            reloader.join(200);
+            release.countDown();
+            writer.join(10_000);
+            reloader.join(10_000);
+
+            assertEquals(notShelved + 1, statusCounts.get(BookStatus.NOT_SHELVED));
+        } finally {
+            release.countDown();
+
+            if (book.getId() != null) {
+                bookRepository.deleteById(book.getId());
+            }
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.mitrais.khotim.library.services;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.Shelf;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReactiveLibraryServiceTest {
+    @Mock
+    BookService bookService;
+
+    @Mock
+    ShelfService shelfService;
+
+    @InjectMocks
+    ReactiveLibraryService libraryService;
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(libraryService, "threads", 2);
+        libraryService.start();
+    }
+
+    @After
+    public void tearDown() {
+        libraryService.stop();
+    }
+
+    @Test
+    public void findBookById() {
+        Book book = book(1L);
+
+        when(bookService.findById(1L)).thenReturn(Optional.of(book));
+        when(bookService.findById(2L)).thenReturn(Optional.empty());
+
+        assertEquals(book, libraryService.findBookById(1L).block());
+        assertNull(libraryService.findBookById(2L).block());
+    }
+
+    @Test
+    public void streamBooksFollowsKeyset() {
+        when(bookService.findByTitleAndStatus("", "", 0, ReactiveLibraryService.PAGE_SIZE)).thenReturn(books(1, ReactiveLibraryService.PAGE_SIZE));
+        when(bookService.findByTitleAndStatus("", "", ReactiveLibraryService.PAGE_SIZE, ReactiveLibraryService.PAGE_SIZE))
+                .thenReturn(books(ReactiveLibraryService.PAGE_SIZE + 1, 5));
+
+        List<Book> books = libraryService.streamBooks("", "").collectList().block();
+
+        assertEquals(ReactiveLibraryService.PAGE_SIZE + 5, books.size());
+        assertEquals(Long.valueOf(ReactiveLibraryService.PAGE_SIZE + 5), books.get(books.size() - 1).getId());
+    }
+
+    @Test
+    public void streamBooksStopsWhenCancelled() {
+        when(bookService.findByTitleAndStatus("", "", 0, ReactiveLibraryService.PAGE_SIZE)).thenReturn(books(1, ReactiveLibraryService.PAGE_SIZE));
+
+        assertEquals(10, libraryService.streamBooks("", "").take(10).collectList().block().size());
+        verify(bookService, never()).findByTitleAndStatus(eq(""), eq(""), eq((long) ReactiveLibraryService.PAGE_SIZE), anyInt());
+    }
+
+    @Test
+    public void searchLoadsRankedIdsInPages() {
+        List<Long> ids = new ArrayList<>();
+
+        for (long id = 250; id > 0; id--) {
+            ids.add(id);
+        }
+
+        when(bookService.searchIds("space", "", 250)).thenReturn(ids);
+        when(bookService.findAllByIdInOrder(anyList())).thenAnswer(invocation -> {
+            List<Long> batch = invocation.getArgument(0);
+            List<Book> books = new ArrayList<>();
+
+            for (Long id : batch) {
+                books.add(book(id));
+            }
+
+            return books;
+        });
+
+        List<Book> books = libraryService.search("space", "", 250).collectList().block();
+
+        assertEquals(250, books.size());
+        assertEquals(Long.valueOf(250), books.get(0).getId());
+        verify(bookService, times(3)).findAllByIdInOrder(anyList());
+    }
+
+    @Test
+    public void findAllShelves() {
+        when(shelfService.findAllWithBooks()).thenReturn(Arrays.asList(new Shelf("Shelf A", 10), new Shelf("Shelf B", 10)));
+        when(shelfService.findByIdWithBooks(anyLong())).thenReturn(Optional.empty());
+
+        assertEquals(2, libraryService.findAllShelves().collectList().block().size());
+        assertNull(libraryService.findShelfById(1L).block());
+        assertEquals(Collections.emptyList(), libraryService.findAllShelfSummaries().collectList().block());
+    }
+
+    private static List<Book> books(long from, int count) {
+        List<Book> books = new ArrayList<>();
+
+        for (long id = from; id < from + count; id++) {
+            books.add(book(id));
+        }
+
+        return books;
+    }
+
+    private static Book book(Long id) {
+        Book book = new Book("isbn-" + id, "Title " + id, "Khotim");
+        book.setId(id);
+
+        return book;
+    }
+}
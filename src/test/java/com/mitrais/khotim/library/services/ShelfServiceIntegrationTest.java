@@ -0,0 +1,189 @@
+package com.mitrais.khotim.library.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+import com.mitrais.khotim.library.repositories.BookRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+// Polling the outbox would show up in the statement counts.
+@SpringBootTest(properties = {"library.changes.relay.enabled=false", "library.changes.invalidation.enabled=false"})
+public class ShelfServiceIntegrationTest {
+    private static final int THREADS = 16;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void concurrentAddBookNeverExceedsMaxCapacity() throws Exception {
+        Shelf shelf = shelfService.save(new Shelf("Hot shelf", 5));
+        List<Book> books = new ArrayList<>();
+
+        for (int i = 0; i < 40; i++) {
+            books.add(bookService.save(new Book("isbn-" + i, "Concurrent " + i, "Khotim")));
+        }
+
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (Book book : books) {
+            futures.add(executor.submit(() -> {
+                start.await();
+
+                try {
+                    shelfService.addBook(shelfService.findById(shelf.getId()).get(), bookService.findById(book.getId()).get());
+                    added.incrementAndGet();
+                } catch (ShelfOperationException e) {
+                    rejected.incrementAndGet();
+                }
+
+                return null;
+            }));
+        }
+
+        start.countDown();
+
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+
+        executor.shutdown();
+
+        assertEquals(5, added.get());
+        assertEquals(35, rejected.get());
+        assertEquals(5, shelfService.findById(shelf.getId()).get().getCurrentCapacity());
+        assertEquals(5, bookRepository.findAllById(ids(books)).stream()
+                .filter(book -> BookStatus.SHELVED.equals(book.getStatus()))
+                .count());
+    }
+
+    @Test
+    public void concurrentAddSameBookShelvesItOnce() throws Exception {
+        Book book = bookService.save(new Book("isbn-same", "Contended", "Khotim"));
+        List<Shelf> shelves = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            shelves.add(shelfService.save(new Shelf("Shelf " + i, 10)));
+        }
+
+        AtomicInteger added = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (Shelf shelf : shelves) {
+            futures.add(executor.submit(() -> {
+                start.await();
+
+                try {
+                    shelfService.addBook(shelfService.findById(shelf.getId()).get(), bookService.findById(book.getId()).get());
+                    added.incrementAndGet();
+                } catch (ShelfOperationException e) {
+                    // Another shelf won.
+                }
+
+                return null;
+            }));
+        }
+
+        start.countDown();
+
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+
+        executor.shutdown();
+
+        assertEquals(1, added.get());
+        assertEquals(1, shelves.stream()
+                .mapToInt(shelf -> shelfService.findById(shelf.getId()).get().getCurrentCapacity())
+                .sum());
+    }
+
+    @Test
+    public void addBooksAcceptsUpToMaxCapacity() {
+        Shelf shelf = shelfService.save(new Shelf("Delivery shelf", 60));
+        List<Book> books = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            books.add(bookService.save(new Book("bulk-" + i, "Bulk " + i, "Khotim")));
+        }
+
+        List<BulkResult> results = shelfService.addBooks(shelf.getId(), ids(books));
+
+        assertEquals(100, results.size());
+        assertEquals(60, results.stream().filter(BulkResult::isSuccess).count());
+        assertEquals(60, shelfService.findById(shelf.getId()).get().getCurrentCapacity());
+
+        results = shelfService.removeBooks(shelf.getId(), ids(books.subList(0, 10)));
+
+        assertEquals(10, results.stream().filter(BulkResult::isSuccess).count());
+        assertEquals(50, shelfService.findById(shelf.getId()).get().getCurrentCapacity());
+        assertEquals(BookStatus.NOT_SHELVED, bookService.findById(books.get(0).getId()).get().getStatus());
+    }
+
+    @Test
+    public void findAllWithBooksRunsOneQuery() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            Shelf shelf = shelfService.save(new Shelf("Listed " + i, 5));
+            List<Book> books = new ArrayList<>();
+
+            for (int j = 0; j < 3; j++) {
+                books.add(bookService.save(new Book("listed-" + i + "-" + j, "Listed " + j, "Khotim")));
+            }
+
+            shelfService.addBooks(shelf.getId(), ids(books));
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<Shelf> shelves = shelfService.findAllWithBooks();
+        // Serializing outside of a session fails if any shelf's books weren't fetched.
+        new ObjectMapper().writeValueAsString(shelves);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertTrue(shelves.stream().filter(shelf -> shelf.getName().startsWith("Listed ")).allMatch(shelf -> shelf.getBooks().size() == 3));
+        assertEquals(shelves.size(), shelfService.findAllSummaries().size());
+    }
+
+    private static List<Long> ids(List<Book> books) {
+        List<Long> ids = new ArrayList<>();
+
+        for (Book book : books) {
+            ids.add(book.getId());
+        }
+
+        return ids;
+    }
+}
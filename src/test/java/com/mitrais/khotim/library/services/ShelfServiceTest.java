@@ -1,18 +1,37 @@
 package com.mitrais.khotim.library.services;
 
+import com.mitrais.khotim.library.changes.ChangeOutbox;
 import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
 import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.errors.Rejection;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+import com.mitrais.khotim.library.placement.FreeCapacityIndex;
+import com.mitrais.khotim.library.repositories.BookRepository;
 import com.mitrais.khotim.library.repositories.ShelfRepository;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -20,6 +39,30 @@ public class ShelfServiceTest {
     @Mock
     ShelfRepository shelfRepository;
 
+    @Mock
+    BookRepository bookRepository;
+
+    @Mock
+    BookSearchIndex searchIndex;
+
+    @Mock
+    BookReplica replica;
+
+    @Mock
+    BookQueryCache bookQueryCache;
+
+    @Mock
+    ChangeOutbox changeOutbox;
+
+    @Mock
+    TransactionTemplate transactionTemplate;
+
+    @Mock
+    SingleFlight singleFlight;
+
+    @Mock
+    FreeCapacityIndex freeCapacity;
+
     @InjectMocks
     ShelfService shelfService;
 
@@ -29,10 +72,18 @@ public class ShelfServiceTest {
     @Mock
     Shelf shelf2;
 
+    @Before
+    public void setUp() {
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        lenient().when(singleFlight.run(any(), any(), any())).thenAnswer(invocation ->
+                invocation.<Supplier<?>>getArgument(2).get());
+    }
+
     @Test
     public void addBook() {
-        Shelf newShelf = new Shelf();
-        Book newBook = new Book();
+        Shelf newShelf = shelf(1L, 20);
+        Book newBook = book(1L);
 
         when(shelfRepository.save(newShelf)).thenReturn(newShelf);
 
@@ -40,24 +91,183 @@ public class ShelfServiceTest {
 
         assertEquals(1, testShelf.getCurrentCapacity());
         assertNotNull(testShelf.getBooks());
-        assertEquals(Book.SHELVED, newBook.getStatus());
+        assertEquals(BookStatus.SHELVED, newBook.getStatus());
         assertNotNull(newBook.getShelf());
+        verify(searchIndex).index(newBook);
+        verify(bookQueryCache).evict(newBook);
+        verify(changeOutbox).bookShelved(newBook, newShelf);
+        verify(freeCapacity).put(newShelf);
+    }
+
+    @Test
+    public void addBookWhenShelfReachedMaxCapacity() {
+        Shelf newShelf = shelf(1L, 1);
+        newShelf.setCurrentCapacity(1);
+
+        try {
+            shelfService.addBook(newShelf, book(1L));
+            fail();
+        } catch (ShelfOperationException e) {
+            assertEquals("shelf", e.getField());
+            assertEquals("Shelf Shelf 1 already reached maximum capacity", e.getMessage());
+        }
+
+        verify(shelfRepository, never()).save(newShelf);
+        verify(changeOutbox, never()).bookShelved(any(), any());
+    }
+
+    @Test
+    public void addBookWhenShelvedWithoutShelf() {
+        Shelf newShelf = shelf(1L, 20);
+        Book newBook = book(1L);
+        newBook.setTitle("Space Adventure");
+        newBook.setStatus(BookStatus.SHELVED);
+
+        try {
+            shelfService.addBook(newShelf, newBook);
+            fail();
+        } catch (ShelfOperationException e) {
+            assertEquals(Rejection.ALREADY_SHELVED, e.getRejection());
+            assertEquals("Book Space Adventure is already shelved in shelf null", e.getMessage());
+        }
+
+        verify(shelfRepository, never()).save(newShelf);
+    }
+
+    @Test
+    public void addBookRetriesOnConcurrentUpdate() {
+        Shelf staleShelf = shelf(1L, 20);
+        Book staleBook = book(1L);
+        Shelf freshShelf = new Shelf("Shelf 1", 20);
+        freshShelf.setId(1L);
+        freshShelf.setCurrentCapacity(19);
+        Book freshBook = new Book();
+        freshBook.setId(1L);
+
+        when(shelfRepository.findForUpdateById(1L)).thenReturn(Optional.of(staleShelf)).thenReturn(Optional.of(freshShelf));
+        when(bookRepository.findForUpdateById(1L)).thenReturn(Optional.of(staleBook)).thenReturn(Optional.of(freshBook));
+        when(shelfRepository.save(any(Shelf.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Shelf.class, 1L))
+                .thenReturn(freshShelf);
+
+        Shelf testShelf = shelfService.addBook(staleShelf, staleBook);
+
+        assertEquals(20, testShelf.getCurrentCapacity());
+        assertEquals(BookStatus.SHELVED, freshBook.getStatus());
+        verify(searchIndex).index(freshBook);
     }
 
     @Test
     public void removeBook() {
-        Shelf newShelf = new Shelf();
-        Book newBook = new Book();
+        Shelf newShelf = shelf(1L, 20);
+        Book newBook = book(1L);
 
         newShelf.setCurrentCapacity(1);
+        newShelf.addBook(newBook);
         when(shelfRepository.save(newShelf)).thenReturn(newShelf);
 
         Shelf testShelf = shelfService.removeBook(newShelf, newBook);
 
         assertEquals(0, testShelf.getCurrentCapacity());
         assertTrue(testShelf.getBooks().isEmpty());
-        assertEquals(Book.NOT_SHELVED, newBook.getStatus());
+        assertEquals(BookStatus.NOT_SHELVED, newBook.getStatus());
+        assertNull(newBook.getShelf());
+        verify(bookRepository).save(newBook);
+        verify(changeOutbox).bookUnshelved(newBook, newShelf);
+    }
+
+    @Test
+    public void removeBookWhenBookNotInShelf() {
+        Shelf newShelf = shelf(1L, 20);
+        Book newBook = book(1L);
+        newBook.setTitle("Space 1");
+
+        try {
+            shelfService.removeBook(newShelf, newBook);
+            fail();
+        } catch (ShelfOperationException e) {
+            assertEquals("There's no book Space 1 in shelf Shelf 1", e.getMessage());
+        }
+    }
+
+    @Test
+    public void addBooks() {
+        Shelf newShelf = shelf(1L, 2);
+        Book newBook = book(1L);
+        Book newBook2 = book(2L);
+        Book newBook3 = book(3L);
+        Book shelvedBook = book(4L);
+        shelvedBook.setStatus(BookStatus.SHELVED);
+        shelvedBook.setShelf(shelf(2L, 5));
+
+        when(bookRepository.findForUpdateByIdInOrderByIdAsc(new LinkedHashSet<>(Arrays.asList(1L, 4L, 2L, 9L, 3L))))
+                .thenReturn(Arrays.asList(newBook, newBook2, newBook3, shelvedBook));
+
+        List<BulkResult> results = shelfService.addBooks(1L, Arrays.asList(1L, 4L, 2L, 9L, 1L, 3L));
+
+        assertEquals(6, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("Book null is already shelved in shelf Shelf 2", results.get(1).getMessage());
+        assertEquals("already_shelved", results.get(1).getCode());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals("There's no book found with id 9", results.get(3).getMessage());
+        assertEquals("Book 1 is listed more than once", results.get(4).getMessage());
+        assertEquals("listed_twice", results.get(4).getCode());
+        assertEquals("Shelf Shelf 1 already reached maximum capacity", results.get(5).getMessage());
+
+        assertEquals(2, newShelf.getCurrentCapacity());
+        assertEquals(BookStatus.SHELVED, newBook2.getStatus());
+        assertEquals(BookStatus.NOT_SHELVED, newBook3.getStatus());
+        verify(bookRepository, never()).findForUpdateById(any());
+        verify(shelfRepository).save(newShelf);
+        verify(searchIndex).index(newBook);
+        verify(searchIndex).index(newBook2);
+        verify(searchIndex, never()).index(newBook3);
+        verify(changeOutbox).bookShelved(newBook, newShelf);
+        verify(changeOutbox).bookShelved(newBook2, newShelf);
+        verify(changeOutbox, times(2)).bookShelved(any(), any());
+    }
+
+    @Test
+    public void addBooksWhenShelfNotExists() {
+        List<BulkResult> results = shelfService.addBooks(7L, Arrays.asList(1L, 2L));
+
+        assertEquals(2, results.size());
+        assertEquals("There's no shelf found with id 7", results.get(0).getMessage());
+        assertEquals("There's no shelf found with id 7", results.get(1).getMessage());
+    }
+
+    @Test
+    public void addBooksWithoutBookIds() {
+        try {
+            shelfService.addBooks(1L, null);
+            fail();
+        } catch (ShelfOperationException e) {
+            assertEquals(Rejection.BOOK_IDS_REQUIRED, e.getRejection());
+        }
+
+        verify(shelfRepository, never()).findForUpdateById(any());
+    }
+
+    @Test
+    public void removeBooks() {
+        Shelf newShelf = shelf(1L, 5);
+        Book newBook = book(1L);
+        Book otherBook = book(2L);
+        newShelf.addBook(newBook);
+        newShelf.setCurrentCapacity(1);
+
+        when(bookRepository.findForUpdateByIdInOrderByIdAsc(new LinkedHashSet<>(Arrays.asList(1L, 2L)))).thenReturn(Arrays.asList(newBook, otherBook));
+
+        List<BulkResult> results = shelfService.removeBooks(1L, Arrays.asList(1L, 2L));
+
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("There's no book null in shelf Shelf 1", results.get(1).getMessage());
+        assertEquals(0, newShelf.getCurrentCapacity());
+        assertEquals(BookStatus.NOT_SHELVED, newBook.getStatus());
         assertNull(newBook.getShelf());
+        verify(changeOutbox).bookUnshelved(newBook, newShelf);
+        verify(changeOutbox, never()).bookUnshelved(otherBook, newShelf);
     }
 
     @Test
@@ -68,6 +278,28 @@ public class ShelfServiceTest {
 
         assertNotNull(testShelf);
         assertEquals(shelf.getId(), testShelf.getId());
+        verify(singleFlight).run(eq(ShelfService.SHELF_LOOKUP), eq(1L), any());
+    }
+
+    @Test
+    public void findByIdFromReplica() {
+        when(replica.isReady()).thenReturn(true);
+        when(replica.findShelfWithoutBooks(1L)).thenReturn(Optional.of(shelf));
+
+        assertEquals(shelf, shelfService.findById(1L).orElse(null));
+        verify(replica, never()).findShelf(1L);
+        verify(shelfRepository, never()).findById(1L);
+        verify(singleFlight, never()).run(any(), any(), any());
+    }
+
+    @Test
+    public void findByIdWithBooksFromReplica() {
+        when(replica.isReady()).thenReturn(true);
+        when(replica.findShelf(1L)).thenReturn(Optional.of(shelf));
+
+        assertEquals(shelf, shelfService.findByIdWithBooks(1L).orElse(null));
+        verify(replica, never()).findShelfWithoutBooks(1L);
+        verify(shelfRepository, never()).findWithBooksById(1L);
     }
 
     @Test
@@ -76,6 +308,13 @@ public class ShelfServiceTest {
         assertEquals(2, shelfService.findAll().size());
     }
 
+    @Test
+    public void findAllWithBooks() {
+        when(shelfRepository.findAllWithBooks()).thenReturn(Arrays.asList(shelf, shelf2));
+        assertEquals(2, shelfService.findAllWithBooks().size());
+        verify(shelfRepository, never()).findAll();
+    }
+
     @Test
     public void save() {
         Shelf newShelf= new Shelf("Shelf 1", 20);
@@ -88,4 +327,20 @@ public class ShelfServiceTest {
         assertEquals("Shelf 1", testShelf.getName());
         assertEquals(newShelf.getMaxCapacity(), testShelf.getMaxCapacity());
     }
+
+    private Shelf shelf(Long id, int maxCapacity) {
+        Shelf newShelf = new Shelf("Shelf " + id, maxCapacity);
+        newShelf.setId(id);
+        lenient().when(shelfRepository.findForUpdateById(id)).thenReturn(Optional.of(newShelf));
+
+        return newShelf;
+    }
+
+    private Book book(Long id) {
+        Book newBook = new Book();
+        newBook.setId(id);
+        lenient().when(bookRepository.findForUpdateById(id)).thenReturn(Optional.of(newBook));
+
+        return newBook;
+    }
 }
\ No newline at end of file
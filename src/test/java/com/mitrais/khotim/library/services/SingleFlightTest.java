@@ -0,0 +1,170 @@
+package com.mitrais.khotim.library.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+    private static final int CALLERS = 8;
+
+    private SingleFlight singleFlight;
+    private MeterRegistry registry;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight();
+        ReflectionTestUtils.setField(singleFlight, "registry", registry);
+        ReflectionTestUtils.setField(singleFlight, "maxKeys", 100);
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallersShareOneLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        Object result = new Object();
+
+        Future<Object> leader = executor.submit(() -> singleFlight.run("book", 1L, () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return result;
+        }));
+        loading.await(5, TimeUnit.SECONDS);
+
+        List<Future<Object>> followers = new ArrayList<>();
+
+        for (int i = 1; i < CALLERS; i++) {
+            followers.add(executor.submit(() -> singleFlight.run("book", 1L, () -> {
+                loads.incrementAndGet();
+                return new Object();
+            })));
+        }
+
+        while (coalesced() < CALLERS - 1) {
+            Thread.sleep(5);
+        }
+
+        release.countDown();
+
+        assertSame(result, leader.get(5, TimeUnit.SECONDS));
+
+        for (Future<Object> follower : followers) {
+            assertSame(result, follower.get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(0, singleFlight.inFlight());
+        assertEquals(1, count("loaded"), 0);
+    }
+
+    @Test
+    public void differentKeysLoadSeparately() {
+        assertEquals("a", singleFlight.run("book", 1L, () -> "a"));
+        assertEquals("b", singleFlight.run("book", 2L, () -> "b"));
+        assertEquals("c", singleFlight.run("shelf", 1L, () -> "c"));
+        assertEquals(0, coalesced(), 0);
+    }
+
+    @Test
+    public void followersGetTheLoadersException() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Object> leader = executor.submit(() -> singleFlight.run("book", 1L, () -> {
+            loading.countDown();
+            await(release);
+            throw new IllegalStateException("failed");
+        }));
+        loading.await(5, TimeUnit.SECONDS);
+        Future<Object> follower = executor.submit(() -> singleFlight.run("book", 1L, Object::new));
+
+        while (coalesced() < 1) {
+            Thread.sleep(5);
+        }
+
+        release.countDown();
+
+        for (Future<Object> caller : Arrays.asList(leader, follower)) {
+            try {
+                caller.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertEquals(IllegalStateException.class, e.getCause().getClass());
+            }
+        }
+
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    public void bypassesPastMaxKeys() {
+        ReflectionTestUtils.setField(singleFlight, "maxKeys", 0);
+
+        assertEquals("a", singleFlight.run("book", 1L, () -> "a"));
+        assertEquals(1, count("bypassed"), 0);
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    public void forgottenLoadIsNotShared() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Object> leader = executor.submit(() -> singleFlight.run("book", 1L, () -> {
+            loading.countDown();
+            await(release);
+            return "before";
+        }));
+        loading.await(5, TimeUnit.SECONDS);
+
+        singleFlight.forget("book", 1L);
+
+        assertEquals("after", singleFlight.run("book", 1L, () -> "after"));
+        release.countDown();
+        assertEquals("before", leader.get(5, TimeUnit.SECONDS));
+        assertEquals(0, coalesced(), 0);
+    }
+
+    private double coalesced() {
+        return count("coalesced");
+    }
+
+    private double count(String outcome) {
+        return registry.find("library.lookups").tag("lookup", "book").tag("outcome", outcome).counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
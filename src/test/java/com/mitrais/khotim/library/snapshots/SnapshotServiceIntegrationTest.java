@@ -0,0 +1,191 @@
+package com.mitrais.khotim.library.snapshots;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.BookStatus;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.repositories.BookRepository;
+import com.mitrais.khotim.library.repositories.ShelfRepository;
+import com.mitrais.khotim.library.services.BookSearchIndex;
+import com.mitrais.khotim.library.services.BookService;
+import com.mitrais.khotim.library.services.ShelfService;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class SnapshotServiceIntegrationTest {
+    private static final long FIRST_ID = 900_001L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Autowired
+    private SnapshotService snapshotService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ShelfRepository shelfRepository;
+
+    @Autowired
+    private BookSearchIndex searchIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Test
+    public void exportWritesShelvesBeforeBooks() throws Exception {
+        Shelf shelf = shelfService.save(new Shelf("Snapshot shelf", 5));
+        Book book = bookService.save(new Book("isbn-snapshot", "Snapshot export", "Khotim"));
+        shelfService.addBook(shelf, book);
+        Path path = folder.getRoot().toPath().resolve("catalog.ndjson.gz");
+
+        long rows = snapshotService.exportTo(path);
+
+        List<JsonNode> lines = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(path)), StandardCharsets.UTF_8))) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                assertFalse(line, Character.isWhitespace(line.charAt(0)));
+                lines.add(mapper.readTree(line));
+            }
+        }
+
+        assertEquals(bookRepository.count() + shelfRepository.count(), rows);
+        assertEquals(rows, lines.size());
+
+        int firstBook = 0;
+
+        while (firstBook < lines.size() && lines.get(firstBook).get("type").asText().equals("shelf")) {
+            firstBook++;
+        }
+
+        for (JsonNode line : lines.subList(firstBook, lines.size())) {
+            assertEquals("book", line.get("type").asText());
+        }
+
+        assertTrue(lines.stream().anyMatch(line -> line.get("type").asText().equals("shelf")
+                && line.get("id").asLong() == shelf.getId()
+                && line.get("currentCapacity").asInt() == 1));
+        assertTrue(lines.stream().anyMatch(line -> line.get("type").asText().equals("book")
+                && line.get("id").asLong() == book.getId()
+                && line.get("shelfId").asLong() == shelf.getId()
+                && line.get("status").asText().equals(BookStatus.SHELVED.getValue())));
+    }
+
+    @Test
+    public void importInsertsRowsAndMovesSequencesPastThem() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("catalog.ndjson");
+        List<String> lines = new ArrayList<>();
+        lines.add(mapper.writerFor(SnapshotRow.class).writeValueAsString(new SnapshotRow.ShelfRow(FIRST_ID, "Imported shelf", 3, 1)));
+
+        for (long id = FIRST_ID; id < FIRST_ID + SnapshotService.BATCH_SIZE * 2 + 1; id++) {
+            SnapshotRow.BookRow book = id == FIRST_ID
+                    ? new SnapshotRow.BookRow(id, "isbn-" + id, "Imported shelved", "Khotim", BookStatus.SHELVED.getValue(), FIRST_ID)
+                    : new SnapshotRow.BookRow(id, "isbn-" + id, "Imported " + id, "Khotim", BookStatus.NOT_SHELVED.getValue(), null);
+            lines.add(mapper.writerFor(SnapshotRow.class).writeValueAsString(book));
+        }
+
+        Files.write(path, lines);
+
+        try {
+            assertEquals(lines.size(), snapshotService.importFrom(path));
+
+            Shelf shelf = shelfRepository.findWithBooksById(FIRST_ID).get();
+            assertEquals("Imported shelf", shelf.getName());
+            assertEquals(1, shelf.getCurrentCapacity());
+            assertEquals(Long.valueOf(FIRST_ID), shelf.getBooks().get(0).getId());
+            assertEquals(Collections.singletonList(FIRST_ID), bookService.searchIds("imported shelved", "", 10));
+
+
+            // Ids Hibernate reserved before the import come first, the next block starts past the imported ones.
+            Book book = null;
+            Shelf newShelf = null;
+
+            for (int i = 0; i <= SnapshotService.SEQUENCE_ALLOCATION; i++) {
+                book = bookService.save(new Book("isbn-new-" + i, "After import", "Khotim"));
+                newShelf = shelfService.save(new Shelf("After import " + i, 1));
+            }
+
+            assertTrue(book.getId() > FIRST_ID + lines.size());
+            assertTrue(newShelf.getId() > FIRST_ID);
+        } finally {
+            jdbcTemplate.update("delete from book where id >= ?", FIRST_ID);
+            jdbcTemplate.update("delete from shelf where shelf_id >= ?", FIRST_ID);
+            entityManagerFactory.getCache().evictAll();
+            searchIndex.rebuild();
+        }
+    }
+
+    @Test
+    public void failedImportStopsTheReader() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("duplicates.ndjson");
+        List<String> lines = new ArrayList<>();
+
+        // The first batch fails while the reader is still blocked handing over the ones after it.
+        for (long id = FIRST_ID; id < FIRST_ID + SnapshotService.BATCH_SIZE * (SnapshotService.QUEUED_BATCHES + 3); id++) {
+            long bookId = id == FIRST_ID + 1 ? FIRST_ID : id;
+            lines.add(mapper.writerFor(SnapshotRow.class).writeValueAsString(new SnapshotRow.BookRow(
+                    bookId, "isbn-" + id, "Duplicate " + id, "Khotim", BookStatus.NOT_SHELVED.getValue(), null)));
+        }
+
+        Files.write(path, lines);
+
+        try {
+            snapshotService.importFrom(path);
+            fail("Expected the duplicate id to fail the import");
+        } catch (DataAccessException e) {
+            long deadline = System.currentTimeMillis() + 5000;
+
+            while (readerAlive() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertFalse(readerAlive());
+        } finally {
+            jdbcTemplate.update("delete from book where id >= ?", FIRST_ID);
+            entityManagerFactory.getCache().evictAll();
+            searchIndex.rebuild();
+        }
+    }
+
+    private static boolean readerAlive() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().startsWith("snapshot-reader-") && thread.isAlive());
+    }
+}
@@ -0,0 +1,38 @@
+package com.mitrais.khotim.library.startup;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:fastboot")
+@AutoConfigureMockMvc
+@ActiveProfiles("fast-boot")
+public class FastBootIntegrationTest {
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void createsBeansOnFirstUse() throws Exception {
+        assertTrue(context.getBeanFactory().containsSingleton("changeRelay"));
+        assertFalse(context.getBeanFactory().containsSingleton("reactiveLibraryService"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/reactive/libraries")).andExpect(status().isOk());
+
+        assertTrue(context.getBeanFactory().containsSingleton("reactiveLibraryService"));
+    }
+}
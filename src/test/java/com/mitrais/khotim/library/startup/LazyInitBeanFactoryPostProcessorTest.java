@@ -0,0 +1,51 @@
+package com.mitrais.khotim.library.startup;
+
+import org.junit.Test;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LazyInitBeanFactoryPostProcessorTest {
+    @Test
+    public void onlyKeepsBeansThatMustStartEager() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("plain", new RootBeanDefinition(Plain.class));
+        beanFactory.registerBeanDefinition("scheduled", new RootBeanDefinition(Polling.class));
+        beanFactory.registerBeanDefinition("initializing", new RootBeanDefinition(Initializing.class));
+        RootBeanDefinition infrastructure = new RootBeanDefinition(Plain.class);
+        infrastructure.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+        beanFactory.registerBeanDefinition("infrastructure", infrastructure);
+
+        new LazyInitBeanFactoryPostProcessor().postProcessBeanFactory(beanFactory);
+
+        assertTrue(beanFactory.getBeanDefinition("plain").isLazyInit());
+        assertFalse(beanFactory.getBeanDefinition("scheduled").isLazyInit());
+        assertFalse(beanFactory.getBeanDefinition("initializing").isLazyInit());
+        assertFalse(beanFactory.getBeanDefinition("infrastructure").isLazyInit());
+
+        beanFactory.preInstantiateSingletons();
+
+        assertFalse(beanFactory.containsSingleton("plain"));
+        assertTrue(beanFactory.containsSingleton("scheduled"));
+    }
+
+    static class Plain {
+    }
+
+    static class Polling {
+        @Scheduled(fixedDelay = 1000)
+        public void poll() {
+        }
+    }
+
+    static class Initializing implements SmartInitializingSingleton {
+        @Override
+        public void afterSingletonsInstantiated() {
+        }
+    }
+}
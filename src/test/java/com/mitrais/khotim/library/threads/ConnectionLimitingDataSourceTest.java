@@ -0,0 +1,91 @@
+package com.mitrais.khotim.library.threads;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConnectionLimitingDataSourceTest {
+    @Mock
+    DataSource pool;
+
+    @Mock
+    Connection connection;
+
+    private ConnectionLimitingDataSource dataSource;
+
+    @Before
+    public void setUp() throws SQLException {
+        when(pool.getConnection()).thenReturn(connection);
+        dataSource = new ConnectionLimitingDataSource(pool, 2);
+    }
+
+    @Test
+    public void closingReleasesPermitOnce() throws SQLException {
+        Connection first = dataSource.getConnection();
+        dataSource.getConnection();
+
+        assertEquals(0, dataSource.availablePermits());
+
+        first.close();
+        first.close();
+
+        assertEquals(1, dataSource.availablePermits());
+        verify(connection, times(2)).close();
+    }
+
+    @Test
+    public void waitsForPermit() throws Exception {
+        Connection first = dataSource.getConnection();
+        dataSource.getConnection();
+
+        CompletableFuture<Connection> third = CompletableFuture.supplyAsync(() -> {
+            try {
+                return dataSource.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        try {
+            third.get(200, TimeUnit.MILLISECONDS);
+            fail("Got a third connection while two were open");
+        } catch (TimeoutException e) {
+            // Still waiting.
+        }
+
+        first.close();
+
+        assertFalse(third.get(5, TimeUnit.SECONDS).isClosed());
+    }
+
+    @Test
+    public void failedConnectionReleasesPermit() throws SQLException {
+        when(pool.getConnection()).thenThrow(new SQLException("down"));
+
+        try {
+            dataSource.getConnection();
+            fail();
+        } catch (SQLException e) {
+            assertEquals("down", e.getMessage());
+        }
+
+        assertEquals(2, dataSource.availablePermits());
+    }
+}
@@ -0,0 +1,36 @@
+package com.mitrais.khotim.library.threads;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+public class VirtualThreadsTest {
+    @Test
+    public void runsTasksOnVirtualThreads() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+
+        ExecutorService executor = VirtualThreads.newExecutor("test-");
+
+        try {
+            Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+
+            assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread));
+            assertEquals("test-0", thread.getName());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failsBeforeJava21() {
+        assumeFalse(VirtualThreads.isSupported());
+
+        VirtualThreads.factory("test-");
+    }
+}
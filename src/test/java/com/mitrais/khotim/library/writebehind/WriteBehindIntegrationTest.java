@@ -0,0 +1,72 @@
+package com.mitrais.khotim.library.writebehind;
+
+import com.mitrais.khotim.library.domains.Book;
+import com.mitrais.khotim.library.domains.Shelf;
+import com.mitrais.khotim.library.services.BookService;
+import com.mitrais.khotim.library.services.ShelfService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "library.write-behind.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:writebehind;DB_CLOSE_DELAY=-1",
+        "library.admission.enabled=false"
+})
+public class WriteBehindIntegrationTest {
+    @Autowired
+    private WriteBehindQueue queue;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void queuedOperationsKeepCapacities() throws Exception {
+        Shelf small = shelfService.save(new Shelf("Small shelf", 5));
+        Shelf large = shelfService.save(new Shelf("Large shelf", 100));
+        List<PendingOperation> operations = new ArrayList<>();
+
+        for (int i = 0; i < 40; i++) {
+            Long bookId = bookService.save(new Book("isbn-" + i, "Queued " + i, "Khotim")).getId();
+            operations.add(queue.submit(OperationType.ADD, small.getId(), bookId));
+            operations.add(queue.submit(OperationType.ADD, large.getId(), bookId));
+        }
+
+        int done = 0;
+
+        for (PendingOperation operation : operations) {
+            OperationResult result = operation.getCompletion().get(30, TimeUnit.SECONDS);
+            assertEquals(OperationResult.DONE, result.getStatus());
+
+            if (result.getResult().isSuccess()) {
+                done++;
+            }
+        }
+
+        assertEquals(40, done);
+        assertEquals(5, shelved(small));
+        assertEquals(35, shelved(large));
+        assertEquals(5, shelfService.findById(small.getId()).get().getCurrentCapacity());
+        assertEquals(35, shelfService.findById(large.getId()).get().getCurrentCapacity());
+    }
+
+    private int shelved(Shelf shelf) {
+        return jdbcTemplate.queryForObject("select count(*) from book where shelf_id = ?", Integer.class, shelf.getId());
+    }
+}
@@ -0,0 +1,157 @@
+package com.mitrais.khotim.library.writebehind;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mitrais.khotim.library.errors.Rejection;
+import com.mitrais.khotim.library.errors.ShelfOperationException;
+import com.mitrais.khotim.library.services.BulkResult;
+import com.mitrais.khotim.library.services.ShelfService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class WriteBehindQueueTest {
+    @Mock
+    ShelfService shelfService;
+
+    private WriteBehindQueue queue;
+
+    @Before
+    public void setUp() {
+        queue = new WriteBehindQueue();
+        ReflectionTestUtils.setField(queue, "shelfService", shelfService);
+        ReflectionTestUtils.setField(queue, "capacity", 4);
+        ReflectionTestUtils.setField(queue, "batchSize", 10);
+        ReflectionTestUtils.setField(queue, "operations", Caffeine.newBuilder().build());
+        ReflectionTestUtils.setField(queue, "batches", DistributionSummary.builder("batch").register(new SimpleMeterRegistry()));
+
+        lenient().when(shelfService.addBooks(anyLong(), anyList())).thenAnswer(invocation -> results(invocation.getArgument(0), invocation.getArgument(1)));
+        lenient().when(shelfService.removeBooks(anyLong(), anyList())).thenAnswer(invocation -> results(invocation.getArgument(0), invocation.getArgument(1)));
+    }
+
+    @Test
+    public void writesEachShelfsOperationsInOrder() {
+        PendingOperation first = queue.submit(OperationType.ADD, 1L, 10L);
+        PendingOperation second = queue.submit(OperationType.ADD, 2L, 20L);
+        PendingOperation third = queue.submit(OperationType.ADD, 1L, 11L);
+        PendingOperation fourth = queue.submit(OperationType.REMOVE, 1L, 12L);
+
+        assertEquals(OperationResult.PENDING, first.getResult().getStatus());
+        assertSame(first, queue.find(first.getId()));
+        assertTrue(queue.flush());
+
+        InOrder order = inOrder(shelfService);
+        order.verify(shelfService).addBooks(1L, Arrays.asList(10L, 11L));
+        order.verify(shelfService).removeBooks(1L, Collections.singletonList(12L));
+        order.verify(shelfService).addBooks(2L, Collections.singletonList(20L));
+
+        for (PendingOperation operation : Arrays.asList(first, second, third, fourth)) {
+            assertEquals(OperationResult.DONE, operation.getResult().getStatus());
+            assertEquals(operation.getBookId(), operation.getResult().getResult().getBookId());
+        }
+
+        assertFalse(queue.flush());
+    }
+
+    @Test
+    public void leavesTheSameBookForTheNextBatch() {
+        PendingOperation add = queue.submit(OperationType.ADD, 1L, 10L);
+        PendingOperation remove = queue.submit(OperationType.REMOVE, 1L, 10L);
+
+        assertTrue(queue.flush());
+        assertEquals(OperationResult.DONE, add.getResult().getStatus());
+        assertEquals(OperationResult.PENDING, remove.getResult().getStatus());
+
+        assertTrue(queue.flush());
+        assertEquals(OperationResult.DONE, remove.getResult().getStatus());
+    }
+
+    @Test
+    public void rejectsWhenFull() {
+        for (long i = 0; i < 4; i++) {
+            queue.submit(OperationType.ADD, 1L, i);
+        }
+
+        try {
+            queue.submit(OperationType.ADD, 1L, 5L);
+            fail();
+        } catch (ShelfOperationException e) {
+            assertEquals(Rejection.QUEUE_FULL, e.getRejection());
+        }
+
+        queue.flush();
+        queue.submit(OperationType.ADD, 1L, 5L);
+    }
+
+    @Test
+    public void rejectsMissingOperation() {
+        try {
+            queue.submit(null, 1L, 10L);
+            fail();
+        } catch (ShelfOperationException e) {
+            assertEquals(Rejection.OPERATION_REQUIRED, e.getRejection());
+        }
+
+        assertFalse(queue.flush());
+    }
+
+    @Test
+    public void failsTheRunWhenItCantBeWritten() {
+        when(shelfService.addBooks(any(), anyList())).thenThrow(new QueryTimeoutException("timed out"));
+
+        PendingOperation operation = queue.submit(OperationType.ADD, 1L, 10L);
+        queue.flush();
+
+        assertEquals(OperationResult.FAILED, operation.getResult().getStatus());
+        assertEquals("timed out", operation.getResult().getError());
+    }
+
+    @Test
+    public void failsTheBatchWhenTheWriterErrs() {
+        when(shelfService.addBooks(any(), anyList())).thenThrow(new StackOverflowError("too deep"));
+
+        PendingOperation operation = queue.submit(OperationType.ADD, 1L, 10L);
+
+        assertTrue(queue.flush());
+        assertEquals(OperationResult.FAILED, operation.getResult().getStatus());
+        assertEquals("too deep", operation.getResult().getError());
+
+        for (long i = 0; i < 4; i++) {
+            queue.submit(OperationType.ADD, 2L, i);
+        }
+    }
+
+    private static List<BulkResult> results(Long shelfId, List<Long> bookIds) {
+        List<BulkResult> results = new ArrayList<>();
+
+        for (Long bookId : bookIds) {
+            results.add(BulkResult.success(shelfId, bookId));
+        }
+
+        return results;
+    }
+}